@@ -0,0 +1,107 @@
+package com.database.study.benchmark;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+
+import org.mockito.Mockito;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.database.study.entity.Permission;
+import com.database.study.entity.Role;
+import com.database.study.entity.User;
+import com.database.study.security.JwtUtils;
+import com.database.study.security.ScopeAuthorityCache;
+import com.database.study.security.TokenVerificationPipeline;
+import com.database.study.service.AuthenticationService;
+import com.database.study.service.EncryptionService;
+
+/**
+ * Shared, Spring-free construction of the services on the authentication hot
+ * path, configured the way application.yaml configures them
+ */
+final class BenchmarkFixtures {
+
+  static final String JWT_KEY = Base64.getEncoder()
+      .encodeToString("benchmark-jwt-key-0123456789abcdef0123456789abcdef0123456789abcdef".getBytes());
+
+  static final String TOTP_SECRET = "JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP";
+
+  private BenchmarkFixtures() {
+  }
+
+  static EncryptionService newEncryptionService(int envelopeVersion, boolean cacheEnabled) {
+    EncryptionService service = new EncryptionService();
+    ReflectionTestUtils.setField(service, "encryptionKey", "benchmark-encryption-key-0123456789abcdef");
+    ReflectionTestUtils.setField(service, "totpEncryptionKey", "benchmark-totp-key-0123456789abcdef");
+    ReflectionTestUtils.setField(service, "tokenEnvelopeVersion", envelopeVersion);
+    ReflectionTestUtils.setField(service, "tokenCacheEnabled", cacheEnabled);
+    ReflectionTestUtils.setField(service, "maxCachedKeys", 10_000L);
+    ReflectionTestUtils.setField(service, "maxCachedTokens", 10_000L);
+    ReflectionTestUtils.setField(service, "tokenCacheTtlMinutes", 60L);
+    service.init();
+    return service;
+  }
+
+  static JwtUtils newJwtUtils() {
+    JwtUtils jwtUtils = new JwtUtils();
+    ReflectionTestUtils.setField(jwtUtils, "jwtKey", JWT_KEY);
+    ReflectionTestUtils.setField(jwtUtils, "maxCachedVerifiers", 10_000L);
+    ReflectionTestUtils.setField(jwtUtils, "verifierCacheTtlMinutes", 60L);
+    jwtUtils.init();
+    return jwtUtils;
+  }
+
+  static TokenVerificationPipeline newPipeline(EncryptionService encryptionService, JwtUtils jwtUtils) {
+    return new TokenVerificationPipeline(encryptionService, jwtUtils, new ScopeAuthorityCache());
+  }
+
+  /**
+   * AuthenticationService from a small context holding the real JwtUtils and a
+   * mock of every other collaborator, so token generation runs unchanged and
+   * new constructor parameters need no edit here
+   */
+  static AuthenticationService newAuthenticationService(JwtUtils jwtUtils) {
+    try (GenericApplicationContext context = new GenericApplicationContext()) {
+      context.registerBean(JwtUtils.class, () -> jwtUtils);
+      for (Class<?> type : AuthenticationService.class.getConstructors()[0].getParameterTypes()) {
+        if (type != JwtUtils.class) {
+          registerMock(context, type);
+        }
+      }
+      context.registerBean(AuthenticationService.class);
+      context.refresh();
+      return context.getBean(AuthenticationService.class);
+    }
+  }
+
+  private static <T> void registerMock(GenericApplicationContext context, Class<T> type) {
+    context.registerBean(type, () -> Mockito.mock(type));
+  }
+
+  /**
+   * An administrator with the roles and permissions seeded by the application
+   */
+  static User newUser() {
+    Set<Permission> permissions = Set.of(
+        Permission.builder().name("CREATE_DATA").build(),
+        Permission.builder().name("READ_DATA").build(),
+        Permission.builder().name("UPDATE_DATA").build(),
+        Permission.builder().name("DELETE_DATA").build());
+    Role admin = Role.builder().name("ADMIN").permissions(permissions).build();
+    Role user = Role.builder().name("USER").permissions(Set.of(permissions.iterator().next())).build();
+    return User.builder()
+        .id(UUID.fromString("6f9619ff-8b86-d011-b42d-00c04fc964ff"))
+        .username("administrator")
+        .email("administrator@tommem.com")
+        .active(true)
+        .roles(Set.of(admin, user))
+        .build();
+  }
+
+  static Date inOneHour() {
+    return new Date(System.currentTimeMillis() + 3_600_000);
+  }
+}
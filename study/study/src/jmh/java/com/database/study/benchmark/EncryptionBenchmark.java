@@ -0,0 +1,65 @@
+package com.database.study.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.database.study.service.EncryptionService;
+
+/**
+ * Token and TOTP secret encryption as configured in production: version 2
+ * envelope with the token caches enabled. decryptToken measures a token the
+ * node has already seen, which is the common case for an active session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionBenchmark {
+
+  EncryptionService encryptionService;
+  String plainToken;
+  String encryptedToken;
+  String encryptedTotpSecret;
+
+  @Setup
+  public void setUp() {
+    encryptionService = BenchmarkFixtures.newEncryptionService(2, true);
+    plainToken = BenchmarkFixtures.newAuthenticationService(BenchmarkFixtures.newJwtUtils())
+        .generateToken(BenchmarkFixtures.newUser(), UUID.randomUUID().toString());
+    encryptedToken = encryptionService.encryptToken(plainToken);
+    encryptedTotpSecret = encryptionService.encryptTotpSecret(BenchmarkFixtures.TOTP_SECRET);
+  }
+
+  @Benchmark
+  public String encryptToken() {
+    return encryptionService.encryptToken(plainToken);
+  }
+
+  @Benchmark
+  public String decryptToken() {
+    return encryptionService.decryptToken(encryptedToken);
+  }
+
+  @Benchmark
+  public String encryptTotpSecret() {
+    return encryptionService.encryptTotpSecret(BenchmarkFixtures.TOTP_SECRET);
+  }
+
+  @Benchmark
+  public String decryptTotpSecret() {
+    return encryptionService.decryptTotpSecret(encryptedTotpSecret);
+  }
+}
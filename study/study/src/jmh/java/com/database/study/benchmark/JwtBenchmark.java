@@ -0,0 +1,79 @@
+package com.database.study.benchmark;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.database.study.entity.User;
+import com.database.study.security.JwtUtils;
+import com.database.study.security.TokenVerificationPipeline;
+import com.database.study.service.AuthenticationService;
+import com.database.study.service.EncryptionService;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.SignedJWT;
+
+/**
+ * Signing and verification of access tokens. verifyToken is the signature and
+ * expiry check AuthenticationService.verifyToken delegates to; verifyEncrypted
+ * is the whole pipeline the security filter runs before the session lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+  JwtUtils jwtUtils;
+  AuthenticationService authenticationService;
+  TokenVerificationPipeline pipeline;
+  User user;
+  Date refreshExpiry;
+  String plainToken;
+  String encryptedToken;
+
+  @Setup
+  public void setUp() throws ParseException {
+    jwtUtils = BenchmarkFixtures.newJwtUtils();
+    EncryptionService encryptionService = BenchmarkFixtures.newEncryptionService(2, true);
+    authenticationService = BenchmarkFixtures.newAuthenticationService(jwtUtils);
+    pipeline = BenchmarkFixtures.newPipeline(encryptionService, jwtUtils);
+    user = BenchmarkFixtures.newUser();
+    refreshExpiry = jwtUtils.parseRefreshExpiry(jwtUtils.formatRefreshExpiry(BenchmarkFixtures.inOneHour()));
+    plainToken = authenticationService.generateToken(user, UUID.randomUUID().toString());
+    encryptedToken = encryptionService.encryptToken(plainToken);
+  }
+
+  @Benchmark
+  public byte[] computeDynamicSecretKey() {
+    return jwtUtils.computeDynamicSecretKey(user.getId(), refreshExpiry);
+  }
+
+  @Benchmark
+  public String generateToken() {
+    return authenticationService.generateToken(user, "benchmark-jwt-id");
+  }
+
+  @Benchmark
+  public SignedJWT verifyToken() throws ParseException, JOSEException {
+    return pipeline.verifySignature(plainToken);
+  }
+
+  @Benchmark
+  public TokenVerificationPipeline.VerifiedToken verifyEncrypted() {
+    return pipeline.verify(encryptedToken);
+  }
+}
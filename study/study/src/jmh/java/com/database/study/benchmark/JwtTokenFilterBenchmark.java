@@ -0,0 +1,142 @@
+package com.database.study.benchmark;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.database.study.entity.ActiveToken;
+import com.database.study.repository.ActiveTokenRepository;
+import com.database.study.security.JwtTokenFilter;
+import com.database.study.security.JwtUtils;
+import com.database.study.service.ActiveTokenWriteBehindService;
+import com.database.study.service.EncryptionService;
+import com.database.study.service.SessionRegistryService;
+import com.database.study.service.impl.LocalSessionInvalidationChannel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.ServletException;
+
+/**
+ * The full JwtTokenFilter for an authenticated API request, against an H2
+ * database holding the active_tokens table. filter is the steady state with
+ * the session registry warm; filterRegistryMiss drops the session first so the
+ * filter has to load it from the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenFilterBenchmark {
+
+  LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+  EntityManager entityManager;
+  SessionRegistryService sessionRegistry;
+  JwtTokenFilter filter;
+  ActiveToken activeToken;
+  String authorizationHeader;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(
+        "jdbc:h2:mem:jwt-filter-benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+    entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+    entityManagerFactoryBean.setDataSource(dataSource);
+    entityManagerFactoryBean.setManagedTypes(PersistenceManagedTypes.of(ActiveToken.class.getName()));
+    entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+    entityManagerFactoryBean.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop"));
+    entityManagerFactoryBean.afterPropertiesSet();
+    EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+    entityManager = entityManagerFactory.createEntityManager();
+    ActiveTokenRepository activeTokenRepository = new JpaRepositoryFactory(entityManager)
+        .getRepository(ActiveTokenRepository.class);
+
+    JwtUtils jwtUtils = BenchmarkFixtures.newJwtUtils();
+    EncryptionService encryptionService = BenchmarkFixtures.newEncryptionService(2, true);
+    String jwtId = UUID.randomUUID().toString();
+    String encryptedToken = encryptionService.encryptToken(
+        BenchmarkFixtures.newAuthenticationService(jwtUtils).generateToken(BenchmarkFixtures.newUser(), jwtId));
+    activeToken = ActiveToken.builder()
+        .id(jwtId)
+        .username("administrator")
+        .token(encryptedToken)
+        .refreshToken(encryptionService.encryptToken("refresh-" + jwtId))
+        .expiryTime(BenchmarkFixtures.inOneHour())
+        .expiryRefreshTime(BenchmarkFixtures.inOneHour())
+        .description("benchmark")
+        .build();
+    entityManager.getTransaction().begin();
+    activeTokenRepository.save(activeToken);
+    entityManager.getTransaction().commit();
+
+    sessionRegistry = new SessionRegistryService(activeTokenRepository,
+        new LocalSessionInvalidationChannel("benchmark", new SimpleMeterRegistry()),
+        new ActiveTokenWriteBehindService(activeTokenRepository, new JdbcTemplate(dataSource),
+            new JpaTransactionManager(entityManagerFactory)));
+    sessionRegistry.register(activeToken);
+
+    filter = new JwtTokenFilter();
+    ReflectionTestUtils.setField(filter, "sessionRegistry", sessionRegistry);
+    ReflectionTestUtils.setField(filter, "tokenVerificationPipeline",
+        BenchmarkFixtures.newPipeline(encryptionService, jwtUtils));
+    authorizationHeader = "Bearer " + encryptedToken;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    entityManager.close();
+    entityManagerFactoryBean.destroy();
+  }
+
+  @Benchmark
+  public Object filter() throws ServletException, IOException {
+    return doFilter();
+  }
+
+  @Benchmark
+  public Object filterRegistryMiss() throws ServletException, IOException {
+    sessionRegistry.evict(activeToken);
+    return doFilter();
+  }
+
+  private Object doFilter() throws ServletException, IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/identify_service/users/my-info");
+    request.addHeader("Authorization", authorizationHeader);
+    MockFilterChain chain = new MockFilterChain();
+    try {
+      filter.doFilter(request, new MockHttpServletResponse(), chain);
+      return SecurityContextHolder.getContext().getAuthentication();
+    } finally {
+      SecurityContextHolder.clearContext();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.database.study.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.dto.response.CompactChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares serializing a chat message frame as the usual JSON and in the
+ * compact format of the .compact destinations. The frame sizes are printed
+ * once on setup, since bytes on the wire are what the compact format saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageEncodingBenchmark {
+
+  ObjectMapper objectMapper;
+  ChatMessageResponse message;
+
+  @Setup
+  public void setUp() throws JsonProcessingException {
+    objectMapper = new ObjectMapper();
+    message = ChatMessageResponse.builder()
+        .id("0192a4c5-7b3e-7f10-9a2d-5c8e1f0b6a47")
+        .content("Are we still meeting at the library after class today?")
+        .sender(new ChatMessageResponse.UserInfo("6f9619ff-8b86-d011-b42d-00c04fc964ff", "Alice Nguyen"))
+        .receiver(new ChatMessageResponse.UserInfo("1b4e28ba-2fa1-11d2-883f-0016d3cca427", "Bob Tran"))
+        .timestamp("2026-10-17T10:15:30.123")
+        .persistent(true)
+        .build();
+    System.out.printf("%nJSON frame: %d bytes, compact frame: %d bytes%n", json().length, compact().length);
+  }
+
+  @Benchmark
+  public byte[] json() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(message);
+  }
+
+  @Benchmark
+  public byte[] compact() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(CompactChatMessage.from(message));
+  }
+}
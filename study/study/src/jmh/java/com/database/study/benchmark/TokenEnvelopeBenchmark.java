@@ -0,0 +1,61 @@
+package com.database.study.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.database.study.service.EncryptionService;
+
+/**
+ * Compares the legacy PBKDF2 token envelope with the HKDF (version 2) envelope.
+ * The token caches are disabled so every call pays the full key derivation,
+ * which is what a request carrying a token not seen before costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenEnvelopeBenchmark {
+
+  // Realistic access token: HS512 with userId, refreshExpiry and a scope claim
+  static final String PLAIN_JWT = "eyJhbGciOiJIUzUxMiJ9."
+      + "eyJzdWIiOiJhZG1pbmlzdHJhdG9yIiwidXNlcklkIjoiNmY5NjE5ZmYtOGI4Ni1kMDExLWI0MmQtMDBjMDRmYzk2NGZmIiwi"
+      + "cmVmcmVzaEV4cGlyeSI6IjIwMjYxMDI0MTIwMDAwIiwiaXNzIjoidG9tbWVtLmNvbSIsImV4cCI6MTc5MjgwMDAwMCwiaWF0"
+      + "IjoxNzkyNzk2NDAwLCJqdGkiOiI1YjVkMmQ5YS0xYzFmLTRhYjMtYjg3Ni0xNmI1YzBiYTk2NDQiLCJzY29wZSI6IlJPTEVf"
+      + "QURNSU4gQ1JFQVRFX0RBVEEgUkVBRF9EQVRBIFVQREFURV9EQVRBIERFTEVURV9EQVRBIn0."
+      + "n8cN3o8r3xqkZq6jvZ0Yl8o6cE0qQw1f8q2a7Kx0m3d4nM1wq6YbV9hN0pQy8xT2sRk7uLc5eJd4aFg3bHi1Jw";
+
+  @Param({ "1", "2" })
+  int envelopeVersion;
+
+  EncryptionService encryptionService;
+  String encryptedToken;
+
+  @Setup
+  public void setUp() {
+    encryptionService = BenchmarkFixtures.newEncryptionService(envelopeVersion, false);
+    encryptedToken = encryptionService.encryptToken(PLAIN_JWT);
+  }
+
+  @Benchmark
+  public String encryptToken() {
+    return encryptionService.encryptToken(PLAIN_JWT);
+  }
+
+  @Benchmark
+  public String decryptToken() {
+    return encryptionService.decryptToken(encryptedToken);
+  }
+}
@@ -0,0 +1,72 @@
+package com.database.study.benchmark;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.database.study.entity.TotpSecret;
+import com.database.study.repository.TotpSecretRepository;
+import com.database.study.repository.TotpUsedCodeRepository;
+import com.database.study.service.EncryptionService;
+import com.database.study.service.TotpService;
+
+/**
+ * TOTP verification with an encrypted secret. The code never matches, so each
+ * call decrypts the secret and computes every code in the accepted window,
+ * which is the upper bound of a verification. Repositories are stubbed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TotpBenchmark {
+
+  TotpService totpService;
+
+  @Setup
+  public void setUp() {
+    EncryptionService encryptionService = BenchmarkFixtures.newEncryptionService(2, true);
+    TotpSecret secret = TotpSecret.builder()
+        .username("administrator")
+        .secretKey(encryptionService.encryptTotpSecret(BenchmarkFixtures.TOTP_SECRET))
+        .secretEncrypted(true)
+        .active(true)
+        .createdAt(LocalDateTime.now())
+        .build();
+
+    TotpSecretRepository totpSecretRepository = mock(TotpSecretRepository.class);
+    when(totpSecretRepository.findAllByUsernameAndActive(eq("administrator"), eq(true)))
+        .thenAnswer(invocation -> new ArrayList<>(List.of(secret)));
+    TotpUsedCodeRepository totpUsedCodeRepository = mock(TotpUsedCodeRepository.class);
+    when(totpUsedCodeRepository.existsByUsernameAndCodeAndTimeWindow(anyString(), anyString(), anyLong()))
+        .thenReturn(false);
+
+    totpService = new TotpService(totpSecretRepository, totpUsedCodeRepository, null, null, null, null, null,
+        encryptionService);
+  }
+
+  @Benchmark
+  public boolean verifyCode() {
+    return totpService.verifyCode("administrator", "000000");
+  }
+}
@@ -0,0 +1,274 @@
+package com.database.study.config;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded outbound queue per WebSocket session, in front of the client
+ * outbound channel.
+ *
+ * Frames for a session are handed to the outbound pool one at a time and in
+ * order, so a client that stops reading holds at most one pool thread and its
+ * backlog waits here instead of in unbounded broker and socket buffers. When
+ * a queue is full the overflow policy applies: DROP_EPHEMERAL removes the
+ * oldest queued ephemeral frame (typing, presence, heartbeat) and closes the
+ * session only when there is none, DISCONNECT closes it right away. A session
+ * whose frame has been sending longer than the send time limit is closed as
+ * well; the time starts when a pool thread picks the frame up, so waiting in
+ * the pool queue behind other sessions does not count. The length of a
+ * queue is recorded on every frame, so slow clients show up in the histogram
+ * before they are closed.
+ */
+@Slf4j
+public class SessionOutboundQueues implements ExecutorChannelInterceptor, MeterBinder {
+
+    public enum OverflowPolicy {
+        DROP_EPHEMERAL, DISCONNECT;
+
+        public static OverflowPolicy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final String[] ephemeralDestinations;
+    private final long sendTimeLimitMs;
+    // Closing may block on a stalled socket, so it never runs on the broker or pool threads
+    private final Executor closeExecutor;
+
+    private final Map<String, SessionQueue> queues = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private volatile DistributionSummary queueLength;
+
+    public SessionOutboundQueues(int capacity, OverflowPolicy overflowPolicy, String[] ephemeralDestinations,
+            long sendTimeLimitMs) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.ephemeralDestinations = ephemeralDestinations;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("websocket-evict-");
+        threadFactory.setDaemon(true);
+        this.closeExecutor = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        queueLength = DistributionSummary.builder("chat.websocket.session.queue.length")
+                .description("Frames waiting for one WebSocket session, recorded on every frame")
+                .publishPercentileHistogram()
+                .maximumExpectedValue((double) capacity)
+                .register(registry);
+        registry.gauge("chat.websocket.session.queues", queues, Map::size);
+        FunctionCounter.builder("chat.websocket.session.queue.dropped", dropped, LongAdder::doubleValue)
+                .description("Frames dropped from full session queues or not accepted by the outbound pool")
+                .register(registry);
+    }
+
+    public void register(WebSocketSession session) {
+        queues.put(session.getId(), new SessionQueue(session));
+    }
+
+    public void unregister(String sessionId) {
+        SessionQueue queue = queues.remove(sessionId);
+        if (queue != null) {
+            synchronized (queue) {
+                queue.closed = true;
+                queue.frames.clear();
+            }
+        }
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionQueue queue = sessionId != null ? queues.get(sessionId) : null;
+        if (queue == null) {
+            return message;
+        }
+        int length;
+        synchronized (queue) {
+            if (queue.inFlight == message) {
+                // Released by drain()
+                return message;
+            }
+            if (queue.closed) {
+                return null;
+            }
+            boolean stalled = queue.inFlight != null && queue.inFlightSince != 0
+                    && System.currentTimeMillis() - queue.inFlightSince > sendTimeLimitMs;
+            if (stalled || queue.frames.size() >= capacity) {
+                if (stalled || overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    evict(queue, stalled ? "send time limit exceeded" : "queue full");
+                    return null;
+                }
+                if (!dropOldestEphemeral(queue)) {
+                    if (!isEphemeral(message)) {
+                        evict(queue, "queue full of non-ephemeral frames");
+                        return null;
+                    }
+                    // The new frame is the only ephemeral one
+                    dropped.increment();
+                    return null;
+                }
+            }
+            queue.frames.add(message);
+            length = queue.frames.size();
+        }
+        DistributionSummary summary = queueLength;
+        if (summary != null) {
+            summary.record(length);
+        }
+        drain(queue, channel);
+        return null;
+    }
+
+    @Override
+    public Message<?> beforeHandle(@NonNull Message<?> message, @NonNull MessageChannel channel,
+            @NonNull MessageHandler handler) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionQueue queue = sessionId != null ? queues.get(sessionId) : null;
+        if (queue != null) {
+            synchronized (queue) {
+                if (queue.inFlight == message) {
+                    queue.inFlightSince = System.currentTimeMillis();
+                }
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+            @NonNull MessageHandler handler, @Nullable Exception ex) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionQueue queue = sessionId != null ? queues.get(sessionId) : null;
+        if (queue == null) {
+            return;
+        }
+        synchronized (queue) {
+            if (queue.inFlight != message) {
+                return;
+            }
+            queue.inFlight = null;
+        }
+        drain(queue, channel);
+    }
+
+    /**
+     * Hand the next frame of a session to the channel unless one is in flight
+     */
+    private void drain(SessionQueue queue, MessageChannel channel) {
+        while (true) {
+            Message<?> next;
+            synchronized (queue) {
+                if (queue.closed || queue.inFlight != null || queue.frames.isEmpty()) {
+                    return;
+                }
+                next = queue.frames.poll();
+                queue.inFlight = next;
+                // Set by beforeHandle when a pool thread starts sending it
+                queue.inFlightSince = 0;
+            }
+            try {
+                if (channel.send(next)) {
+                    // afterMessageHandled releases the following frame
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Outbound pool did not accept a frame for session {}: {}", queue.session.getId(),
+                        e.getMessage());
+            }
+            synchronized (queue) {
+                if (queue.inFlight == next) {
+                    queue.inFlight = null;
+                }
+            }
+            dropped.increment();
+        }
+    }
+
+    private boolean dropOldestEphemeral(SessionQueue queue) {
+        Iterator<Message<?>> frames = queue.frames.iterator();
+        while (frames.hasNext()) {
+            if (isEphemeral(frames.next())) {
+                frames.remove();
+                dropped.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isEphemeral(Message<?> message) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (type == SimpMessageType.HEARTBEAT) {
+            return true;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (type != SimpMessageType.MESSAGE || destination == null) {
+            return false;
+        }
+        for (String suffix : ephemeralDestinations) {
+            if (destination.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Called with the queue locked
+    private void evict(SessionQueue queue, String reason) {
+        WebSocketSession session = queue.session;
+        log.warn("Closing WebSocket session {} of {}: {} with {} frames queued", session.getId(),
+                session.getPrincipal() != null ? session.getPrincipal().getName() : "anonymous", reason,
+                queue.frames.size());
+        dropped.add(queue.frames.size());
+        queue.closed = true;
+        queue.frames.clear();
+        closeExecutor.execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception e) {
+                log.debug("Error closing WebSocket session {}: {}", session.getId(), e.getMessage());
+            }
+        });
+    }
+
+    private static final class SessionQueue {
+        final WebSocketSession session;
+        final ArrayDeque<Message<?>> frames = new ArrayDeque<>();
+        Message<?> inFlight;
+        // 0 while the frame in flight still waits in the pool queue
+        long inFlightSince;
+        boolean closed;
+
+        SessionQueue(WebSocketSession session) {
+            this.session = session;
+        }
+    }
+}
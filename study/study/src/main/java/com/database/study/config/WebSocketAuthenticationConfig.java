@@ -15,14 +15,21 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import com.database.study.exception.AppException;
+import com.database.study.exception.ErrorCode;
 import com.database.study.security.JwtTokenProvider;
+import com.database.study.security.TokenVerificationPipeline;
+import com.database.study.service.SessionRegistryService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -35,6 +42,8 @@ import lombok.extern.slf4j.Slf4j;
 public class WebSocketAuthenticationConfig implements WebSocketMessageBrokerConfigurer {
 
     private final JwtTokenProvider jwtTokenProvider;
+    private final TokenVerificationPipeline tokenVerificationPipeline;
+    private final SessionRegistryService sessionRegistry;
 
     @Override
     public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
@@ -50,7 +59,7 @@ public class WebSocketAuthenticationConfig implements WebSocketMessageBrokerConf
                     if (token != null) {
                         try {
                             // Validate token and set authentication
-                            Authentication auth = jwtTokenProvider.getAuthentication(token);
+                            Authentication auth = authenticate(token);
                             SecurityContextHolder.getContext().setAuthentication(auth);
                             accessor.setUser(auth);
                             log.info("WebSocket connection authenticated for user: {}", auth.getName());
@@ -70,6 +79,24 @@ public class WebSocketAuthenticationConfig implements WebSocketMessageBrokerConf
                 return message;
             }
 
+            /**
+             * Authenticates the encrypted client token through the shared verification
+             * pipeline, falling back to JwtTokenProvider for plain tokens
+             */
+            private Authentication authenticate(String token) {
+                TokenVerificationPipeline.VerifiedToken verifiedToken;
+                try {
+                    verifiedToken = tokenVerificationPipeline.verify(token);
+                } catch (AppException e) {
+                    return jwtTokenProvider.getAuthentication(token);
+                }
+                if (sessionRegistry.findByAccessToken(verifiedToken.getSubject(), token) == null) {
+                    throw new AppException(ErrorCode.INVALID_TOKEN);
+                }
+                UserDetails userDetails = new User(verifiedToken.getSubject(), "", verifiedToken.getAuthorities());
+                return new UsernamePasswordAuthenticationToken(userDetails, "", verifiedToken.getAuthorities());
+            }
+
             private String extractTokenFromHeaders(StompHeaderAccessor accessor) {
                 // Try to get token from Authorization header
                 String authorization = accessor.getFirstNativeHeader("Authorization");
@@ -1,36 +1,139 @@
 package com.database.study.config;
 
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * STOMP over WebSocket. The broker is the in-memory simple broker, or with
+ * chat.websocket.broker=relay an external STOMP broker such as RabbitMQ or
+ * ActiveMQ running next to the application (needs reactor-netty on the
+ * classpath). Frames from and to clients run on bounded pools
+ * (chat.websocket.inbound / outbound); when a pool and its queue are full the
+ * frame is rejected instead of queued without limit. Frames to one session
+ * wait in a bounded queue of their own (chat.websocket.session-queue, see
+ * {@link SessionOutboundQueues}). Sessions that cannot take frames within the
+ * send time, buffer or queue limit are closed and counted as slow consumers.
+ */
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 @Order(Ordered.HIGHEST_PRECEDENCE + 100)
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${chat.websocket.broker:simple}")
+    private String broker;
+
+    @Value("${chat.websocket.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    @Value("${chat.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${chat.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${chat.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${chat.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${chat.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${chat.websocket.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+
+    @Value("${chat.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${chat.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${chat.websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${chat.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${chat.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${chat.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${chat.websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${chat.websocket.session-queue.capacity:1000}")
+    private int sessionQueueCapacity;
+
+    @Value("${chat.websocket.session-queue.overflow:drop-ephemeral}")
+    private String sessionQueueOverflow;
+
+    @Value("${chat.websocket.session-queue.ephemeral-destinations:/queue/typing,/queue/presence}")
+    private String[] ephemeralDestinations;
+
+    private final ThreadPoolTaskExecutor inboundExecutor = new ThreadPoolTaskExecutor();
+    private final ThreadPoolTaskExecutor outboundExecutor = new ThreadPoolTaskExecutor();
+    private final LongAdder slowConsumers = new LongAdder();
+    private SessionOutboundQueues sessionQueues;
+
+    @PostConstruct
+    public void init() {
+        sessionQueues = new SessionOutboundQueues(sessionQueueCapacity,
+            SessionOutboundQueues.OverflowPolicy.parse(sessionQueueOverflow), ephemeralDestinations, sendTimeLimitMs);
+    }
+
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
-        // Enable a simple in-memory message broker with increased buffer sizes and heartbeat
-        config.enableSimpleBroker("/topic", "/queue", "/user")
-            .setTaskScheduler(taskScheduler())
-            .setHeartbeatValue(new long[] {10000, 10000});
-        
+        if ("relay".equals(broker)) {
+            config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayLogin)
+                .setClientPasscode(relayPasscode)
+                .setSystemLogin(relayLogin)
+                .setSystemPasscode(relayPasscode)
+                .setSystemHeartbeatSendInterval(heartbeatMs)
+                .setSystemHeartbeatReceiveInterval(heartbeatMs);
+        } else {
+            // Enable a simple in-memory message broker with increased buffer sizes and heartbeat
+            config.enableSimpleBroker("/topic", "/queue", "/user")
+                .setTaskScheduler(taskScheduler())
+                .setHeartbeatValue(new long[] {heartbeatMs, heartbeatMs});
+        }
+
         // Set prefix for client-to-server messages
         config.setApplicationDestinationPrefixes("/app");
-        
+
         // Enable user-specific messaging with the /user prefix
         config.setUserDestinationPrefix("/user");
     }
-    
+
     @Bean
     public TaskScheduler taskScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
@@ -40,6 +143,68 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         return scheduler;
     }
 
+    @Override
+    public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
+        inboundExecutor.setCorePoolSize(inboundCorePoolSize);
+        inboundExecutor.setMaxPoolSize(inboundMaxPoolSize);
+        inboundExecutor.setQueueCapacity(inboundQueueCapacity);
+        inboundExecutor.setThreadNamePrefix("websocket-inbound-");
+        registration.taskExecutor(inboundExecutor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(@NonNull ChannelRegistration registration) {
+        outboundExecutor.setCorePoolSize(outboundCorePoolSize);
+        outboundExecutor.setMaxPoolSize(outboundMaxPoolSize);
+        outboundExecutor.setQueueCapacity(outboundQueueCapacity);
+        outboundExecutor.setThreadNamePrefix("websocket-outbound-");
+        registration.taskExecutor(outboundExecutor);
+        // Bounded queue per session, which also keeps frames to one session in order on the pool
+        registration.interceptors(sessionQueues);
+    }
+
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+            .setSendBufferSizeLimit(sendBufferSizeLimit)
+            .setMessageSizeLimit(messageSizeLimit)
+            .addDecoratorFactory(handler -> new WebSocketHandlerDecorator(handler) {
+                @Override
+                public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                    sessionQueues.register(session);
+                    super.afterConnectionEstablished(session);
+                }
+
+                @Override
+                public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status)
+                        throws Exception {
+                    sessionQueues.unregister(session.getId());
+                    // Closed by the server because sends exceeded the time, buffer or queue limit
+                    if (CloseStatus.SESSION_NOT_RELIABLE.equals(status)) {
+                        slowConsumers.increment();
+                        log.warn("Closed slow WebSocket session {} of {}", session.getId(),
+                            session.getPrincipal() != null ? session.getPrincipal().getName() : "anonymous");
+                    }
+                    super.afterConnectionClosed(session, status);
+                }
+            });
+    }
+
+    @Bean
+    public MeterBinder webSocketChannelMetrics() {
+        return registry -> {
+            registry.gauge("chat.websocket.inbound.queue.depth", inboundExecutor, ThreadPoolTaskExecutor::getQueueSize);
+            registry.gauge("chat.websocket.inbound.active", inboundExecutor, ThreadPoolTaskExecutor::getActiveCount);
+            registry.gauge("chat.websocket.outbound.queue.depth", outboundExecutor,
+                ThreadPoolTaskExecutor::getQueueSize);
+            registry.gauge("chat.websocket.outbound.active", outboundExecutor, ThreadPoolTaskExecutor::getActiveCount);
+            sessionQueues.bindTo(registry);
+            FunctionCounter.builder("chat.websocket.slow.consumers", slowConsumers, LongAdder::doubleValue)
+                .description("Sessions closed because they did not take frames within the send or queue limits")
+                .register(registry);
+        };
+    }
+
     @Override
     public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
         // Register STOMP endpoints
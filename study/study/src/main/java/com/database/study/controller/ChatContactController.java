@@ -31,6 +31,7 @@ import com.database.study.entity.User;
 import com.database.study.repository.ChatContactRepository;
 import com.database.study.repository.UserRepository;
 import com.database.study.service.ChatContactService;
+import com.database.study.service.PresenceService;
 
 @RestController
 @RequestMapping("/chat")
@@ -49,6 +50,9 @@ public class ChatContactController {
     @Autowired
     private ChatContactService chatContactService;
 
+    @Autowired
+    private PresenceService presenceService;
+
     // In-memory storage for messages - we'll keep these in memory for now
     private final Map<String, List<ChatMessageResponse>> messages = new HashMap<>();
     private final Map<String, Integer> unreadCounts = new HashMap<>();
@@ -330,6 +334,19 @@ public class ChatContactController {
     // // Implementation moved to ChatMessageController
     // }
 
+    /**
+     * Online state of all accepted contacts of the current user, keyed by
+     * contact id. Changes after this call arrive on /user/queue/presence.
+     */
+    @GetMapping("/contacts/presence")
+    public ResponseEntity<Map<String, Boolean>> getContactPresence() {
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(presenceService.getContactPresence(currentUser.getId()));
+    }
+
     /**
      * Get pending contact requests for the current user
      * 
@@ -14,6 +14,7 @@ import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -23,7 +24,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.database.study.dto.ChatGroupDTO;
 import com.database.study.dto.request.AddGroupMembersRequest;
@@ -31,6 +34,7 @@ import com.database.study.dto.request.ChatMessageRequest;
 import com.database.study.dto.request.CreateGroupRequest;
 import com.database.study.dto.request.UpdateGroupRequest;
 import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.dto.response.MessageSliceResponse;
 import com.database.study.entity.User;
 import com.database.study.exception.AppException;
 import com.database.study.exception.ErrorCode;
@@ -180,38 +184,33 @@ public class ChatGroupController {
         return ResponseEntity.ok().build();
     }
 
-    // Get messages for a group
-    @GetMapping("/{groupId}/messages")
-    public ResponseEntity<List<ChatMessageResponse>> getGroupMessages(
+    // Cursor paged group history; pass nextCursor as before for older messages
+    @GetMapping(value = "/{groupId}/messages", params = "limit")
+    public ResponseEntity<MessageSliceResponse> getGroupMessagesBefore(
             @PathVariable UUID groupId,
+            @RequestParam(required = false) String before,
+            @RequestParam int limit,
             Authentication authentication) {
-        try {
-            String username = authentication.getName();
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
-            UUID userId = user.getId();
+        User user = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        chatMessageService.checkGroupAccess(groupId, user.getId());
 
-            try {
-                // Check if user is a member of the group
-                ChatGroupDTO group = chatGroupService.getGroupDetails(groupId, userId);
-                if (group == null) {
-                    throw new AppException(ErrorCode.UNAUTHORIZED_ACCESS);
-                }
+        return ResponseEntity.ok(chatMessageService.getGroupMessagesBefore(groupId, before, limit));
+    }
 
-                // Get messages for the group
-                List<ChatMessageResponse> messages = chatMessageService.getGroupMessages(groupId, userId);
-                return ResponseEntity.ok(messages);
-            } catch (com.database.study.exception.ResourceNotFoundException e) {
-                // Log the error and return a more specific error message
-                System.err.println("Group not found when getting messages: " + e.getMessage());
-                throw new AppException(ErrorCode.RESOURCE_NOT_FOUND, "Group with ID " + groupId + " not found");
-            }
-        } catch (AppException e) {
-            throw e;
-        } catch (Exception e) {
-            System.err.println("Error getting group messages: " + e.getMessage());
-            throw new AppException(ErrorCode.GENERAL_EXCEPTION);
-        }
+    // Whole group history streamed as a JSON array, newest first, one slice at a time;
+    // the optional stream=true of older clients is ignored
+    @GetMapping(value = "/{groupId}/messages", params = "!limit")
+    public ResponseEntity<StreamingResponseBody> streamGroupMessages(
+            @PathVariable UUID groupId,
+            @RequestParam(required = false) String before,
+            Authentication authentication) {
+        User user = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        chatMessageService.checkGroupAccess(groupId, user.getId());
+
+        StreamingResponseBody body = out -> chatMessageService.writeGroupMessages(groupId, before, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     // Send a message to a group
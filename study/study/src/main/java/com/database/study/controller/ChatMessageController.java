@@ -24,11 +24,14 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.database.study.dto.request.ChatMessageRequest;
 import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.dto.response.MessageSliceResponse;
 import com.database.study.entity.User;
 import com.database.study.exception.AppException;
 import com.database.study.exception.ErrorCode;
 import com.database.study.repository.UserRepository;
 import com.database.study.service.ChatMessageService;
+import com.database.study.service.EphemeralMessageService;
+import com.database.study.service.MessageSearchService;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -41,6 +44,8 @@ import lombok.extern.slf4j.Slf4j;
 public class ChatMessageController {
 
     private final ChatMessageService messageService;
+    private final EphemeralMessageService ephemeralMessageService;
+    private final MessageSearchService messageSearchService;
     private final UserRepository userRepository;
 
     @PostMapping("/message-service/send")
@@ -64,7 +69,7 @@ public class ChatMessageController {
             }
         }
 
-        ChatMessageResponse response = messageService.sendMessage(username, request);
+        ChatMessageResponse response = send(username, request);
         return ResponseEntity.ok(response);
     }
 
@@ -89,10 +94,18 @@ public class ChatMessageController {
             }
         }
 
-        ChatMessageResponse response = messageService.sendMessage(username, request);
+        ChatMessageResponse response = send(username, request);
         return ResponseEntity.ok(response);
     }
 
+    // Messages that are not stored skip the transactional path
+    private ChatMessageResponse send(String username, ChatMessageRequest request) {
+        if (Boolean.FALSE.equals(request.getPersistent())) {
+            return ephemeralMessageService.send(username, request);
+        }
+        return messageService.sendMessage(username, request);
+    }
+
     @GetMapping("/messages/{contactId}")
     public ResponseEntity<List<ChatMessageResponse>> getMessages(@PathVariable String contactId) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -126,6 +139,41 @@ public class ChatMessageController {
         return ResponseEntity.ok(messages);
     }
 
+    /**
+     * Messages containing all words of q, newest first, in the conversation
+     * with contactId, in groupId, or in all conversations of the user. Pass
+     * the nextCursor of a slice as before to get the next, older slice.
+     */
+    @GetMapping("/messages/search")
+    public ResponseEntity<MessageSliceResponse> searchMessages(
+            @RequestParam String q,
+            @RequestParam(required = false) String contactId,
+            @RequestParam(required = false) String groupId,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String username = auth.getName();
+
+        return ResponseEntity.ok(messageSearchService.search(username, q, contactId, groupId, before, limit));
+    }
+
+    /**
+     * Cursor paged history with another user, selected by the limit parameter.
+     * Pass the nextCursor of a slice as before to get the next, older slice.
+     */
+    @GetMapping(value = "/conversation/{otherUserId}", params = "limit")
+    public ResponseEntity<MessageSliceResponse> getMessagesBetweenUsersBefore(
+            @PathVariable String otherUserId,
+            @RequestParam(required = false) String before,
+            @RequestParam int limit) {
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String username = auth.getName();
+
+        return ResponseEntity.ok(messageService.getMessagesBetweenUsersBefore(username, otherUserId, before, limit));
+    }
+
     @GetMapping("/conversation/id/{conversationId}")
     public ResponseEntity<Page<ChatMessageResponse>> getMessagesByConversationId(
             @PathVariable String conversationId,
@@ -140,6 +188,24 @@ public class ChatMessageController {
         return ResponseEntity.ok(messages);
     }
 
+    /**
+     * Cursor paged history of a conversation of the user, selected by the
+     * limit parameter. Pass the nextCursor of a slice as before to get the
+     * next, older slice.
+     */
+    @GetMapping(value = "/conversation/id/{conversationId}", params = "limit")
+    public ResponseEntity<MessageSliceResponse> getMessagesByConversationIdBefore(
+            @PathVariable String conversationId,
+            @RequestParam(required = false) String before,
+            @RequestParam int limit) {
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String username = auth.getName();
+
+        return ResponseEntity.ok(messageService.getConversationMessagesBefore(username, conversationId, before,
+                limit));
+    }
+
     @PutMapping("/read/{conversationId}")
     public ResponseEntity<Void> markMessagesAsRead(@PathVariable String conversationId) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
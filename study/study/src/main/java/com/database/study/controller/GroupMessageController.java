@@ -1,9 +1,9 @@
 package com.database.study.controller;
 
-import java.util.List;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.database.study.dto.ChatGroupDTO;
 import com.database.study.dto.request.ChatMessageRequest;
@@ -44,38 +45,17 @@ public class GroupMessageController {
     return ResponseEntity.ok("GroupMessageController is working!");
   }
 
-  // Get messages for a group
+  // Whole group history streamed as a JSON array, newest first, one slice at a time
   @GetMapping("/{groupId}")
-  public ResponseEntity<List<ChatMessageResponse>> getGroupMessages(
+  public ResponseEntity<StreamingResponseBody> getGroupMessages(
       @PathVariable UUID groupId,
       Authentication authentication) {
-    try {
-      String username = authentication.getName();
-      User user = userRepository.findByUsername(username)
-          .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
-      UUID userId = user.getId();
+    User user = userRepository.findByUsername(authentication.getName())
+        .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+    chatMessageService.checkGroupAccess(groupId, user.getId());
 
-      try {
-        // Check if user is a member of the group
-        ChatGroupDTO group = chatGroupService.getGroupDetails(groupId, userId);
-        if (group == null) {
-          throw new AppException(ErrorCode.UNAUTHORIZED_ACCESS);
-        }
-
-        // Get messages for the group
-        List<ChatMessageResponse> messages = chatMessageService.getGroupMessages(groupId, userId);
-        return ResponseEntity.ok(messages);
-      } catch (com.database.study.exception.ResourceNotFoundException e) {
-        // Log the error and return a more specific error message
-        System.err.println("Group not found when getting messages: " + e.getMessage());
-        throw new AppException(ErrorCode.RESOURCE_NOT_FOUND, "Group with ID " + groupId + " not found");
-      }
-    } catch (AppException e) {
-      throw e;
-    } catch (Exception e) {
-      System.err.println("Error getting group messages: " + e.getMessage());
-      throw new AppException(ErrorCode.GENERAL_EXCEPTION);
-    }
+    StreamingResponseBody body = out -> chatMessageService.writeGroupMessages(groupId, null, out);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
   }
 
   // Send a message to a group
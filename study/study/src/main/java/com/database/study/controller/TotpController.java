@@ -11,13 +11,13 @@ import com.database.study.entity.TotpResetRequest;
 import com.database.study.exception.AppException;
 import com.database.study.exception.ErrorCode;
 import com.database.study.service.TotpService;
+import com.database.study.security.ScopeAuthorityCache;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
@@ -255,7 +255,7 @@ public class TotpController {
     public ApiResponse<Void> adminResetTotp(@PathVariable String username) {
         // Verify the current user has admin privileges
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        boolean isAdmin = auth.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"));
+        boolean isAdmin = ScopeAuthorityCache.isAdmin(auth);
         
         if (!isAdmin) {
             throw new AppException(ErrorCode.UNAUTHORIZED_ACCESS);
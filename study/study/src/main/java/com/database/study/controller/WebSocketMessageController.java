@@ -2,8 +2,6 @@ package com.database.study.controller;
 
 import java.util.UUID;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -14,13 +12,14 @@ import org.springframework.stereotype.Controller;
 import com.database.study.dto.request.ChatMessageRequest;
 import com.database.study.dto.response.ChatMessageResponse;
 import com.database.study.dto.response.WebSocketErrorResponse;
-import com.database.study.entity.ChatMessage;
 import com.database.study.entity.User;
 import com.database.study.exception.AppException;
 import com.database.study.exception.ErrorCode;
-import com.database.study.repository.ChatMessageRepository;
 import com.database.study.repository.UserRepository;
 import com.database.study.service.ChatMessageService;
+import com.database.study.service.EphemeralMessageService;
+import com.database.study.service.MessageFrameService;
+import com.database.study.service.TypingIndicatorService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,8 +31,10 @@ public class WebSocketMessageController {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatMessageService messageService;
+    private final EphemeralMessageService ephemeralMessageService;
+    private final TypingIndicatorService typingIndicatorService;
+    private final MessageFrameService frameService;
     private final UserRepository userRepository;
-    private final ChatMessageRepository messageRepository;
 
     @MessageMapping("/chat.sendMessage")
     public void sendMessage(@Payload ChatMessageRequest ChatMessageRequest, Authentication authentication) {
@@ -62,6 +63,13 @@ public class WebSocketMessageController {
         log.info("Message persistence: {}", ChatMessageRequest.getPersistent());
 
         try {
+            // Messages that are not stored go straight to the broker
+            if (Boolean.FALSE.equals(ChatMessageRequest.getPersistent())) {
+                ChatMessageResponse response = ephemeralMessageService.send(username, ChatMessageRequest);
+                frameService.sendToUser(response.getSender().getId(), "/queue/messages", response);
+                return;
+            }
+
             // Process and save the message
             log.info("Processing message with messageService.sendMessage");
             ChatMessageResponse response = messageService.sendMessage(username, ChatMessageRequest);
@@ -73,10 +81,8 @@ public class WebSocketMessageController {
 
             // Send to the specific user using their ID
             log.info("Sending message to receiver ID: {}", receiver.getId());
-            messagingTemplate.convertAndSendToUser(
-                    receiver.getId().toString(),
-                    "/queue/messages",
-                    response);
+            MessageFrameService.Frames frames = frameService.encode(response);
+            frameService.send(receiver.getId().toString(), "/queue/messages", frames);
             log.info("Message sent to receiver successfully");
 
             // Find the sender user to get their ID
@@ -85,10 +91,7 @@ public class WebSocketMessageController {
 
             // Also send back to sender for confirmation using their ID
             log.info("Sending confirmation back to sender ID: {}", sender.getId());
-            messagingTemplate.convertAndSendToUser(
-                    sender.getId().toString(),
-                    "/queue/messages",
-                    response);
+            frameService.send(sender.getId().toString(), "/queue/messages", frames);
             log.info("Confirmation sent to sender successfully");
         } catch (AppException e) {
             log.error("Application error processing WebSocket message: {}", e.getMessage(), e);
@@ -133,33 +136,14 @@ public class WebSocketMessageController {
         log.debug("User {} is typing to user {}", username, notification.getReceiverId());
 
         try {
-            // Find the sender by username
-            User sender = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
-
-            // Find the receiver by UUID
-            User receiver = userRepository.findById(UUID.fromString(notification.getReceiverId()))
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
-
-            // Add sender information
-            notification.setSenderId(sender.getId().toString());
-
-            // Send typing notification to the recipient using their ID
-            messagingTemplate.convertAndSendToUser(
-                    receiver.getId().toString(),
-                    "/queue/typing",
-                    notification);
-            log.debug("Typing notification sent to receiver ID: {}", receiver.getId());
+            // Coalesced per sender and receiver, without database reads
+            typingIndicatorService.typing(username, notification.getReceiverId(), notification.getTyping());
         } catch (AppException e) {
             log.error("Application error sending typing notification: {}", e.getMessage(), e);
         } catch (IllegalArgumentException e) {
             log.error("Invalid UUID format in typing notification: {}", e.getMessage(), e);
-        } catch (MessagingException e) {
-            log.error("Messaging error sending typing notification: {}", e.getMessage(), e);
         } catch (RuntimeException e) {
             log.error("Runtime error sending typing notification: {}", e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("Unexpected error sending typing notification", e);
         }
     }
 
@@ -262,19 +246,6 @@ public class WebSocketMessageController {
             messageService.markMessagesAsRead(username, conversationId);
             log.info("Messages marked as read successfully");
 
-            // Verify that messages were marked as read
-            Page<ChatMessage> messages = messageRepository.findByConversationIdOrderByTimestampDesc(conversationId,
-                    Pageable.unpaged());
-            int unreadCount = 0;
-            for (ChatMessage message : messages) {
-                if (message.getReceiver().equals(user) && !message.isRead()) {
-                    unreadCount++;
-                    log.warn("Message {} is still unread after marking as read", message.getId());
-                }
-            }
-            log.info("After marking as read, there are {} unread messages for user {} in conversation {}",
-                    unreadCount, username, conversationId);
-
             // Send confirmation back to the sender using their ID
             ReadStatusResponse senderResponse = new ReadStatusResponse(request.getContactId(), true,
                     request.getMessageId());
@@ -462,7 +433,8 @@ public class WebSocketMessageController {
     public static class TypingNotification {
         private String senderId;
         private String receiverId;
-        private boolean typing;
+        // Null when the client sends only the receiver, which means typing
+        private Boolean typing;
 
         public String getSenderId() {
             return senderId;
@@ -480,11 +452,11 @@ public class WebSocketMessageController {
             this.receiverId = receiverId;
         }
 
-        public boolean isTyping() {
+        public Boolean getTyping() {
             return typing;
         }
 
-        public void setTyping(boolean typing) {
+        public void setTyping(Boolean typing) {
             this.typing = typing;
         }
     }
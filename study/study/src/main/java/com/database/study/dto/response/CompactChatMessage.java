@@ -0,0 +1,96 @@
+package com.database.study.dto.response;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Chat message in the compact frame format sent to the .compact variants of
+ * the message destinations: one or two letter field names, users as
+ * [id, name] pairs, and fields at their usual value left out
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CompactChatMessage {
+    /**
+     * Unique identifier for the message
+     */
+    @JsonProperty("i")
+    private String id;
+
+    /**
+     * The content of the message
+     */
+    @JsonProperty("c")
+    private String content;
+
+    /**
+     * Sender as [id, name]
+     */
+    @JsonProperty("s")
+    private List<String> sender;
+
+    /**
+     * Receiver as [id, name] (left out for group messages)
+     */
+    @JsonProperty("r")
+    private List<String> receiver;
+
+    /**
+     * Timestamp of the message
+     */
+    @JsonProperty("t")
+    private String timestamp;
+
+    /**
+     * Group ID (for group messages)
+     */
+    @JsonProperty("g")
+    private String groupId;
+
+    /**
+     * Group name (for group messages)
+     */
+    @JsonProperty("gn")
+    private String groupName;
+
+    /**
+     * True when the message has been read, left out otherwise
+     */
+    @JsonProperty("rd")
+    private Boolean read;
+
+    /**
+     * False when the message is not stored, left out otherwise
+     */
+    @JsonProperty("p")
+    private Boolean persistent;
+
+    public static CompactChatMessage from(ChatMessageResponse response) {
+        return CompactChatMessage.builder()
+                .id(response.getId())
+                .content(response.getContent())
+                .sender(pair(response.getSender()))
+                .receiver(pair(response.getReceiver()))
+                .timestamp(response.getTimestamp())
+                .groupId(response.getGroupId())
+                .groupName(response.getGroupName())
+                .read(response.isRead() ? Boolean.TRUE : null)
+                .persistent(response.isPersistent() ? null : Boolean.FALSE)
+                .build();
+    }
+
+    private static List<String> pair(ChatMessageResponse.UserInfo user) {
+        return user == null ? null : Arrays.asList(user.getId(), user.getName());
+    }
+}
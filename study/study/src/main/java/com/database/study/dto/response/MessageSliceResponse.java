@@ -0,0 +1,33 @@
+package com.database.study.dto.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One slice of message history, newest first, without a total count
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSliceResponse {
+    /**
+     * Messages in this slice
+     */
+    private List<ChatMessageResponse> content;
+
+    /**
+     * Whether older messages exist
+     */
+    private boolean hasMore;
+
+    /**
+     * Value for the before parameter of the next, older slice; null when there
+     * are no more messages
+     */
+    private String nextCursor;
+}
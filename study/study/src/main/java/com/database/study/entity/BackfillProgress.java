@@ -0,0 +1,41 @@
+package com.database.study.entity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * High-water mark of a backfill over the chat messages, in id order. Messages
+ * after the last processed id and up to the until id, the newest message when
+ * the backfill started, are still to be processed.
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "backfill_progress")
+public class BackfillProgress {
+
+    // Name of the backfill, e.g. "message_terms"
+    @Id
+    private String id;
+
+    @Column(name = "last_message_id", nullable = false)
+    private UUID lastMessageId;
+
+    // Null when there were no messages to process
+    @Column(name = "until_message_id")
+    private UUID untilMessageId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -5,12 +5,13 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+import org.hibernate.annotations.UuidGenerator;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -24,11 +25,18 @@ import lombok.NoArgsConstructor;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "chat_message")
+@Table(name = "chat_message", indexes = {
+        // Keyset paging of a conversation, newest first
+        @Index(name = "idx_chat_message_conversation_timestamp_id", columnList = "conversation_id,timestamp,id"),
+        // Keyset paging of a group's history, newest first
+        @Index(name = "idx_chat_message_group_timestamp_id", columnList = "group_id,timestamp,id")
+})
 public class ChatMessage {
 
+    // Time-ordered, so new messages append to the primary key index and ids
+    // sort in creation order
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)
     private UUID id;
 
     @ManyToOne
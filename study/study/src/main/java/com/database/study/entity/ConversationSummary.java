@@ -0,0 +1,63 @@
+package com.database.study.entity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Latest message of a conversation or group as seen by one participant, so
+ * the inbox of a user is one range read over (user_id, last_message_at).
+ *
+ * Plain id columns instead of associations: rows are created with a native
+ * insert-if-absent and moved with bulk updates that only know the ids.
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "conversation_summaries", indexes = {
+        @Index(name = "idx_conversation_summaries_user_last_message", columnList = "user_id,last_message_at"),
+        @Index(name = "idx_conversation_summaries_conversation_key", columnList = "conversation_key")
+})
+public class ConversationSummary {
+
+    // userId + ":" + conversationKey, the same id as the unread counter
+    @Id
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    // Conversation id of a direct chat, or "group_" + group id
+    @Column(name = "conversation_key", nullable = false)
+    private String conversationKey;
+
+    // Other participant of a direct chat
+    @Column(name = "partner_id")
+    private UUID partnerId;
+
+    @Column(name = "group_id")
+    private UUID groupId;
+
+    @Column(name = "last_message_id", nullable = false)
+    private UUID lastMessageId;
+
+    @Column(name = "last_sender_id", nullable = false)
+    private UUID lastSenderId;
+
+    @Column(name = "snippet", length = 255)
+    private String snippet;
+
+    @Column(name = "last_message_at", nullable = false)
+    private LocalDateTime lastMessageAt;
+}
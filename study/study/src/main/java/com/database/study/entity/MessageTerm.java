@@ -0,0 +1,58 @@
+package com.database.study.entity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.hibernate.annotations.UuidGenerator;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One word of a chat message, the posting of an inverted index over message
+ * content. Search looks words up through (term, conversation_key, sent_at,
+ * message_id), so it reads only the postings of the searched words in the
+ * conversations of the user, newest first.
+ *
+ * Plain id columns instead of associations, like conversation summaries.
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "message_terms", indexes = {
+        @Index(name = "idx_message_terms_term_conversation", columnList = "term,conversation_key,sent_at,message_id"),
+        @Index(name = "idx_message_terms_message_id", columnList = "message_id"),
+        @Index(name = "idx_message_terms_conversation_key", columnList = "conversation_key")
+})
+public class MessageTerm {
+
+    public static final int MAX_LENGTH = 64;
+
+    @Id
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)
+    private UUID id;
+
+    // Lower case word, at most MAX_LENGTH characters
+    @Column(name = "term", nullable = false, length = MessageTerm.MAX_LENGTH)
+    private String term;
+
+    // Conversation id of a direct chat, or "group_" + group id
+    @Column(name = "conversation_key", nullable = false)
+    private String conversationKey;
+
+    @Column(name = "message_id", nullable = false)
+    private UUID messageId;
+
+    // Timestamp of the message, to page results like message history
+    @Column(name = "sent_at", nullable = false)
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,49 @@
+package com.database.study.entity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Newest message a user has read in a conversation or group. Messages after
+ * the (timestamp, message id) position are unread for that user.
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "read_watermarks", indexes = {
+        @Index(name = "idx_read_watermarks_user_id", columnList = "user_id")
+})
+public class ReadWatermark {
+
+    // userId + ":" + conversationKey
+    @Id
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    // Conversation id of a direct chat, or "group_" + group id
+    @Column(name = "conversation_key", nullable = false)
+    private String conversationKey;
+
+    @Column(name = "last_read_timestamp", nullable = false)
+    private LocalDateTime lastReadTimestamp;
+
+    @Column(name = "last_read_message_id", nullable = false)
+    private UUID lastReadMessageId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,34 @@
+package com.database.study.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Outbox row announcing that the cached session of a user must be dropped on
+ * every other node
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "session_invalidations", indexes = {
+    @Index(name = "idx_session_invalidations_created_at", columnList = "createdAt")
+})
+public class SessionInvalidation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(nullable = false)
+    String username;
+
+    @Column(nullable = false)
+    String originNode;
+
+    // Epoch millis on the publishing node
+    @Column(nullable = false)
+    long createdAt;
+}
@@ -0,0 +1,49 @@
+package com.database.study.entity;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+/**
+ * Time-ordered UUIDs (version 7, RFC 9562) for primary keys.
+ *
+ * The first 48 bits are the Unix time in milliseconds, followed by a 12-bit
+ * sequence and 62 random bits. Within one node ids are strictly increasing:
+ * the sequence starts at a random value in the lower half every millisecond
+ * and counts up, and a burst that exhausts it borrows from the next
+ * millisecond. New rows therefore append to the end of the primary key index
+ * instead of splitting random pages, and ordering by id follows creation
+ * time both as UUID and in the binary or text column.
+ *
+ * Used through {@code @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)};
+ * rows created before keep their random ids.
+ */
+public class TimeOrderedUuidGenerator implements UuidValueGenerator {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // (unix millis << 12) | sequence of the last id handed out on this node
+    private static final AtomicLong LAST = new AtomicLong();
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+
+    /**
+     * Next time-ordered UUID of this node
+     */
+    public static UUID next() {
+        long now = System.currentTimeMillis() << 12;
+        long stamp = LAST.updateAndGet(last -> now > last
+                ? now | ThreadLocalRandom.current().nextInt(0x800)
+                : last + 1);
+        long mostSigBits = (stamp >>> 12) << 16 | 0x7000L | (stamp & 0xFFFL);
+        long leastSigBits = RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
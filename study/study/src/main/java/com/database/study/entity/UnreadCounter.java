@@ -0,0 +1,46 @@
+package com.database.study.entity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of unread messages of a user in a conversation or group, kept up to
+ * date on send and read so that list views do not count messages.
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "unread_counters", indexes = {
+        @Index(name = "idx_unread_counters_user_id", columnList = "user_id")
+})
+public class UnreadCounter {
+
+    // userId + ":" + conversationKey, the same id as the read watermark
+    @Id
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    // Conversation id of a direct chat, or "group_" + group id
+    @Column(name = "conversation_key", nullable = false)
+    private String conversationKey;
+
+    @Column(name = "unread_count", nullable = false)
+    private long unreadCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -89,6 +89,9 @@ public class ENUMS {
     TOTP_ALREADY_ENABLED("Two-factor authentication is already enabled for this account"),
     USER_EXISTS("User already exists"),
 
+    // 429 - TOO MANY REQUESTS
+    TOO_MANY_ATTEMPTS("Too many authentication attempts. Please try again later."),
+
     // 500 - INTERNAL SERVER ERROR
     GENERAL_EXCEPTION("General server error");
 
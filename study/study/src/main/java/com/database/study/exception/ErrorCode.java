@@ -120,6 +120,10 @@ public enum ErrorCode {
         USER_EXISTS(4090, ENUMS.ErrorMessages.USER_EXISTS.getMessage(), HttpStatus.CONFLICT, "409",
                         ENUMS.Severity.MEDIUM.name()),
 
+        // 429 - TOO MANY REQUESTS
+        TOO_MANY_ATTEMPTS(4290, ENUMS.ErrorMessages.TOO_MANY_ATTEMPTS.getMessage(), HttpStatus.TOO_MANY_REQUESTS,
+                        "429", ENUMS.Severity.MEDIUM.name()),
+
         // 500 - INTERNAL SERVER ERROR
         GENERAL_EXCEPTION(5000, ENUMS.ErrorMessages.GENERAL_EXCEPTION.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR,
                         "500", ENUMS.Severity.HIGH.name()),
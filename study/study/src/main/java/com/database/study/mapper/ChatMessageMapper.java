@@ -12,6 +12,9 @@ import com.database.study.dto.response.ChatMessageResponse;
 import com.database.study.entity.ChatMessage;
 import com.database.study.entity.User;
 
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
 @Component
 public class ChatMessageMapper {
 
@@ -28,20 +31,11 @@ public class ChatMessageMapper {
         }
 
         public ChatMessageResponse toResponse(ChatMessage message) {
-                // Debug log at the start
-                System.out.println("=== MAPPING MESSAGE TO RESPONSE ===");
-                System.out.println("Message ID: " + message.getId());
-                System.out.println("Message Type: " + message.getMessageType());
-                System.out.println("Group: " + (message.getGroup() != null ? message.getGroup().getId() : "null"));
-                System.out.println("Receiver: "
-                                + (message.getReceiver() != null ? message.getReceiver().getId() : "null"));
-
                 User sender = message.getSender();
                 User receiver = message.getReceiver();
 
-                String senderName = (sender.getFirstname() != null && sender.getLastname() != null)
-                                ? sender.getFirstname() + " " + sender.getLastname()
-                                : sender.getUsername() != null ? sender.getUsername() : sender.getEmail();
+                String senderName = displayName(sender.getFirstname(), sender.getLastname(), sender.getUsername(),
+                                sender.getEmail());
 
                 ChatMessageResponse response = new ChatMessageResponse();
                 response.setId(message.getId().toString());
@@ -51,10 +45,7 @@ public class ChatMessageMapper {
                                 senderName));
                 response.setTimestamp(message.getTimestamp().toString());
                 response.setRead(message.isRead());
-                // Set persistent flag and log it
-                boolean isPersistent = message.isPersistent();
-                System.out.println("PERSISTENT DEBUG - ChatMessageMapper setting response persistent to: " + isPersistent);
-                response.setPersistent(isPersistent);
+                response.setPersistent(message.isPersistent());
 
                 // IMPORTANT: Set receiver to null by default
                 response.setReceiver(null);
@@ -69,34 +60,20 @@ public class ChatMessageMapper {
                         
                         // Ensure receiver is null for group messages
                         response.setReceiver(null);
-
-                        // Debug log
-                        System.out.println("Mapped GROUP message: " + message.getId() +
-                                        " for group: " + (message.getGroup() != null ? message.getGroup().getId() : "null") +
-                                        " with message type: " + message.getMessageType());
                 } else if (receiver != null) {
                         // For direct messages, set receiver info
-                        String receiverName = (receiver.getFirstname() != null && receiver.getLastname() != null)
-                                        ? receiver.getFirstname() + " " + receiver.getLastname()
-                                        : receiver.getUsername() != null ? receiver.getUsername() : receiver.getEmail();
+                        String receiverName = displayName(receiver.getFirstname(), receiver.getLastname(),
+                                        receiver.getUsername(), receiver.getEmail());
 
                         ChatMessageResponse.UserInfo receiverInfo = new ChatMessageResponse.UserInfo(
                                         receiver.getId().toString(),
                                         receiverName);
                         response.setReceiver(receiverInfo);
-
-                        // Debug log
-                        System.out.println("Mapped DIRECT message: " + message.getId() +
-                                        " to receiver: " + receiver.getId() +
-                                        " with message type: " + message.getMessageType());
                 }
 
-                // Final verification
-                System.out.println("=== FINAL RESPONSE ===");
-                System.out.println("Message ID: " + response.getId());
-                System.out.println("Group ID: " + response.getGroupId());
-                System.out.println("Receiver: "
-                                + (response.getReceiver() != null ? response.getReceiver().getId() : "null"));
+                log.debug("Mapped {} message {} (group: {}, receiver: {})", message.getMessageType(),
+                                response.getId(), response.getGroupId(),
+                                response.getReceiver() != null ? response.getReceiver().getId() : null);
 
                 return response;
         }
@@ -107,6 +84,14 @@ public class ChatMessageMapper {
                                 .collect(Collectors.toList());
         }
 
+        // Name shown for a user in messages: first and last name, else username, else email
+        public static String displayName(String firstname, String lastname, String username, String email) {
+                if (firstname != null && lastname != null) {
+                        return firstname + " " + lastname;
+                }
+                return username != null ? username : email;
+        }
+
         // Generate a consistent conversation ID for two users
         public String generateConversationId(UUID user1Id, UUID user2Id) {
                 // Ensure the conversation ID is the same regardless of who initiates
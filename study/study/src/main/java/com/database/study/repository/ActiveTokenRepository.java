@@ -36,6 +36,15 @@ public interface ActiveTokenRepository extends JpaRepository<ActiveToken, String
 
   long countByExpiryTimeBefore(java.util.Date expiryTime);
 
+  List<ActiveToken> findByExpiryRefreshTimeAfter(java.util.Date date);
+
+  /**
+   * Replace the access token of a session without loading the row
+   */
+  @Modifying
+  @Query("UPDATE ActiveToken t SET t.token = ?2, t.expiryTime = ?3, t.description = ?4 WHERE t.id = ?1")
+  int updateAccessToken(String id, String token, java.util.Date expiryTime, String description);
+
   /**
    * Delete all active tokens for a user
    * 
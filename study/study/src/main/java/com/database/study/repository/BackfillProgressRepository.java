@@ -0,0 +1,25 @@
+package com.database.study.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.database.study.entity.BackfillProgress;
+
+@Repository
+public interface BackfillProgressRepository extends JpaRepository<BackfillProgress, String> {
+
+    // Claim the batch after a mark; 0 when another node moved the mark first
+    @Modifying
+    @Query("UPDATE BackfillProgress p SET p.lastMessageId = :to, p.updatedAt = :now " +
+            "WHERE p.id = :id AND p.lastMessageId = :from")
+    int advance(@Param("id") String id,
+            @Param("from") UUID from,
+            @Param("to") UUID to,
+            @Param("now") LocalDateTime now);
+}
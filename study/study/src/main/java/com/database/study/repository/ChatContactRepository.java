@@ -1,5 +1,6 @@
 package com.database.study.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -59,6 +60,16 @@ public interface ChatContactRepository extends JpaRepository<ChatContact, UUID>
            "u.id NOT IN (SELECT c.contact.id FROM ChatContact c WHERE c.user.id = :userId)")
     List<User> findNonContacts(@Param("userId") UUID userId);
     
+    // Users that have any of the given users as an accepted contact
+    @Query("SELECT c.contact.id AS contactId, c.user.id AS userId FROM ChatContact c " +
+           "WHERE c.contact.id IN :contactIds AND c.status = com.database.study.entity.ChatContact.ContactStatus.ACCEPTED")
+    List<ContactPair> findAcceptedWatchers(@Param("contactIds") Collection<UUID> contactIds);
+
+    // Ids of the accepted contacts of a user
+    @Query("SELECT c.contact.id FROM ChatContact c " +
+           "WHERE c.user.id = :userId AND c.status = com.database.study.entity.ChatContact.ContactStatus.ACCEPTED")
+    List<UUID> findAcceptedContactIds(@Param("userId") UUID userId);
+
     /**
      * Delete all chat contacts where the user is either the owner or the contact
      * 
@@ -67,4 +78,10 @@ public interface ChatContactRepository extends JpaRepository<ChatContact, UUID>
     @Modifying
     @Query("DELETE FROM ChatContact c WHERE c.user.id = :userId OR c.contact.id = :userId")
     void deleteByUserIdOrContactId(@Param("userId") UUID userId);
+
+    interface ContactPair {
+        UUID getContactId();
+
+        UUID getUserId();
+    }
 }
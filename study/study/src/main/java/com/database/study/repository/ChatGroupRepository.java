@@ -1,6 +1,7 @@
 package com.database.study.repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -44,4 +45,13 @@ public interface ChatGroupRepository extends JpaRepository<ChatGroup, UUID> {
      */
     @Query("SELECT g FROM ChatGroup g WHERE g.createdBy.id = :userId")
     List<ChatGroup> findGroupsCreatedByUser(@Param("userId") UUID userId);
-}
\ No newline at end of file
+
+    @Query("SELECT m.id FROM ChatGroup g JOIN g.members m WHERE g.id = :groupId")
+    List<UUID> findMemberIds(@Param("groupId") UUID groupId);
+
+    @Query("SELECT g.name FROM ChatGroup g WHERE g.id = :groupId")
+    Optional<String> findNameById(@Param("groupId") UUID groupId);
+
+    @Query("SELECT g.id FROM ChatGroup g")
+    List<UUID> findAllIds();
+}
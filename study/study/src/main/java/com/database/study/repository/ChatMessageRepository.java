@@ -1,10 +1,13 @@
 package com.database.study.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -29,21 +32,45 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>
        // Find messages by conversation ID
        Page<ChatMessage> findByConversationIdOrderByTimestampDesc(String conversationId, Pageable pageable);
 
+       // Newest messages of a conversation; Slice so no count query is run
+       @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender LEFT JOIN FETCH m.receiver " +
+                     "WHERE m.conversationId = :conversationId " +
+                     "ORDER BY m.timestamp DESC, m.id DESC")
+       Slice<ChatMessage> findLatestByConversationId(@Param("conversationId") String conversationId,
+                     Pageable pageable);
+
+       // Messages of a conversation older than the (timestamp, id) cursor, served by
+       // idx_chat_message_conversation_timestamp_id without an offset scan
+       @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender LEFT JOIN FETCH m.receiver " +
+                     "WHERE m.conversationId = :conversationId " +
+                     "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+                     "ORDER BY m.timestamp DESC, m.id DESC")
+       Slice<ChatMessage> findByConversationIdBefore(@Param("conversationId") String conversationId,
+                     @Param("timestamp") LocalDateTime timestamp,
+                     @Param("id") UUID id,
+                     Pageable pageable);
+
+       // Messages to a user in a conversation after their read watermark
+       @Query("SELECT COUNT(m) FROM ChatMessage m WHERE m.conversationId = :conversationId " +
+                     "AND m.receiver.id = :receiverId " +
+                     "AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id))")
+       long countByConversationIdAfter(@Param("conversationId") String conversationId,
+                     @Param("receiverId") UUID receiverId,
+                     @Param("timestamp") LocalDateTime timestamp,
+                     @Param("id") UUID id);
+
+       // Unread messages to a user in a conversation that has no read watermark yet
+       @Query("SELECT COUNT(m) FROM ChatMessage m WHERE m.conversationId = :conversationId " +
+                     "AND m.receiver.id = :receiverId AND m.read = false")
+       long countUnreadByConversationId(@Param("conversationId") String conversationId,
+                     @Param("receiverId") UUID receiverId);
+
        // Find unread messages for a user
        List<ChatMessage> findByReceiverAndReadFalseOrderByTimestampDesc(User receiver);
 
        // Count unread messages for a user
        long countByReceiverAndReadFalse(User receiver);
 
-       // Find latest message for each conversation of a user
-       @Query("SELECT m FROM ChatMessage m WHERE m.id IN " +
-                     "(SELECT MAX(m2.id) FROM ChatMessage m2 WHERE m2.sender = :user OR m2.receiver = :user " +
-                     "GROUP BY CASE " +
-                     "WHEN m2.sender = :user THEN m2.receiver.id " +
-                     "ELSE m2.sender.id END) " +
-                     "ORDER BY m.timestamp DESC")
-       List<ChatMessage> findLatestMessagesForUser(@Param("user") User user);
-
        // Find all conversations for a user
        @Query("SELECT DISTINCT " +
                      "CASE WHEN m.sender = :user THEN m.receiver " +
@@ -74,9 +101,27 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>
        List<ChatMessage> findByGroupIdOrderByTimestampDesc(@Param("groupId") UUID groupId);
 
        // Find all messages for a group regardless of message type
-       @Query("SELECT m FROM ChatMessage m WHERE m.group.id = :groupId ORDER BY m.timestamp DESC")
+       @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender JOIN FETCH m.group g WHERE g.id = :groupId " +
+                     "ORDER BY m.timestamp DESC")
        List<ChatMessage> findAllByGroupIdOrderByTimestampDesc(@Param("groupId") UUID groupId);
 
+       // Newest messages of a group, any message type, with sender and group fetched
+       @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender JOIN FETCH m.group g " +
+                     "WHERE g.id = :groupId " +
+                     "ORDER BY m.timestamp DESC, m.id DESC")
+       Slice<ChatMessage> findLatestByGroupId(@Param("groupId") UUID groupId, Pageable pageable);
+
+       // Messages of a group older than the (timestamp, id) cursor, served by
+       // idx_chat_message_group_timestamp_id
+       @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender JOIN FETCH m.group g " +
+                     "WHERE g.id = :groupId " +
+                     "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+                     "ORDER BY m.timestamp DESC, m.id DESC")
+       Slice<ChatMessage> findByGroupIdBefore(@Param("groupId") UUID groupId,
+                     @Param("timestamp") LocalDateTime timestamp,
+                     @Param("id") UUID id,
+                     Pageable pageable);
+
        // Find unread messages for a user in a group
        @Query("SELECT m FROM ChatMessage m WHERE m.group.id = :groupId AND m.messageType = 'GROUP' AND m.read = false AND m.sender.id != :userId ORDER BY m.timestamp DESC")
        List<ChatMessage> findUnreadGroupMessagesForUser(@Param("groupId") UUID groupId, @Param("userId") UUID userId);
@@ -85,6 +130,14 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>
        @Query("SELECT COUNT(m) FROM ChatMessage m WHERE m.group.id = :groupId AND m.messageType = 'GROUP' AND m.read = false AND m.sender.id != :userId")
        long countUnreadGroupMessagesForUser(@Param("groupId") UUID groupId, @Param("userId") UUID userId);
 
+       // Messages from other members of a group after a user's read watermark
+       @Query("SELECT COUNT(m) FROM ChatMessage m WHERE m.group.id = :groupId AND m.sender.id <> :userId " +
+                     "AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id))")
+       long countGroupMessagesAfter(@Param("groupId") UUID groupId,
+                     @Param("userId") UUID userId,
+                     @Param("timestamp") LocalDateTime timestamp,
+                     @Param("id") UUID id);
+
        // Mark all messages in a group as read for a specific user
        @Modifying
        @Query("UPDATE ChatMessage m SET m.read = true WHERE m.group.id = :groupId AND m.messageType = 'GROUP' AND m.read = false AND m.sender.id != :userId")
@@ -99,4 +152,43 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>
        @Modifying
        @Query("DELETE FROM ChatMessage m WHERE m.sender.id = :userId OR m.receiver.id = :userId")
        void deleteByUserIdAsSenderOrReceiver(@Param("userId") UUID userId);
+
+       // Content of stored messages in id order, without loading users or groups
+       @Query("SELECT m.id AS id, m.conversationId AS conversationId, m.timestamp AS timestamp, " +
+                     "m.content AS content FROM ChatMessage m WHERE m.id > :after AND m.id <= :until " +
+                     "ORDER BY m.id")
+       List<SearchableMessage> findSearchableBetween(@Param("after") UUID after, @Param("until") UUID until,
+                     Pageable pageable);
+
+       @Query("SELECT MAX(m.id) FROM ChatMessage m")
+       UUID findMaxId();
+
+       // Unread messages of a user per direct conversation or group, counted
+       // after the user's watermark or by the read flag where there is none
+       @Query("SELECT m.conversationId AS conversationId, COUNT(m) AS unreadCount FROM ChatMessage m " +
+                     "LEFT JOIN ReadWatermark w ON w.userId = :userId AND w.conversationKey = m.conversationId " +
+                     "WHERE m.conversationId IN :conversationKeys " +
+                     "AND ((m.group IS NULL AND m.receiver.id = :userId) " +
+                     "OR (m.group IS NOT NULL AND m.sender.id <> :userId)) " +
+                     "AND ((w.id IS NULL AND m.read = false) OR m.timestamp > w.lastReadTimestamp " +
+                     "OR (m.timestamp = w.lastReadTimestamp AND m.id > w.lastReadMessageId)) " +
+                     "GROUP BY m.conversationId")
+       List<ConversationCount> countUnreadByConversationKeys(@Param("userId") UUID userId,
+                     @Param("conversationKeys") Collection<String> conversationKeys);
+
+       interface ConversationCount {
+              String getConversationId();
+
+              Long getUnreadCount();
+       }
+
+       interface SearchableMessage {
+              UUID getId();
+
+              String getConversationId();
+
+              LocalDateTime getTimestamp();
+
+              String getContent();
+       }
 }
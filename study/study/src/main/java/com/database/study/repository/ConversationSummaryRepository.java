@@ -0,0 +1,66 @@
+package com.database.study.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.database.study.entity.ChatMessage;
+import com.database.study.entity.ConversationSummary;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, String> {
+
+    // Latest message of every conversation of a user, newest first
+    @Query("SELECT m FROM ConversationSummary s JOIN ChatMessage m ON m.id = s.lastMessageId " +
+            "JOIN FETCH m.sender LEFT JOIN FETCH m.receiver LEFT JOIN FETCH m.group " +
+            "WHERE s.userId = :userId ORDER BY s.lastMessageAt DESC")
+    List<ChatMessage> findLatestMessagesByUserId(@Param("userId") UUID userId);
+
+    @Query("SELECT s.userId FROM ConversationSummary s WHERE s.conversationKey = :conversationKey")
+    List<UUID> findUserIdsByConversationKey(@Param("conversationKey") String conversationKey);
+
+    @Query("SELECT s.conversationKey FROM ConversationSummary s WHERE s.userId = :userId")
+    List<String> findConversationKeysByUserId(@Param("userId") UUID userId);
+
+    boolean existsByLastMessageId(UUID lastMessageId);
+
+    // Point every participant's summary at a newer message; never moves back
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET s.lastMessageId = :messageId, s.lastSenderId = :senderId, " +
+            "s.snippet = :snippet, s.lastMessageAt = :timestamp WHERE s.conversationKey = :conversationKey " +
+            "AND (s.lastMessageAt < :timestamp OR (s.lastMessageAt = :timestamp AND s.lastMessageId < :messageId))")
+    int advance(@Param("conversationKey") String conversationKey,
+            @Param("messageId") UUID messageId,
+            @Param("senderId") UUID senderId,
+            @Param("snippet") String snippet,
+            @Param("timestamp") LocalDateTime timestamp);
+
+    // Point every participant's summary at a message, also an older one
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET s.lastMessageId = :messageId, s.lastSenderId = :senderId, " +
+            "s.snippet = :snippet, s.lastMessageAt = :timestamp WHERE s.conversationKey = :conversationKey")
+    int replace(@Param("conversationKey") String conversationKey,
+            @Param("messageId") UUID messageId,
+            @Param("senderId") UUID senderId,
+            @Param("snippet") String snippet,
+            @Param("timestamp") LocalDateTime timestamp);
+
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET s.snippet = :snippet WHERE s.lastMessageId = :messageId")
+    int updateSnippet(@Param("messageId") UUID messageId, @Param("snippet") String snippet);
+
+    @Modifying
+    @Query("DELETE FROM ConversationSummary s WHERE s.conversationKey = :conversationKey")
+    int deleteByConversationKey(@Param("conversationKey") String conversationKey);
+
+    @Modifying
+    @Query("DELETE FROM ConversationSummary s WHERE s.conversationKey = :conversationKey AND s.userId = :userId")
+    int deleteByConversationKeyAndUserId(@Param("conversationKey") String conversationKey,
+            @Param("userId") UUID userId);
+}
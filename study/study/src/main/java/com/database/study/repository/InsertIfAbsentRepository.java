@@ -0,0 +1,97 @@
+package com.database.study.repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.BasicType;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Multi-row insert of rows whose primary key does not exist yet, in the
+ * caller's transaction: INSERT ... ON DUPLICATE KEY UPDATE on MySQL and a
+ * MERGE ... WHEN NOT MATCHED elsewhere (H2 in tests). Existing rows are left
+ * as they are and a row inserted concurrently by another transaction does not
+ * fail the statement, so callers need neither a check before nor a separate
+ * transaction for the insert.
+ */
+@Repository
+public class InsertIfAbsentRepository {
+
+    // Keeps statements well below the placeholder limit of MySQL
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean mysql;
+
+    /**
+     * Insert rows into a table unless their key exists
+     *
+     * @param table   table name
+     * @param columns column names, the primary key first
+     * @param types   Java type of each column, used to bind null values and
+     *                UUIDs the way the dialect stores them
+     * @param rows    values in column order
+     * @return number of rows inserted (on MySQL, rows inserted or left as they were)
+     */
+    public int insertIfAbsent(String table, List<String> columns, List<Class<?>> types, List<Object[]> rows) {
+        int inserted = 0;
+        for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, rows.size()));
+            inserted += execute(table, columns, types, chunk);
+        }
+        return inserted;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private int execute(String table, List<String> columns, List<Class<?>> types, List<Object[]> rows) {
+        SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class);
+        NativeQuery<?> query = entityManager.createNativeQuery(sql(sessionFactory, table, columns, rows.size()))
+                .unwrap(NativeQuery.class);
+        int position = 1;
+        for (Object[] row : rows) {
+            for (int i = 0; i < columns.size(); i++) {
+                BasicType type = sessionFactory.getTypeConfiguration().getBasicTypeForJavaType(types.get(i));
+                query.setParameter(position++, row[i], type);
+            }
+        }
+        return query.executeUpdate();
+    }
+
+    private String sql(SessionFactoryImplementor sessionFactory, String table, List<String> columns, int rowCount) {
+        String row = columns.stream().map(column -> "?").collect(Collectors.joining(", ", "(", ")"));
+        String values = String.join(", ", Collections.nCopies(rowCount, row));
+        String columnList = String.join(", ", columns);
+        String key = columns.get(0);
+        if (isMySql(sessionFactory)) {
+            return "INSERT INTO " + table + " (" + columnList + ") VALUES " + values
+                    + " ON DUPLICATE KEY UPDATE " + key + " = " + key;
+        }
+        return "MERGE INTO " + table + " t USING (VALUES " + values + ") s (" + columnList + ") ON t." + key
+                + " = s." + key + " WHEN NOT MATCHED THEN INSERT (" + columnList + ") VALUES ("
+                + prefixed("s.", columns) + ")";
+    }
+
+    private boolean isMySql(SessionFactoryImplementor sessionFactory) {
+        Boolean result = mysql;
+        if (result == null) {
+            result = sessionFactory.getJdbcServices().getDialect() instanceof MySQLDialect;
+            mysql = result;
+        }
+        return result;
+    }
+
+    private static String prefixed(String prefix, Collection<String> columns) {
+        return columns.stream().map(column -> prefix + column).collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,45 @@
+package com.database.study.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.database.study.entity.MessageTerm;
+
+@Repository
+public interface MessageTermRepository extends JpaRepository<MessageTerm, UUID>, MessageTermRepositoryCustom {
+
+    // Those of the given messages that contain all terms, on the message_id index
+    @Query("SELECT t.messageId FROM MessageTerm t WHERE t.messageId IN :messageIds AND t.term IN :terms " +
+            "GROUP BY t.messageId HAVING COUNT(t) = :termCount")
+    List<UUID> findMessagesWithTerms(@Param("messageIds") Collection<UUID> messageIds,
+            @Param("terms") Collection<String> terms,
+            @Param("termCount") long termCount);
+
+    @Modifying
+    @Query("DELETE FROM MessageTerm t WHERE t.messageId = :messageId")
+    int deleteByMessageId(@Param("messageId") UUID messageId);
+
+    @Modifying
+    @Query("DELETE FROM MessageTerm t WHERE t.messageId IN :messageIds")
+    int deleteByMessageIdIn(@Param("messageIds") Collection<UUID> messageIds);
+
+    @Modifying
+    @Query("DELETE FROM MessageTerm t WHERE t.conversationKey = :conversationKey")
+    int deleteByConversationKey(@Param("conversationKey") String conversationKey);
+
+    interface MessageHit {
+        UUID getMessageId();
+
+        LocalDateTime getSentAt();
+
+        String getConversationKey();
+    }
+}
@@ -0,0 +1,23 @@
+package com.database.study.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import com.database.study.repository.MessageTermRepository.MessageHit;
+
+public interface MessageTermRepositoryCustom {
+
+    /**
+     * Newest postings of one term in each of the given conversations, older
+     * than the (sentAt, messageId) cursor if there is one, with one bounded
+     * range read of the (term, conversation_key, sent_at) index per
+     * conversation. Hits come grouped by conversation, newest first within
+     * each.
+     *
+     * @param perConversation maximum number of postings read per conversation
+     */
+    List<MessageHit> findLatestPostingsPerConversation(String term, Collection<String> conversationKeys,
+            LocalDateTime sentAt, UUID messageId, int perConversation);
+}
@@ -0,0 +1,87 @@
+package com.database.study.repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import com.database.study.entity.MessageTerm;
+import com.database.study.repository.MessageTermRepository.MessageHit;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * Per-conversation reads of the postings index, as one UNION ALL of
+ * parenthesized queries that each order and limit a single conversation. An
+ * IN list over all conversations instead makes the database read every
+ * posting of the term in those conversations and sort them.
+ */
+class MessageTermRepositoryImpl implements MessageTermRepositoryCustom {
+
+    // Keeps statements well below the placeholder limit of MySQL
+    private static final int MAX_CONVERSATIONS_PER_STATEMENT = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<MessageHit> findLatestPostingsPerConversation(String term, Collection<String> conversationKeys,
+            LocalDateTime sentAt, UUID messageId, int perConversation) {
+        List<String> keys = List.copyOf(conversationKeys);
+        List<MessageHit> hits = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += MAX_CONVERSATIONS_PER_STATEMENT) {
+            List<String> chunk = keys.subList(from, Math.min(from + MAX_CONVERSATIONS_PER_STATEMENT, keys.size()));
+            TypedQuery<Object[]> query = entityManager.createQuery(
+                    hql(chunk.size(), sentAt != null, perConversation), Object[].class);
+            query.setParameter("term", term);
+            for (int i = 0; i < chunk.size(); i++) {
+                query.setParameter("key" + i, chunk.get(i));
+            }
+            if (sentAt != null) {
+                query.setParameter("sentAt", sentAt);
+                query.setParameter("messageId", messageId);
+            }
+            query.getResultList().forEach(row -> hits.add(
+                    new Posting((UUID) row[0], (LocalDateTime) row[1], (String) row[2])));
+        }
+        return hits;
+    }
+
+    private static String hql(int conversations, boolean withCursor, int perConversation) {
+        StringBuilder hql = new StringBuilder();
+        for (int i = 0; i < conversations; i++) {
+            if (i > 0) {
+                hql.append(" UNION ALL ");
+            }
+            hql.append("(SELECT t.messageId, t.sentAt, t.conversationKey FROM ")
+                    .append(MessageTerm.class.getSimpleName())
+                    .append(" t WHERE t.term = :term AND t.conversationKey = :key").append(i);
+            if (withCursor) {
+                hql.append(" AND (t.sentAt < :sentAt OR (t.sentAt = :sentAt AND t.messageId < :messageId))");
+            }
+            hql.append(" ORDER BY t.sentAt DESC, t.messageId DESC LIMIT ").append(perConversation).append(')');
+        }
+        return hql.toString();
+    }
+
+    private record Posting(UUID messageId, LocalDateTime sentAt, String conversationKey) implements MessageHit {
+
+        @Override
+        public UUID getMessageId() {
+            return messageId;
+        }
+
+        @Override
+        public LocalDateTime getSentAt() {
+            return sentAt;
+        }
+
+        @Override
+        public String getConversationKey() {
+            return conversationKey;
+        }
+    }
+}
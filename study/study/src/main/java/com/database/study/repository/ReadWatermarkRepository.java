@@ -0,0 +1,26 @@
+package com.database.study.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.database.study.entity.ReadWatermark;
+
+@Repository
+public interface ReadWatermarkRepository extends JpaRepository<ReadWatermark, String> {
+
+    // Move a watermark forward; never moves it back
+    @Modifying
+    @Query("UPDATE ReadWatermark w SET w.lastReadTimestamp = :timestamp, w.lastReadMessageId = :messageId, " +
+            "w.updatedAt = :now WHERE w.id = :id AND (w.lastReadTimestamp < :timestamp " +
+            "OR (w.lastReadTimestamp = :timestamp AND w.lastReadMessageId < :messageId))")
+    int advance(@Param("id") String id,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("messageId") UUID messageId,
+            @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,27 @@
+package com.database.study.repository;
+
+import com.database.study.entity.SessionInvalidation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SessionInvalidationRepository extends JpaRepository<SessionInvalidation, Long> {
+    List<SessionInvalidation> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    List<SessionInvalidation> findByIdIn(Collection<Long> ids);
+
+    @Query("SELECT MAX(s.id) FROM SessionInvalidation s")
+    Long findMaxId();
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SessionInvalidation s WHERE s.createdAt < ?1")
+    int deleteByCreatedAtBefore(long createdAt);
+}
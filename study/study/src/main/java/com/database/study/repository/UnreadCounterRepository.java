@@ -0,0 +1,31 @@
+package com.database.study.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.database.study.entity.UnreadCounter;
+
+@Repository
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, String> {
+
+    List<UnreadCounter> findByUserId(UUID userId);
+
+    @Query("SELECT c.id FROM UnreadCounter c WHERE c.id IN :ids")
+    List<String> findExistingIds(@Param("ids") Collection<String> ids);
+
+    @Modifying
+    @Query("UPDATE UnreadCounter c SET c.unreadCount = c.unreadCount + 1, c.updatedAt = :now WHERE c.id IN :ids")
+    int incrementAll(@Param("ids") Collection<String> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE UnreadCounter c SET c.unreadCount = 0, c.updatedAt = :now WHERE c.id = :id AND c.unreadCount <> 0")
+    int reset(@Param("id") String id, @Param("now") LocalDateTime now);
+}
@@ -2,6 +2,7 @@ package com.database.study.repository;
 
 import com.database.study.entity.User;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,9 +20,37 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 
   Optional<User> findByUsername(String username);
   Optional<User> findByEmail(String email);
-  
+
+  @Query("SELECT u.username FROM User u WHERE u.block = true")
+  List<String> findBlockedUsernames();
+
+  @Modifying
+  @Query("UPDATE User u SET u.block = true, u.timeTried = :timeTried WHERE u.username = :username")
+  int lockByUsername(@Param("username") String username, @Param("timeTried") int timeTried);
+
+  @Modifying
+  @Query("UPDATE User u SET u.block = false, u.timeTried = 0 WHERE u.username = :username"
+      + " AND (u.block = true OR u.timeTried <> 0)")
+  int resetFailedAttemptsByUsername(@Param("username") String username);
 
   @Modifying
   @Query(value = "DELETE FROM user_roles WHERE user_id = :userId", nativeQuery = true)
   void deleteUserRolesByUserId(@Param("userId") UUID userId);
+
+  // Name columns only, without loading roles
+  @Query("SELECT u.id AS id, u.username AS username, u.firstname AS firstname, u.lastname AS lastname,"
+      + " u.email AS email FROM User u WHERE u.id = :id")
+  Optional<ChatUserView> findChatUserById(@Param("id") UUID id);
+
+  @Query("SELECT u.id AS id, u.username AS username, u.firstname AS firstname, u.lastname AS lastname,"
+      + " u.email AS email FROM User u WHERE u.username = :username")
+  Optional<ChatUserView> findChatUserByUsername(@Param("username") String username);
+
+  interface ChatUserView {
+    UUID getId();
+    String getUsername();
+    String getFirstname();
+    String getLastname();
+    String getEmail();
+  }
 }
\ No newline at end of file
@@ -1,14 +1,6 @@
 package com.database.study.security;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Date;
-import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,20 +8,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 //import org.springframework.security.core.Authentication;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.database.study.entity.ActiveToken;
 import com.database.study.exception.AppException;
 import com.database.study.exception.ErrorCode;
-import com.database.study.repository.ActiveTokenRepository;
-import com.database.study.service.EncryptionService;
-import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.JWSVerifier;
-import com.nimbusds.jose.crypto.MACVerifier;
-import com.nimbusds.jwt.SignedJWT;
+import com.database.study.service.SessionRegistryService;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -42,13 +27,10 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     private static final Logger log = LoggerFactory.getLogger(JwtTokenFilter.class);
 
     @Autowired
-    private ActiveTokenRepository activeTokenRepository;
+    private SessionRegistryService sessionRegistry;
 
     @Autowired
-    private EncryptionService encryptionService;
-
-    @Autowired
-    private JwtUtils jwtUtils;
+    private TokenVerificationPipeline tokenVerificationPipeline;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
@@ -70,27 +52,17 @@ public class JwtTokenFilter extends OncePerRequestFilter {
             // logger.info("Processing authorization header");
 
             try {
-                // 1. First decrypt the token received from client
-                String plainJwtToken = encryptionService.decryptToken(encryptedToken);
-                // logger.info("Token decrypted successfully");
-
-                // 2. Extract username from the decrypted JWT
-                SignedJWT signedJWT = SignedJWT.parse(plainJwtToken);
-                String username = signedJWT.getJWTClaimsSet().getSubject();
-                if (username == null) {
-                    // logger.error("Username extraction failed");
-                    if (isApiEndpoint) {
-                        // For API endpoints, continue to the filter chain without authentication
-                        filterChain.doFilter(request, response);
-                        return;
-                    }
-                    throw new AppException(ErrorCode.INVALID_TOKEN);
-                }
+                // 1. Decrypt, parse and verify the token once for this request
+                TokenVerificationPipeline.VerifiedToken verifiedToken = tokenVerificationPipeline
+                        .verify(encryptedToken);
+                String username = verifiedToken.getSubject();
                 // logger.info("Username extracted: " + username);
 
-                // 3. Find stored token by username
-                ActiveToken activeToken = activeTokenRepository.findFirstByUsername(username);
-                if (activeToken == null) {
+                // 2. Find the active session holding this encrypted token (in memory,
+                // falling back to the database only on a miss or mismatch)
+                SessionRegistryService.Session activeSession = sessionRegistry.findByAccessToken(username,
+                        encryptedToken);
+                if (activeSession == null) {
                     // logger.error("No active token found for user: " + username);
                     if (isApiEndpoint) {
                         // For API endpoints, continue to the filter chain without authentication
@@ -100,8 +72,8 @@ public class JwtTokenFilter extends OncePerRequestFilter {
                     throw new AppException(ErrorCode.INVALID_TOKEN);
                 }
 
-                // 4. Check if token has expired
-                if (activeToken.getExpiryTime().before(new Date())) {
+                // 3. Check if token has expired
+                if (activeSession.isAccessTokenExpired()) {
                     // logger.error("Token has expired for user: " + username);
                     if (isApiEndpoint) {
                         // For API endpoints, continue to the filter chain without authentication
@@ -111,26 +83,9 @@ public class JwtTokenFilter extends OncePerRequestFilter {
                     throw new AppException(ErrorCode.INVALID_TOKEN);
                 }
 
-                // 5. Verify tokens match - compare encrypted tokens
-                if (!activeToken.getToken().equals(encryptedToken)) {
-                    // logger.error("Token mismatch for user: " + username);
-                    if (isApiEndpoint) {
-                        // For API endpoints, continue to the filter chain without authentication
-                        filterChain.doFilter(request, response);
-                        return;
-                    }
-                    throw new AppException(ErrorCode.INVALID_TOKEN);
-                }
-
-                // 6. Verify JWT signature using dynamic key if available
-                verifyJwtSignature(signedJWT);
-
-                // 7. Extract authorities from JWT
-                Collection<SimpleGrantedAuthority> authorities = extractAuthoritiesFromJwt(signedJWT);
-
-                // 8. Create authentication object and set in security context
+                // 4. Create authentication object and set in security context
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(username,
-                        null, authorities);
+                        null, verifiedToken.getAuthorities());
 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
                 // logger.info("Authentication set in SecurityContextHolder: " +
@@ -140,7 +95,7 @@ public class JwtTokenFilter extends OncePerRequestFilter {
                 // .map(a -> a.getAuthority())
                 // .collect(Collectors.joining(", ")));
 
-            } catch (ParseException | JOSEException | IOException | RuntimeException e) {
+            } catch (IOException | RuntimeException e) {
                 SecurityContextHolder.clearContext();
                 // Different log messages based on exception type
                 // if (e instanceof ParseException || e instanceof JOSEException) {
@@ -189,97 +144,4 @@ public class JwtTokenFilter extends OncePerRequestFilter {
         // logger.info("After doFilter - Authentication in context: " +
         // (afterAuth != null ? afterAuth.getName() : "null"));
     }
-
-    private void verifyJwtSignature(SignedJWT signedJWT) throws ParseException, JOSEException {
-        // Extract info for dynamic key
-        String userIdStr = signedJWT.getJWTClaimsSet().getStringClaim("userId");
-        String refreshExpiryStr = signedJWT.getJWTClaimsSet().getStringClaim("refreshExpiry");
-
-        boolean verified = false;
-
-        // First try with dynamic key if needed info is available
-        if (userIdStr != null && !userIdStr.isEmpty() &&
-                refreshExpiryStr != null && !refreshExpiryStr.isEmpty()) {
-            try {
-                UUID userId = UUID.fromString(userIdStr);
-
-                // Parse the refresh expiry
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-                Date refreshExpiry = sdf.parse(refreshExpiryStr);
-
-                // Sử dụng computeDynamicSecretKey từ AuthenticationService
-                byte[] dynamicKey = jwtUtils.computeDynamicSecretKey(userId, refreshExpiry);
-                JWSVerifier dynamicVerifier = new MACVerifier(dynamicKey);
-
-                verified = signedJWT.verify(dynamicVerifier);
-
-                if (verified) {
-                    log.debug("Token verified with dynamic key for user: " + userIdStr);
-                    Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-                    verified = expiryTime.after(new Date());
-                }
-            } catch (IllegalArgumentException e) {
-                // This can happen with UUID.fromString() if userIdStr is not a valid UUID
-                log.warn("Invalid UUID format: " + e.getMessage(), e);
-                verified = false;
-            } catch (ParseException e) {
-                // This can happen with sdf.parse() if refreshExpiryStr is not in the expected
-                // format
-                log.warn("Error parsing date: " + e.getMessage(), e);
-                verified = false;
-            } catch (JOSEException e) {
-                // This can happen with signedJWT.verify() if there's an issue with the
-                // verification
-                log.warn("Error during JWT verification: " + e.getMessage(), e);
-                verified = false;
-            } catch (RuntimeException e) {
-                // Fallback for any other unexpected runtime exceptions
-                log.warn("Unexpected runtime error verifying with dynamic key: " + e.getMessage(), e);
-                verified = false;
-            }
-        }
-
-        // If not verified with dynamic key, try with static key for backward
-        // compatibility
-        if (!verified) {
-            JWSVerifier staticVerifier = new MACVerifier(jwtUtils.getSecretKeyBytes());
-            verified = signedJWT.verify(staticVerifier);
-
-            if (verified) {
-                log.debug("Token verified with static key");
-                Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-                verified = expiryTime.after(new Date());
-            }
-        }
-
-        if (!verified) {
-            throw new AppException(ErrorCode.INVALID_TOKEN);
-        }
-    }
-
-    private Collection<SimpleGrantedAuthority> extractAuthoritiesFromJwt(SignedJWT jwt) {
-        try {
-            // Get the scope claim which contains space-separated role/permission strings
-            String scope = jwt.getJWTClaimsSet().getStringClaim("scope");
-
-            if (scope != null && !scope.isEmpty()) {
-                // Split by space and convert to SimpleGrantedAuthority objects
-                return Arrays.stream(scope.split(" "))
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList());
-            }
-
-            return List.of();
-        } catch (ParseException e) {
-            log.error("Error parsing JWT claims: " + e.getMessage(), e);
-            return List.of();
-        } catch (NullPointerException e) {
-            log.error("Null value encountered while extracting authorities: " + e.getMessage(), e);
-            return List.of();
-        } catch (RuntimeException e) {
-            // Fallback for any other unexpected runtime exceptions
-            log.error("Unexpected runtime error extracting authorities from token: " + e.getMessage(), e);
-            return List.of();
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,65 +1,181 @@
 package com.database.study.security;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 import jakarta.annotation.PostConstruct;
 
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.text.SimpleDateFormat;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Base64;
 import java.util.Date;
 import java.util.UUID;
 
 import javax.crypto.Mac;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.util.Base64URL;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @Component
-public class JwtUtils {
+public class JwtUtils implements MeterBinder {
+    // Format of the refreshExpiry claim; same zone as the former SimpleDateFormat
+    private static final DateTimeFormatter REFRESH_EXPIRY_FORMAT = DateTimeFormatter
+            .ofPattern("yyyyMMddHHmmss")
+            .withZone(ZoneId.systemDefault());
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private static final ThreadLocal<Mac> HMAC_SHA512 = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance("HmacSHA512");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("HmacSHA512 not available", e);
+        }
+    });
+
     @Value("${JWT_KEY}")
     private String jwtKey;
-    
+
+    @Value("${security.jwt-verifier-cache.max-size:10000}")
+    private long maxCachedVerifiers;
+
+    @Value("${security.jwt-verifier-cache.ttl-minutes:60}")
+    private long verifierCacheTtlMinutes;
+
     private byte[] secretKeyBytes;
-    
+
+    // HmacSHA256 keyed with the static secret, one per thread
+    private ThreadLocal<Mac> dynamicKeyMac;
+
+    private JWSVerifier staticVerifier;
+
+    // "userId|refreshExpiry" claim pair -> verifier holding the derived key
+    private Cache<String, JWSVerifier> verifierCache;
+
     @PostConstruct
     public void init() {
         secretKeyBytes = Base64.getDecoder().decode(jwtKey);
+        SecretKeySpec keySpec = new SecretKeySpec(secretKeyBytes, "HmacSHA256");
+        dynamicKeyMac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(keySpec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialise HmacSHA256", e);
+            }
+        });
+        try {
+            staticVerifier = new PooledMacVerifier(secretKeyBytes);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Invalid JWT key", e);
+        }
+        verifierCache = Caffeine.newBuilder()
+                .maximumSize(maxCachedVerifiers)
+                .expireAfterAccess(Duration.ofMinutes(verifierCacheTtlMinutes))
+                .recordStats()
+                .build();
         log.debug("JWT Key initialized, length: {}", secretKeyBytes.length);
     }
-    
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, verifierCache, "jwt.verifiers");
+    }
+
     public byte[] getSecretKeyBytes() {
         return secretKeyBytes;
     }
-    
+
+    public String formatRefreshExpiry(Date refreshExpiry) {
+        return REFRESH_EXPIRY_FORMAT.format(refreshExpiry.toInstant());
+    }
+
+    public Date parseRefreshExpiry(String refreshExpiry) throws ParseException {
+        try {
+            LocalDateTime dateTime = LocalDateTime.parse(refreshExpiry, REFRESH_EXPIRY_FORMAT);
+            return Date.from(dateTime.atZone(REFRESH_EXPIRY_FORMAT.getZone()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new ParseException(e.getMessage(), e.getErrorIndex());
+        }
+    }
+
+    /**
+     * Verifier for the static key, used for legacy and OAuth tokens
+     */
+    public JWSVerifier getStaticVerifier() {
+        return staticVerifier;
+    }
+
+    /**
+     * Verifier for the dynamic key of a token, taken from its userId and
+     * refreshExpiry claims. The key is derived once per claim pair and cached.
+     *
+     * @throws IllegalArgumentException if userId is not a UUID
+     * @throws ParseException if refreshExpiry is not in the claim format
+     */
+    public JWSVerifier getDynamicVerifier(String userId, String refreshExpiry) throws ParseException {
+        String cacheKey = userId + "|" + refreshExpiry;
+        JWSVerifier verifier = verifierCache.getIfPresent(cacheKey);
+        if (verifier != null) {
+            return verifier;
+        }
+        byte[] dynamicKey = computeDynamicSecretKey(UUID.fromString(userId), parseRefreshExpiry(refreshExpiry));
+        try {
+            verifier = new PooledMacVerifier(dynamicKey);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Invalid dynamic key", e);
+        }
+        verifierCache.put(cacheKey, verifier);
+        return verifier;
+    }
+
     public byte[] computeDynamicSecretKey(UUID userId, Date refreshTokenExpiry) {
         try {
             // Format expiry time consistently for deterministic results
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-            String expiryStr = sdf.format(refreshTokenExpiry);
-            
+            String expiryStr = formatRefreshExpiry(refreshTokenExpiry);
+
             // Step 1: SHA-256(user_id + expiry_refresh_token)
             String input = userId.toString() + expiryStr;
-            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
-            byte[] step1Result = sha256.digest(input.getBytes(StandardCharsets.UTF_8));
-            
+            byte[] step1Result = SHA_256.get().digest(input.getBytes(StandardCharsets.UTF_8));
+
             // Step 2: HMAC(result_from_step_1, secretKeyBytes)
-            Mac hmac = Mac.getInstance("HmacSHA256");
-            SecretKeySpec keySpec = new SecretKeySpec(
-                secretKeyBytes,
-                "HmacSHA256"
-            );
-            hmac.init(keySpec);
-            byte[] step2Result = hmac.doFinal(step1Result);
-            
+            byte[] step2Result = dynamicKeyMac.get().doFinal(step1Result);
+
             // Ensure output is 64 bytes for HS512
             byte[] finalKey = new byte[64];
             for (int i = 0; i < finalKey.length; i++) {
                 finalKey[i] = step2Result[i % step2Result.length];
             }
-            
+
             log.debug("Generated dynamic key for user: {}", userId);
             return finalKey;
         } catch (Exception e) {
@@ -68,4 +184,34 @@ public class JwtUtils {
             return secretKeyBytes;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * MACVerifier that checks HS512 signatures with a per-thread Mac instead of
+     * looking up a new one from the JCA provider on every call. Other
+     * algorithms and headers with critical parameters fall back to
+     * MACVerifier.
+     */
+    private static final class PooledMacVerifier extends MACVerifier {
+        private final SecretKey hs512Key;
+
+        PooledMacVerifier(byte[] secret) throws JOSEException {
+            super(secret);
+            this.hs512Key = new SecretKeySpec(secret, "HmacSHA512");
+        }
+
+        @Override
+        public boolean verify(JWSHeader header, byte[] signedContent, Base64URL signature) throws JOSEException {
+            if (!JWSAlgorithm.HS512.equals(header.getAlgorithm()) || header.getCriticalParams() != null) {
+                return super.verify(header, signedContent, signature);
+            }
+            try {
+                Mac mac = HMAC_SHA512.get();
+                mac.init(hs512Key);
+                byte[] expected = mac.doFinal(signedContent);
+                return MessageDigest.isEqual(expected, signature.decode());
+            } catch (GeneralSecurityException e) {
+                throw new JOSEException("HS512 verification failed: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.database.study.security;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Canonical, immutable authority lists for the scope claim of our JWTs.
+ *
+ * Scopes come from AuthenticationService.buildScope over a small set of roles
+ * and permissions, so every token with the same roles carries the same scope
+ * string. Each distinct scope is split once and each authority name maps to a
+ * single shared SimpleGrantedAuthority. RoleService and PermissionService
+ * clear the cache when roles or permissions change so stale scopes do not
+ * linger.
+ */
+@Slf4j
+@Component
+public class ScopeAuthorityCache {
+
+    public static final GrantedAuthority ROLE_ADMIN = new SimpleGrantedAuthority("ROLE_ADMIN");
+
+    // Upper bound for distinct scope strings; tokens beyond it are still served,
+    // just not cached
+    private static final int MAX_SCOPES = 1024;
+
+    private final Map<String, List<GrantedAuthority>> scopes = new ConcurrentHashMap<>();
+    private final Map<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+    public ScopeAuthorityCache() {
+        authorities.put(ROLE_ADMIN.getAuthority(), ROLE_ADMIN);
+    }
+
+    /**
+     * Authorities for a space-separated scope claim
+     */
+    public List<GrantedAuthority> get(String scope) {
+        if (scope == null || scope.isEmpty()) {
+            return List.of();
+        }
+        List<GrantedAuthority> cached = scopes.get(scope);
+        if (cached != null) {
+            return cached;
+        }
+        List<GrantedAuthority> parsed = Arrays.stream(scope.split(" "))
+                .filter(name -> !name.isEmpty())
+                .map(this::intern)
+                .toList();
+        if (scopes.size() < MAX_SCOPES) {
+            List<GrantedAuthority> existing = scopes.putIfAbsent(scope, parsed);
+            return existing != null ? existing : parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * Drop all cached scopes after a role or permission change
+     */
+    public void invalidate() {
+        scopes.clear();
+        authorities.keySet().removeIf(name -> !name.equals(ROLE_ADMIN.getAuthority()));
+        log.debug("Scope authority cache invalidated");
+    }
+
+    /**
+     * Whether the authentication holds ROLE_ADMIN; interned authorities match by
+     * reference, others by name
+     */
+    public static boolean isAdmin(Authentication authentication) {
+        if (authentication == null) {
+            return false;
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (authority == ROLE_ADMIN || ROLE_ADMIN.getAuthority().equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private GrantedAuthority intern(String name) {
+        return authorities.computeIfAbsent(name, SimpleGrantedAuthority::new);
+    }
+}
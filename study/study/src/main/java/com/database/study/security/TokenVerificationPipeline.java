@@ -0,0 +1,155 @@
+package com.database.study.security;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.database.study.exception.AppException;
+import com.database.study.exception.ErrorCode;
+import com.database.study.service.EncryptionService;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single place where a client token is turned into an authenticated identity:
+ * decrypt, parse, verify signature and expiry, and extract authorities.
+ *
+ * The result is immutable and kept as an attribute of the current request, so
+ * the security filter, introspection and any later caller in the same request
+ * reuse it instead of decrypting and parsing the token again. Revocation is not
+ * checked here; callers consult SessionRegistryService for that.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenVerificationPipeline {
+
+    private static final String REQUEST_ATTRIBUTE = TokenVerificationPipeline.class.getName() + ".RESULT";
+
+    private final EncryptionService encryptionService;
+    private final JwtUtils jwtUtils;
+    private final ScopeAuthorityCache scopeAuthorityCache;
+
+    /**
+     * Verify an encrypted token as sent by a client
+     *
+     * @throws AppException INVALID_TOKEN if the token cannot be decrypted,
+     *                      parsed or verified, has expired or has no subject
+     */
+    public VerifiedToken verify(String encryptedToken) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            Object cached = requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (cached instanceof VerifiedToken verifiedToken
+                    && verifiedToken.getEncryptedToken().equals(encryptedToken)) {
+                return verifiedToken;
+            }
+        }
+
+        VerifiedToken verifiedToken;
+        try {
+            String plainToken = encryptionService.decryptToken(encryptedToken);
+            SignedJWT signedJWT = verifySignature(plainToken);
+            verifiedToken = toVerifiedToken(encryptedToken, signedJWT.getJWTClaimsSet());
+        } catch (ParseException | JOSEException e) {
+            log.debug("Token verification failed: {}", e.getMessage());
+            throw new AppException(ErrorCode.INVALID_TOKEN);
+        } catch (AppException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.debug("Token verification failed: {}", e.getMessage());
+            throw new AppException(ErrorCode.INVALID_TOKEN);
+        }
+
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(REQUEST_ATTRIBUTE, verifiedToken, RequestAttributes.SCOPE_REQUEST);
+        }
+        return verifiedToken;
+    }
+
+    /**
+     * Parse a plain JWT and verify its signature and expiry, trying the dynamic
+     * per-user key first and the static key for legacy and OAuth tokens
+     *
+     * @throws AppException INVALID_TOKEN if neither key verifies the token or it
+     *                      has expired
+     */
+    public SignedJWT verifySignature(String plainToken) throws ParseException, JOSEException {
+        SignedJWT signedJWT = SignedJWT.parse(plainToken);
+        JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+
+        String userIdStr = claims.getStringClaim("userId");
+        String refreshExpiryStr = claims.getStringClaim("refreshExpiry");
+
+        boolean verified = false;
+
+        // Tokens carrying userId and refreshExpiry are signed with the dynamic key
+        if (userIdStr != null && !userIdStr.isEmpty() &&
+                refreshExpiryStr != null && !refreshExpiryStr.isEmpty()) {
+            try {
+                verified = signedJWT.verify(jwtUtils.getDynamicVerifier(userIdStr, refreshExpiryStr));
+                if (verified) {
+                    log.debug("Token verified with dynamic key for user: {}", userIdStr);
+                }
+            } catch (ParseException | JOSEException | IllegalArgumentException e) {
+                log.warn("Error verifying with dynamic key: {}", e.getMessage());
+                verified = false;
+            }
+        }
+
+        // Legacy or OAuth token signed with the static key
+        if (!verified) {
+            verified = signedJWT.verify(jwtUtils.getStaticVerifier());
+            if (verified) {
+                log.debug("Token verified with static key");
+            }
+        }
+
+        Date expiryTime = claims.getExpirationTime();
+        if (!verified || expiryTime == null || !expiryTime.after(new Date())) {
+            throw new AppException(ErrorCode.INVALID_TOKEN);
+        }
+        return signedJWT;
+    }
+
+    private VerifiedToken toVerifiedToken(String encryptedToken, JWTClaimsSet claims) throws ParseException {
+        String subject = claims.getSubject();
+        if (subject == null) {
+            throw new AppException(ErrorCode.INVALID_TOKEN);
+        }
+        return new VerifiedToken(
+                encryptedToken,
+                subject,
+                claims.getStringClaim("userId"),
+                claims.getJWTID(),
+                claims.getExpirationTime(),
+                scopeAuthorityCache.get(claims.getStringClaim("scope")));
+    }
+
+    /**
+     * Immutable outcome of a successful verification
+     */
+    @Value
+    public static class VerifiedToken {
+        String encryptedToken;
+        String subject;
+        String userId;
+        String jwtId;
+        Date expiryTime;
+        List<GrantedAuthority> authorities;
+
+        public Date getExpiryTime() {
+            return new Date(expiryTime.getTime());
+        }
+    }
+}
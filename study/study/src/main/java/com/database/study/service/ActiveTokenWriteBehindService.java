@@ -0,0 +1,305 @@
+package com.database.study.service;
+
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.database.study.entity.ActiveToken;
+import com.database.study.repository.ActiveTokenRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind queue for access token rotations on active_tokens.
+ *
+ * Refreshing a session only replaces its access token, expiry and description.
+ * With security.active-token.refresh-durability=async these updates are queued
+ * per session id, so repeated rotations of one session collapse into a single
+ * row update, and a scheduled flush writes them in JDBC batches. With sync the
+ * update is executed in the caller's transaction as before. Logins always
+ * insert synchronously.
+ *
+ * Queued updates are visible to SessionRegistryService through
+ * {@link #getPending(String)} so a registry reload never resurrects the access
+ * token being replaced. Code that loads a row to write it back in full first
+ * moves the queued update onto it with {@link #applyPending(ActiveToken)}.
+ *
+ * Each queued update remembers the digest of the access token it replaces. The
+ * flush locks the rows of a batch and writes only those still holding that
+ * token, so a rotation never overwrites a row a login saved in the meantime.
+ */
+@Slf4j
+@Service
+public class ActiveTokenWriteBehindService implements MeterBinder {
+
+  private static final String UPDATE_ACCESS_TOKEN_SQL =
+      "UPDATE active_tokens SET token = ?, expiry_time = ?, description = ? WHERE id = ?";
+  private static final String LOCK_ACCESS_TOKENS_SQL =
+      "SELECT id, token FROM active_tokens WHERE id IN (%s) FOR UPDATE";
+
+  private final ActiveTokenRepository activeTokenRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  @Value("${security.active-token.refresh-durability:async}")
+  private String refreshDurability;
+
+  @Value("${security.active-token.batch-size:100}")
+  private int batchSize;
+
+  // session id -> latest access token not yet written
+  private final Map<String, PendingAccessToken> pending = new ConcurrentHashMap<>();
+
+  private boolean async;
+  private Timer flushTimer;
+  private Counter coalescedCounter;
+  private Counter supersededCounter;
+
+  public ActiveTokenWriteBehindService(ActiveTokenRepository activeTokenRepository, JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager) {
+    this.activeTokenRepository = activeTokenRepository;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @PostConstruct
+  public void init() {
+    if (!"async".equals(refreshDurability) && !"sync".equals(refreshDurability)) {
+      throw new IllegalStateException(
+          "security.active-token.refresh-durability must be sync or async, was " + refreshDurability);
+    }
+    async = "async".equals(refreshDurability);
+    log.info("Active token refresh durability: {}", refreshDurability);
+  }
+
+  @Override
+  public void bindTo(@NonNull MeterRegistry registry) {
+    registry.gauge("active.token.write.queue.depth", pending, Map::size);
+    flushTimer = Timer.builder("active.token.write.flush")
+        .description("Time to write one batch of queued access token updates")
+        .register(registry);
+    coalescedCounter = Counter.builder("active.token.write.coalesced")
+        .description("Access token updates replaced by a newer one before being written")
+        .register(registry);
+    supersededCounter = Counter.builder("active.token.write.superseded")
+        .description("Access token updates dropped because the row was saved with another token first")
+        .register(registry);
+  }
+
+  /**
+   * Replace the access token of a session, either now or on the next flush
+   * depending on the configured refresh durability
+   *
+   * @param replacedDigest digest of the access token being replaced, see
+   *                       SessionRegistryService.digest
+   */
+  public void updateAccessToken(String id, byte[] replacedDigest, String token, Date expiryTime,
+      String description) {
+    if (!async) {
+      activeTokenRepository.updateAccessToken(id, token, expiryTime, description);
+      return;
+    }
+    PendingAccessToken update = new PendingAccessToken(id, replacedDigest, token, expiryTime, description);
+    Runnable enqueue = () -> pending.merge(id, update, (current, next) -> {
+      // The row still holds the token the unwritten update replaces
+      if (coalescedCounter != null) {
+        coalescedCounter.increment();
+      }
+      return next.replacing(current.replacedDigest);
+    });
+    // Only queue what the caller actually committed
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          enqueue.run();
+        }
+      });
+    } else {
+      enqueue.run();
+    }
+  }
+
+  /**
+   * Move a queued access token onto a loaded row, so that saving the row (or
+   * letting the transaction flush it) writes the latest token synchronously.
+   * The update is queued again if the transaction rolls back.
+   */
+  public void applyPending(ActiveToken token) {
+    PendingAccessToken update = pending.remove(token.getId());
+    if (update == null) {
+      return;
+    }
+    token.setToken(update.getToken());
+    token.setExpiryTime(update.getExpiryTime());
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          if (status != STATUS_COMMITTED) {
+            pending.putIfAbsent(update.getId(), update);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Drop the queued update of a row the caller is writing in full, once the
+   * caller's transaction commits; a rolled back write keeps it
+   */
+  public void discard(String id) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          pending.remove(id);
+        }
+      });
+    } else {
+      pending.remove(id);
+    }
+  }
+
+  /**
+   * The queued access token of a session, or null if nothing is pending
+   */
+  public PendingAccessToken getPending(String id) {
+    return pending.get(id);
+  }
+
+  public int getQueueDepth() {
+    return pending.size();
+  }
+
+  /**
+   * Write all queued updates in JDBC batches
+   */
+  @Scheduled(fixedDelayString = "${security.active-token.flush-interval-ms:200}")
+  public void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    List<PendingAccessToken> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+    Iterator<PendingAccessToken> iterator = pending.values().iterator();
+    while (iterator.hasNext()) {
+      batch.add(iterator.next());
+      if (batch.size() == batchSize) {
+        writeBatch(batch);
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+    if (!batch.isEmpty()) {
+      writeBatch(batch);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flush();
+    if (!pending.isEmpty()) {
+      log.warn("{} access token updates could not be written before shutdown", pending.size());
+    }
+  }
+
+  private void writeBatch(List<PendingAccessToken> batch) {
+    long started = System.nanoTime();
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        // Locked until commit, so a login cannot save one of these rows between the check and the update
+        Map<String, byte[]> current = new HashMap<>();
+        jdbcTemplate.query(String.format(LOCK_ACCESS_TOKENS_SQL, String.join(", ", Collections.nCopies(batch.size(),
+            "?"))), (RowCallbackHandler) rs -> current.put(rs.getString(1), SessionRegistryService.digest(
+                rs.getString(2))), batch.stream().map(PendingAccessToken::getId).toArray());
+        List<PendingAccessToken> writable = batch.stream()
+            .filter(update -> MessageDigest.isEqual(current.get(update.getId()), update.replacedDigest))
+            .toList();
+        if (writable.size() < batch.size() && supersededCounter != null) {
+          supersededCounter.increment(batch.size() - writable.size());
+        }
+        if (!writable.isEmpty()) {
+          jdbcTemplate.batchUpdate(UPDATE_ACCESS_TOKEN_SQL, writable, writable.size(), (ps, update) -> {
+            ps.setString(1, update.getToken());
+            ps.setTimestamp(2, new Timestamp(update.getExpiryTime().getTime()));
+            ps.setString(3, update.getDescription());
+            ps.setString(4, update.getId());
+          });
+        }
+      });
+      // An entry replaced while the batch was being written now replaces the token just written, or, if the
+      // row was superseded, a token the row no longer holds either
+      batch.forEach(update -> pending.computeIfPresent(update.getId(),
+          (id, entry) -> entry == update ? null : entry.replacing(SessionRegistryService.digest(update.getToken()))));
+    } catch (RuntimeException e) {
+      log.error("Error writing {} access token updates, will retry: {}", batch.size(), e.getMessage(), e);
+    } finally {
+      if (flushTimer != null) {
+        flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  /**
+   * Access token update waiting to be written
+   */
+  public static final class PendingAccessToken {
+    private final String id;
+    private final byte[] replacedDigest;
+    private final String token;
+    private final Date expiryTime;
+    private final String description;
+
+    PendingAccessToken(String id, byte[] replacedDigest, String token, Date expiryTime, String description) {
+      this.id = id;
+      this.replacedDigest = replacedDigest;
+      this.token = token;
+      this.expiryTime = new Date(expiryTime.getTime());
+      this.description = description;
+    }
+
+    PendingAccessToken replacing(byte[] digest) {
+      return new PendingAccessToken(id, digest, token, expiryTime, description);
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getToken() {
+      return token;
+    }
+
+    public Date getExpiryTime() {
+      return new Date(expiryTime.getTime());
+    }
+
+    public String getDescription() {
+      return description;
+    }
+  }
+}
@@ -48,6 +48,7 @@ import com.database.study.repository.RoleRepository;
 import com.database.study.repository.UserRepository;
 import com.database.study.security.JwtUtils;
 import com.database.study.security.TokenSecurity;
+import com.database.study.security.TokenVerificationPipeline;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
@@ -56,8 +57,6 @@ import com.nimbusds.jose.Payload;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
-import com.nimbusds.jose.crypto.MACVerifier;
-import com.nimbusds.jose.JWSVerifier;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -114,6 +113,9 @@ public class AuthenticationService implements AuthenticationUtilities {
   final TotpService totpService;
   final RecaptchaService recaptchaService;
   final SecurityMonitoringService securityMonitoringService;
+  final SessionRegistryService sessionRegistry;
+  final TokenVerificationPipeline tokenVerificationPipeline;
+  final ActiveTokenWriteBehindService activeTokenWriteBehind;
 
   public AuthenticationService(
       UserRepository userRepository,
@@ -131,7 +133,10 @@ public class AuthenticationService implements AuthenticationUtilities {
       JwtUtils jwtUtils,
       TotpService totpService,
       RecaptchaService recaptchaService,
-      SecurityMonitoringService securityMonitoringService) {
+      SecurityMonitoringService securityMonitoringService,
+      SessionRegistryService sessionRegistry,
+      TokenVerificationPipeline tokenVerificationPipeline,
+      ActiveTokenWriteBehindService activeTokenWriteBehind) {
     this.userRepository = userRepository;
     this.passwordEncoder = passwordEncoder;
     this.roleRepository = roleRepository;
@@ -148,6 +153,9 @@ public class AuthenticationService implements AuthenticationUtilities {
     this.totpService = totpService;
     this.recaptchaService = recaptchaService;
     this.securityMonitoringService = securityMonitoringService;
+    this.sessionRegistry = sessionRegistry;
+    this.tokenVerificationPipeline = tokenVerificationPipeline;
+    this.activeTokenWriteBehind = activeTokenWriteBehind;
   }
 
   static final long TOKEN_EXPIRY_TIME = 60 * 60 * 1000; // 60 minutes
@@ -160,6 +168,7 @@ public class AuthenticationService implements AuthenticationUtilities {
   @Transactional
   public AuthenticationResponse authenticate(AuthenticationRequest request, boolean rememberMe,
       HttpServletRequest httpRequest) {
+    securityMonitoringService.checkRateLimit(httpRequest);
     try {
       User user = userRepository.findByUsername(request.getUsername())
           .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTS));
@@ -203,7 +212,7 @@ public class AuthenticationService implements AuthenticationUtilities {
     final long OAUTH_TOKEN_EXPIRY_TIME = 60 * 60 * 1000; // 60 minutes for OAuth tokens
 
     // Find current token
-    ActiveToken existingToken = activeTokenRepository.findFirstByUsername(user.getUsername());
+    ActiveToken existingToken = findActiveToken(user.getUsername());
 
     if (existingToken != null) {
       Date currentTime = new Date();
@@ -235,7 +244,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         existingToken.setExpiryTime(newExpiryTime);
         existingToken.setDescription("OAuth Refreshed at " + new Date());
 
-        activeTokenRepository.save(existingToken);
+        replaceActiveToken(existingToken);
 
         return AuthenticationResponse.builder()
             .token(encryptedNewAccessToken)
@@ -246,7 +255,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       // Both tokens expired, delete and create new ones
       else {
         log.info("All OAuth tokens expired for user: {}, creating new tokens", user.getUsername());
-        activeTokenRepository.delete(existingToken);
+        deleteActiveToken(existingToken);
       }
     }
 
@@ -273,7 +282,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         .description("OAuth Login at " + new Date())
         .build();
 
-    activeTokenRepository.save(newToken);
+    saveActiveToken(newToken);
 
     // 6. Return encrypted tokens to client
     return AuthenticationResponse.builder().token(encryptedAccessToken).refreshToken(encryptedRefreshToken)
@@ -284,6 +293,7 @@ public class AuthenticationService implements AuthenticationUtilities {
   @Transactional(noRollbackFor = AppException.class)
   public AuthenticationResponse authenticateWithTotp(TotpAuthenticationRequest request,
       HttpServletRequest httpRequest) {
+    securityMonitoringService.checkRateLimit(httpRequest);
     try {
       // 1. First authenticate username and password
       User user = userRepository.findByUsername(request.getUsername())
@@ -321,6 +331,7 @@ public class AuthenticationService implements AuthenticationUtilities {
 
           // Save updated user - Force a flush to ensure it's saved immediately
           User savedUser = userRepository.saveAndFlush(user);
+          securityMonitoringService.markBlocked(user.getUsername());
           log.warn("DEBUG: After password check - User saved with timeTried={}, isBlocked={}",
               savedUser.getTimeTried(), savedUser.isBlock());
 
@@ -409,6 +420,7 @@ public class AuthenticationService implements AuthenticationUtilities {
 
             // Save updated user - Force a flush to ensure it's saved immediately
             User savedUser = userRepository.saveAndFlush(refreshedUser);
+            securityMonitoringService.markBlocked(refreshedUser.getUsername());
             log.warn("DEBUG: After TOTP check - User saved with timeTried={}, isBlocked={}",
                 savedUser.getTimeTried(), savedUser.isBlock());
 
@@ -464,7 +476,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       }
 
       // 4. Check for existing tokens instead of always creating new ones
-      ActiveToken existingToken = activeTokenRepository.findFirstByUsername(user.getUsername());
+      ActiveToken existingToken = findActiveToken(user.getUsername());
 
       if (existingToken != null) {
         Date currentTime = new Date();
@@ -495,7 +507,7 @@ public class AuthenticationService implements AuthenticationUtilities {
           existingToken.setExpiryTime(newExpiryTime);
           existingToken.setDescription("Updated with TOTP at " + new Date());
 
-          activeTokenRepository.save(existingToken);
+          replaceActiveToken(existingToken);
 
           return AuthenticationResponse.builder()
               .token(encryptedNewAccessToken)
@@ -524,7 +536,7 @@ public class AuthenticationService implements AuthenticationUtilities {
           .description("Login with TOTP at " + new Date())
           .build();
 
-      activeTokenRepository.save(activeToken);
+      saveActiveToken(activeToken);
 
       return AuthenticationResponse.builder()
           .token(encryptedToken)
@@ -562,7 +574,7 @@ public class AuthenticationService implements AuthenticationUtilities {
     // Verify refresh token is still valid
     Date currentTime = new Date();
     if (tokenRecord.getExpiryRefreshTime().before(currentTime)) {
-      activeTokenRepository.delete(tokenRecord);
+      deleteActiveToken(tokenRecord);
       throw new AppException(ErrorCode.REFRESH_TOKEN_EXPIRED);
     }
 
@@ -591,11 +603,8 @@ public class AuthenticationService implements AuthenticationUtilities {
     Date newExpiryTime = extractTokenExpiry(newToken);
 
     // Update the access token
-    tokenRecord.setToken(newToken);
-    tokenRecord.setExpiryTime(newExpiryTime);
-    tokenRecord.setDescription("Refreshed at " + new Date());
-
-    activeTokenRepository.save(tokenRecord);
+    rotateAccessToken(SessionRegistryService.Session.of(tokenRecord), newToken, newExpiryTime,
+        "Refreshed at " + new Date());
 
     return TokenRefreshResponse.builder()
         .token(newToken)
@@ -620,7 +629,7 @@ public class AuthenticationService implements AuthenticationUtilities {
     }
 
     // Check for existing tokens
-    ActiveToken existingToken = activeTokenRepository.findFirstByUsername(user.getUsername());
+    ActiveToken existingToken = findActiveToken(user.getUsername());
 
     if (existingToken != null) {
       Date currentTime = new Date();
@@ -642,11 +651,8 @@ public class AuthenticationService implements AuthenticationUtilities {
         Date newExpiryTime = extractTokenExpiry(plainNewAccessToken);
         String encryptedNewAccessToken = encryptionService.encryptToken(plainNewAccessToken);
 
-        existingToken.setToken(encryptedNewAccessToken);
-        existingToken.setExpiryTime(newExpiryTime);
-        existingToken.setDescription("Refreshed at " + new Date());
-
-        activeTokenRepository.save(existingToken);
+        rotateAccessToken(SessionRegistryService.Session.of(existingToken), encryptedNewAccessToken, newExpiryTime,
+            "Refreshed at " + new Date());
         cookieService.createRefreshTokenCookie(httpResponse, existingToken.getRefreshToken());
         return AuthenticationResponse.builder()
             .token(encryptedNewAccessToken)
@@ -690,7 +696,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         .description("Login at " + new Date())
         .build();
 
-    activeTokenRepository.save(newToken);
+    saveActiveToken(newToken);
     cookieService.createRefreshTokenCookie(httpResponse, encryptedRefreshToken);
 
     return AuthenticationResponse.builder()
@@ -705,7 +711,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTS));
 
     // Check for existing tokens
-    ActiveToken existingToken = activeTokenRepository.findFirstByUsername(user.getUsername());
+    ActiveToken existingToken = findActiveToken(user.getUsername());
 
     if (existingToken != null) {
       Date currentTime = new Date();
@@ -726,11 +732,8 @@ public class AuthenticationService implements AuthenticationUtilities {
         Date newExpiryTime = extractTokenExpiry(plainNewAccessToken);
         String encryptedNewAccessToken = encryptionService.encryptToken(plainNewAccessToken);
 
-        existingToken.setToken(encryptedNewAccessToken);
-        existingToken.setExpiryTime(newExpiryTime);
-        existingToken.setDescription("OAuth Refreshed at " + new Date());
-
-        activeTokenRepository.save(existingToken);
+        rotateAccessToken(SessionRegistryService.Session.of(existingToken), encryptedNewAccessToken, newExpiryTime,
+            "OAuth Refreshed at " + new Date());
         cookieService.createRefreshTokenCookie(httpResponse, existingToken.getRefreshToken());
         return AuthenticationResponse.builder()
             .token(encryptedNewAccessToken)
@@ -774,7 +777,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         .description("OAuth Login with dynamic key at " + new Date())
         .build();
 
-    activeTokenRepository.save(newToken);
+    saveActiveToken(newToken);
     cookieService.createRefreshTokenCookie(httpResponse, encryptedRefreshToken);
 
     return AuthenticationResponse.builder()
@@ -802,23 +805,16 @@ public class AuthenticationService implements AuthenticationUtilities {
         throw new AppException(ErrorCode.INVALID_REFRESH_TOKEN);
       }
 
-      // 4. Find token record by username
-      ActiveToken token = activeTokenRepository.findFirstByUsername(username);
-      if (token == null) {
-        throw new AppException(ErrorCode.INVALID_REFRESH_TOKEN);
-      }
-
-      ActiveToken tokenRecord = token;
-
-      // 5. Verify encrypted tokens match
-      if (!tokenRecord.getRefreshToken().equals(encryptedRefreshToken)) {
+      // 4-5. Find the active session holding this encrypted refresh token
+      SessionRegistryService.Session session = sessionRegistry.findByRefreshToken(username, encryptedRefreshToken);
+      if (session == null) {
         throw new AppException(ErrorCode.INVALID_REFRESH_TOKEN);
       }
 
       // 6. Verify refresh token is still valid
-      Date currentTime = new Date();
-      if (tokenRecord.getExpiryRefreshTime().before(currentTime)) {
-        activeTokenRepository.delete(tokenRecord);
+      if (session.isRefreshTokenExpired()) {
+        activeTokenRepository.deleteById(session.getId());
+        sessionRegistry.evict(username);
         cookieService.deleteRefreshTokenCookie(httpResponse);
         throw new AppException(ErrorCode.REFRESH_TOKEN_EXPIRED);
       }
@@ -828,18 +824,14 @@ public class AuthenticationService implements AuthenticationUtilities {
           .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTS));
 
       // 8. Generate new plain JWT access token
-      String plainNewAccessToken = generateToken(user, tokenRecord.getId());
+      String plainNewAccessToken = generateToken(user, session.getId());
       Date newExpiryTime = extractTokenExpiry(plainNewAccessToken);
 
       // 9. Encrypt new token for storage and client
       String encryptedNewAccessToken = encryptionService.encryptToken(plainNewAccessToken);
 
-      // 10. Update stored token
-      tokenRecord.setToken(encryptedNewAccessToken);
-      tokenRecord.setExpiryTime(newExpiryTime);
-      tokenRecord.setDescription("Refreshed at " + new Date());
-
-      activeTokenRepository.save(tokenRecord);
+      // 10. Update stored token without reloading the row
+      rotateAccessToken(session, encryptedNewAccessToken, newExpiryTime, "Refreshed at " + new Date());
 
       // 11. Return only the access token in the response body
       return RefreshTokenResponse.builder()
@@ -870,7 +862,7 @@ public class AuthenticationService implements AuthenticationUtilities {
 
         if (uuid != null) {
           // Delete token from database
-          activeTokenRepository.deleteByUsername(uuid);
+          activeTokenRepository.findById(uuid).ifPresent(this::deleteActiveToken);
         }
       }
 
@@ -1372,13 +1364,14 @@ public class AuthenticationService implements AuthenticationUtilities {
 
     // Update token descriptions if needed
     for (ActiveToken activeToken : userTokens) {
+      activeTokenWriteBehind.applyPending(activeToken);
       // Option: update token description if it contains the email
       if (activeToken.getDescription() != null &&
           activeToken.getDescription().contains(oldEmail)) {
         activeToken.setDescription(
             activeToken.getDescription().replace(
                 oldEmail, newEmail));
-        activeTokenRepository.save(activeToken);
+        saveActiveToken(activeToken);
       }
     }
 
@@ -1440,8 +1433,9 @@ public class AuthenticationService implements AuthenticationUtilities {
     if (existingTokenOpt.isPresent()) {
       // Update description field
       ActiveToken existingToken = existingTokenOpt.get();
+      activeTokenWriteBehind.applyPending(existingToken);
       existingToken.setDescription("Logged OUT at: " + formattedDate);
-      activeTokenRepository.save(existingToken);
+      saveActiveToken(existingToken);
       activeTokenRepository.flush();
     } else {
       throw new AppException(ErrorCode.INVALID_TOKEN);
@@ -1463,23 +1457,16 @@ public class AuthenticationService implements AuthenticationUtilities {
         throw new AppException(ErrorCode.INVALID_REFRESH_TOKEN);
       }
 
-      // 4. Find token record by username
-      ActiveToken token = activeTokenRepository.findFirstByUsername(username);
-      if (token == null) {
-        throw new AppException(ErrorCode.INVALID_REFRESH_TOKEN);
-      }
-
-      ActiveToken tokenRecord = token;
-
-      // 5. Verify encrypted tokens match
-      if (!tokenRecord.getRefreshToken().equals(encryptedRefreshToken)) {
+      // 4-5. Find the active session holding this encrypted refresh token
+      SessionRegistryService.Session session = sessionRegistry.findByRefreshToken(username, encryptedRefreshToken);
+      if (session == null) {
         throw new AppException(ErrorCode.INVALID_REFRESH_TOKEN);
       }
 
       // 6. Verify refresh token is still valid
-      Date currentTime = new Date();
-      if (tokenRecord.getExpiryRefreshTime().before(currentTime)) {
-        activeTokenRepository.delete(tokenRecord);
+      if (session.isRefreshTokenExpired()) {
+        activeTokenRepository.deleteById(session.getId());
+        sessionRegistry.evict(username);
         throw new AppException(ErrorCode.REFRESH_TOKEN_EXPIRED);
       }
 
@@ -1488,18 +1475,14 @@ public class AuthenticationService implements AuthenticationUtilities {
           .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTS));
 
       // 8. Generate new plain JWT access token
-      String plainNewAccessToken = generateToken(user, tokenRecord.getId());
+      String plainNewAccessToken = generateToken(user, session.getId());
       Date newExpiryTime = extractTokenExpiry(plainNewAccessToken);
 
       // 9. Encrypt new token for storage and client
       String encryptedNewAccessToken = encryptionService.encryptToken(plainNewAccessToken);
 
-      // 10. Update stored token
-      tokenRecord.setToken(encryptedNewAccessToken);
-      tokenRecord.setExpiryTime(newExpiryTime);
-      tokenRecord.setDescription("Refreshed at " + new Date());
-
-      activeTokenRepository.save(tokenRecord);
+      // 10. Update stored token without reloading the row
+      rotateAccessToken(session, encryptedNewAccessToken, newExpiryTime, "Refreshed at " + new Date());
 
       // 11. Return encrypted tokens to client
       return RefreshTokenResponse.builder()
@@ -1516,6 +1499,60 @@ public class AuthenticationService implements AuthenticationUtilities {
     }
   }
 
+  /**
+   * Persist a token and write it through to the session registry
+   */
+  private ActiveToken saveActiveToken(ActiveToken token) {
+    activeTokenWriteBehind.discard(token.getId());
+    ActiveToken saved = activeTokenRepository.save(token);
+    sessionRegistry.register(saved);
+    return saved;
+  }
+
+  /**
+   * Persist a token over an existing session and tell other nodes the
+   * previous access token is gone
+   */
+  private ActiveToken replaceActiveToken(ActiveToken token) {
+    activeTokenWriteBehind.discard(token.getId());
+    ActiveToken saved = activeTokenRepository.save(token);
+    sessionRegistry.replace(saved);
+    return saved;
+  }
+
+  /**
+   * Load the session row of a user with any queued access token rotation
+   * applied
+   */
+  private ActiveToken findActiveToken(String username) {
+    ActiveToken token = activeTokenRepository.findFirstByUsername(username);
+    if (token != null) {
+      activeTokenWriteBehind.applyPending(token);
+    }
+    return token;
+  }
+
+  /**
+   * Replace the access token of a session through the write-behind queue and
+   * the session registry, leaving the refresh token untouched
+   */
+  private void rotateAccessToken(SessionRegistryService.Session session, String encryptedToken, Date expiryTime,
+      String description) {
+    activeTokenWriteBehind.updateAccessToken(session.getId(), session.getAccessDigest(), encryptedToken, expiryTime,
+        description);
+    sessionRegistry.updateAccessToken(session, encryptedToken, expiryTime);
+  }
+
+  private void deleteActiveToken(ActiveToken token) {
+    activeTokenRepository.delete(token);
+    sessionRegistry.evict(token);
+  }
+
+  private void revokeSessions(String username) {
+    activeTokenRepository.deleteByUsername(username);
+    sessionRegistry.evict(username);
+  }
+
   private String extractUsernameFromJwt(String token) {
     try {
       SignedJWT signedJWT = SignedJWT.parse(token);
@@ -1541,7 +1578,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       String username = claims.getSubject();
 
       // Delete user tokens
-      activeTokenRepository.deleteByUsername(username);
+      revokeSessions(username);
 
       return ApiResponse.<Void>builder()
           .message("Logged out successfully")
@@ -1570,98 +1607,26 @@ public class AuthenticationService implements AuthenticationUtilities {
     log.debug("Introspect token received (first 10 chars): {}",
         encryptedToken.substring(0, Math.min(10, encryptedToken.length())));
 
-    try {
-      // 1. First decrypt the token received from the client
-      encryptedToken = encryptedToken.trim();
-      // Sanitize before decrypting (same logic as in decryptToken)
-      String sanitizedToken = encryptedToken.trim()
-          .replace(" ", "+")
-          .replace("\n", "")
-          .replace("\r", "")
-          .replace("\t", "");
-
-      String plainJwtToken = encryptionService.decryptToken(sanitizedToken);
-
-      // 2. Verify the decrypted JWT token
-      verifyToken(plainJwtToken);
-
-      // 3. Also verify it exists in our database
-      String username = tokenSecurity.extractUsernameFromToken(plainJwtToken);
-      if (username == null) {
-        return IntrospectResponse.builder().valid(false).build();
-      }
-
-      ActiveToken token = activeTokenRepository.findFirstByUsername(username);
-      if (token == null || token.getExpiryTime().before(new Date())) {
-        return IntrospectResponse.builder().valid(false).build();
-      }
-      return IntrospectResponse.builder().valid(true).build();
-    } catch (ParseException | JOSEException e) {
-      log.error("Error parsing or validating JWT token: {}", e.getMessage(), e);
+    // 1. Decrypt and verify the token (shared with the security filter for this
+    // request)
+    // Sanitize before decrypting (same logic as in decryptToken)
+    String sanitizedToken = encryptedToken.trim()
+        .replace(" ", "+")
+        .replace("\n", "")
+        .replace("\r", "")
+        .replace("\t", "");
+    TokenVerificationPipeline.VerifiedToken verifiedToken = tokenVerificationPipeline.verify(sanitizedToken);
+
+    // 2. Also verify it exists in our database
+    SessionRegistryService.Session session = sessionRegistry.find(verifiedToken.getSubject());
+    if (session == null || session.isAccessTokenExpired()) {
       return IntrospectResponse.builder().valid(false).build();
     }
+    return IntrospectResponse.builder().valid(true).build();
   }
 
   private SignedJWT verifyToken(String token) throws ParseException, JOSEException {
-    SignedJWT signedJWT = SignedJWT.parse(token);
-
-    // Trích xuất thông tin cho dynamic key
-    String userIdStr = signedJWT.getJWTClaimsSet().getStringClaim("userId");
-    String refreshExpiryStr = signedJWT.getJWTClaimsSet().getStringClaim("refreshExpiry");
-
-    boolean verified = false;
-
-    // Trường hợp 1: Token mới với dynamic key
-    if (userIdStr != null && !userIdStr.isEmpty() &&
-        refreshExpiryStr != null && !refreshExpiryStr.isEmpty()) {
-      try {
-        UUID userId = UUID.fromString(userIdStr);
-
-        // Parse the refresh expiry
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-        Date refreshExpiry = sdf.parse(refreshExpiryStr);
-
-        // Compute dynamic key
-        byte[] dynamicKey = jwtUtils.computeDynamicSecretKey(userId, refreshExpiry);
-        JWSVerifier dynamicVerifier = new MACVerifier(dynamicKey);
-
-        verified = signedJWT.verify(dynamicVerifier);
-
-        if (verified) {
-          log.debug("Token verified with dynamic key for user: {}", userIdStr);
-          Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-          verified = expiryTime.after(new Date());
-        }
-      } catch (ParseException | JOSEException e) {
-        log.warn("Error verifying with dynamic key: {}", e.getMessage());
-        verified = false;
-      }
-    }
-
-    // Trường hợp 2: Token cũ hoặc OAuth token
-    if (!verified) {
-      try {
-        JWSVerifier staticVerifier = new MACVerifier(jwtUtils.getSecretKeyBytes());
-        verified = signedJWT.verify(staticVerifier);
-
-        if (verified) {
-          log.debug("Token verified with static key");
-          Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-          verified = expiryTime.after(new Date());
-        }
-      } catch (ParseException | JOSEException e) {
-        log.warn("Error verifying with static key: {}", e.getMessage());
-        verified = false;
-      }
-    }
-
-    // Trường hợp 3: Token không xác thực được
-    if (!verified) {
-      log.error("Token validation failed completely");
-      throw new AppException(ErrorCode.INVALID_TOKEN);
-    }
-
-    return signedJWT;
+    return tokenVerificationPipeline.verifySignature(token);
   }
 
   public String generateToken(User user, String jwtId) {
@@ -1671,8 +1636,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       Date refreshExpiry = new Date(new Date().getTime() + REFRESH_TOKEN_EXPIRY_TIME);
 
       // Format refresh expiry for claim
-      SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-      String refreshExpiryStr = sdf.format(refreshExpiry);
+      String refreshExpiryStr = jwtUtils.formatRefreshExpiry(refreshExpiry);
 
       // Compute dynamic key
       byte[] secretKey = jwtUtils.computeDynamicSecretKey(user.getId(), refreshExpiry);
@@ -1704,8 +1668,7 @@ public class AuthenticationService implements AuthenticationUtilities {
   private String generateRefreshToken(User user, String jwtId) {
     try {
       Date refreshExpiry = new Date(new Date().getTime() + REFRESH_TOKEN_EXPIRY_TIME);
-      SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-      String refreshExpiryStr = sdf.format(refreshExpiry);
+      String refreshExpiryStr = jwtUtils.formatRefreshExpiry(refreshExpiry);
 
       // Use same dynamic key algorithm
       byte[] secretKey = jwtUtils.computeDynamicSecretKey(user.getId(), refreshExpiry);
@@ -1741,8 +1704,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       Date refreshExpiry = new Date(new Date().getTime() + REFRESH_TOKEN_EXPIRY_TIME);
 
       // Format refresh expiry for claim
-      SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-      String refreshExpiryStr = sdf.format(refreshExpiry);
+      String refreshExpiryStr = jwtUtils.formatRefreshExpiry(refreshExpiry);
 
       // Compute dynamic key
       byte[] secretKey = jwtUtils.computeDynamicSecretKey(user.getId(), refreshExpiry);
@@ -1858,6 +1820,9 @@ public class AuthenticationService implements AuthenticationUtilities {
       log.info("Deleting expired refresh tokens...");
       int deletedRefreshTokens = activeTokenRepository.deleteByExpiryRefreshTimeBefore(now);
 
+      log.info("Evicting expired sessions from registry...");
+      int evictedSessions = sessionRegistry.evictExpired();
+
       // For password reset tokens
       log.info("Deleting expired password reset tokens...");
       passwordResetTokenRepository.deleteByExpiryDateBefore(nowDateTime);
@@ -1868,7 +1833,8 @@ public class AuthenticationService implements AuthenticationUtilities {
       long remainingTokens = activeTokenRepository.count();
       log.info("Cleanup completed: Deleted {} access tokens, {} refresh tokens, {} password tokens",
           deletedAccessTokens, deletedRefreshTokens, deletedPasswordTokens);
-      log.info("After cleanup: {} tokens remain in database", remainingTokens);
+      log.info("After cleanup: {} tokens remain in database, {} expired sessions evicted, {} sessions in registry",
+          remainingTokens, evictedSessions, sessionRegistry.size());
 
       if (totalTokensBeforeCleanup == remainingTokens && expiredAccessTokens > 0) {
         log.warn("Warning: Found expired tokens but none were deleted!");
@@ -1914,6 +1880,7 @@ public class AuthenticationService implements AuthenticationUtilities {
   @Transactional(noRollbackFor = AppException.class)
   public AuthenticationResponse authenticateWithEmailOtp(EmailOtpAuthenticationRequest request,
       HttpServletRequest httpRequest) {
+    securityMonitoringService.checkRateLimit(httpRequest);
     log.info("Authenticating user with email OTP: {} \t ", request.getUsername());
 
     // Get the user
@@ -1964,6 +1931,9 @@ public class AuthenticationService implements AuthenticationUtilities {
 
       // Explicitly save and flush the user entity to ensure changes are committed
       User savedUser = userRepository.saveAndFlush(user);
+      if (savedUser.isBlock()) {
+        securityMonitoringService.markBlocked(savedUser.getUsername());
+      }
       log.info("User saved with timeTried={}, isBlocked={}", savedUser.getTimeTried(), savedUser.isBlock());
 
       // Calculate remaining attempts
@@ -2015,7 +1985,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         .description("Email OTP authentication at " + new Date())
         .build();
 
-    activeTokenRepository.save(activeToken);
+    saveActiveToken(activeToken);
 
     // Set cookie if needed
     if (httpRequest != null) {
@@ -2036,6 +2006,7 @@ public class AuthenticationService implements AuthenticationUtilities {
   @Transactional
   public AuthenticationInitResponse initiateAuthentication(AuthenticationRequest request,
       HttpServletRequest httpRequest) {
+    securityMonitoringService.checkRateLimit(httpRequest);
     try {
       // Check if user is blocked
       User user = userRepository.findByUsername(request.getUsername())
@@ -2099,7 +2070,7 @@ public class AuthenticationService implements AuthenticationUtilities {
     // activeTokenRepository.deleteAllByExpiryRefreshTimeBefore(new Date());
 
     // Check for existing tokens
-    ActiveToken existingToken = activeTokenRepository.findFirstByUsername(user.getUsername());
+    ActiveToken existingToken = findActiveToken(user.getUsername());
 
     if (existingToken != null) {
       Date currentTime = new Date();
@@ -2131,7 +2102,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         existingToken.setExpiryTime(newExpiryTime);
         existingToken.setDescription("Refreshed at " + new Date());
 
-        activeTokenRepository.save(existingToken);
+        replaceActiveToken(existingToken);
 
         // Send encrypted tokens to client
         return AuthenticationResponse.builder()
@@ -2143,7 +2114,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       // Both tokens expired, delete and create new ones
       else {
         log.info("All tokens expired for user: {}, creating new tokens", user.getUsername());
-        activeTokenRepository.delete(existingToken);
+        deleteActiveToken(existingToken);
       }
     }
 
@@ -2170,7 +2141,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         .description("Login at " + new Date())
         .build();
 
-    activeTokenRepository.save(newToken);
+    saveActiveToken(newToken);
 
     // Return encrypted tokens to client
     return AuthenticationResponse.builder()
@@ -2235,7 +2206,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         if (!userTokens.isEmpty()) {
           log.warn("Removing {} potentially compromised tokens for user {}", userTokens.size(), username);
           for (ActiveToken token : userTokens) {
-            activeTokenRepository.delete(token);
+            deleteActiveToken(token);
           }
         }
 
@@ -2252,7 +2223,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         // Delete the token as it appears to be compromised
         log.warn("Token username mismatch: token user={}, claimed user={}",
             activeToken.getUsername(), username);
-        activeTokenRepository.delete(activeToken);
+        deleteActiveToken(activeToken);
 
         throw new AppException(ErrorCode.INVALID_REFRESH_TOKEN);
       }
@@ -2260,7 +2231,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       // Check if refresh token has expired
       if (activeToken.getExpiryRefreshTime().before(new Date())) {
         // Delete expired token
-        activeTokenRepository.delete(activeToken);
+        deleteActiveToken(activeToken);
         log.info("Refresh token has expired, removing from active tokens");
 
         throw new AppException(ErrorCode.REFRESH_TOKEN_EXPIRED);
@@ -2274,7 +2245,7 @@ public class AuthenticationService implements AuthenticationUtilities {
 
       if (!user.isActive()) {
         // If account is not active, remove the token
-        activeTokenRepository.delete(activeToken);
+        deleteActiveToken(activeToken);
         throw new AppException(ErrorCode.ACCOUNT_NOT_VERIFIED);
       }
 
@@ -2287,7 +2258,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       // Update active token in database
       activeToken.setToken(newToken);
       activeToken.setExpiryTime(extractTokenExpiry(newToken));
-      activeTokenRepository.save(activeToken);
+      replaceActiveToken(activeToken);
 
       return AuthenticationResponse.builder()
           .token(newToken)
@@ -2365,6 +2336,9 @@ public class AuthenticationService implements AuthenticationUtilities {
 
       // Explicitly save and flush the user entity to ensure changes are committed
       User savedUser = userRepository.saveAndFlush(user);
+      if (savedUser.isBlock()) {
+        securityMonitoringService.markBlocked(savedUser.getUsername());
+      }
       log.info("User saved with timeTried={}, isBlocked={}", savedUser.getTimeTried(), savedUser.isBlock());
 
       // Calculate remaining attempts
@@ -2398,7 +2372,7 @@ public class AuthenticationService implements AuthenticationUtilities {
     userRepository.save(user);
 
     // Check for existing tokens instead of always creating new ones
-    ActiveToken existingToken = activeTokenRepository.findFirstByUsername(user.getUsername());
+    ActiveToken existingToken = findActiveToken(user.getUsername());
 
     Date currentTime = new Date();
 
@@ -2425,7 +2399,7 @@ public class AuthenticationService implements AuthenticationUtilities {
       existingToken.setExpiryTime(newExpiryTime);
       existingToken.setDescription("Refreshed at " + new Date());
 
-      activeTokenRepository.save(existingToken);
+      replaceActiveToken(existingToken);
 
       return AuthenticationResponse.builder()
           .token(plainNewAccessToken)
@@ -2450,7 +2424,7 @@ public class AuthenticationService implements AuthenticationUtilities {
         .description("Email OTP authentication at " + new Date())
         .build();
 
-    activeTokenRepository.save(activeToken);
+    saveActiveToken(activeToken);
 
     log.info("Email OTP authentication successful for user: {}", user.getUsername());
     return AuthenticationResponse.builder().token(accessToken).refreshToken(refreshToken).authenticated(true).build();
@@ -1,6 +1,7 @@
 package com.database.study.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -19,8 +20,8 @@ import com.database.study.entity.User;
 import com.database.study.exception.AppException;
 import com.database.study.exception.ErrorCode;
 import com.database.study.mapper.ChatContactMapper;
+import com.database.study.mapper.ChatMessageMapper;
 import com.database.study.repository.ChatContactRepository;
-import com.database.study.repository.ChatMessageRepository;
 import com.database.study.repository.UserRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -36,8 +37,9 @@ public class ChatContactService {
 
         private final ChatContactRepository contactRepository;
         private final UserRepository userRepository;
-        private final ChatMessageRepository messageRepository;
         private final ChatContactMapper contactMapper;
+        private final ChatMessageMapper messageMapper;
+        private final UnreadCounterService unreadCounterService;
         private final SimpMessagingTemplate messagingTemplate;
 
         @Transactional
@@ -358,13 +360,19 @@ public class ChatContactService {
 
                 List<ChatContact> contacts = contactRepository.findByUserAndStatus(user, ContactStatus.ACCEPTED);
 
-                // Enrich with unread message counts
-                return contacts.stream()
-                                .map(contact -> {
-                                        int unreadCount = (int) messageRepository.countByReceiverAndReadFalse(user);
-                                        return contactMapper.toResponseWithUnreadCount(contact, unreadCount);
-                                })
+                // Enrich with the unread count of each conversation, all read at once
+                List<String> conversationIds = contacts.stream()
+                                .map(contact -> messageMapper.generateConversationId(user.getId(),
+                                                contact.getContact().getId()))
                                 .collect(Collectors.toList());
+                Map<String, Long> unreadCounts = unreadCounterService.getUnreadCounts(user.getId(), conversationIds);
+
+                List<ChatContactResponse> responses = new ArrayList<>(contacts.size());
+                for (int i = 0; i < contacts.size(); i++) {
+                        int unreadCount = unreadCounts.get(conversationIds.get(i)).intValue();
+                        responses.add(contactMapper.toResponseWithUnreadCount(contacts.get(i), unreadCount));
+                }
+                return responses;
         }
 
         @Transactional(readOnly = true)
@@ -408,8 +416,9 @@ public class ChatContactService {
                         throw new AppException(ErrorCode.UNAUTHORIZED);
                 }
 
-                // Get unread message count
-                int unreadCount = (int) messageRepository.countByReceiverAndReadFalse(user);
+                // Get unread message count of the conversation with this contact
+                int unreadCount = (int) unreadCounterService.getUnreadCount(user.getId(),
+                                messageMapper.generateConversationId(user.getId(), contact.getContact().getId()));
                 return contactMapper.toResponseWithUnreadCount(contact, unreadCount);
         }
 
@@ -3,6 +3,7 @@ package com.database.study.service;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -35,6 +36,21 @@ public class ChatGroupService {
   @Autowired
   private ChatMessageRepository chatMessageRepository;
 
+  @Autowired
+  private UnreadCounterService unreadCounterService;
+
+  @Autowired
+  private ConversationSummaryService conversationSummaryService;
+
+  @Autowired
+  private EphemeralMessageService ephemeralMessageService;
+
+  @Autowired
+  private GroupIdIndex groupIdIndex;
+
+  @Autowired
+  private MessageSearchService messageSearchService;
+
   // Get all groups for a user
   public List<ChatGroupDTO> getGroupsForUser(UUID userId) {
     try {
@@ -59,6 +75,11 @@ public class ChatGroupService {
         return new ArrayList<>();
       }
 
+      // Read the unread counts of all groups at once
+      Map<String, Long> unreadCounts = unreadCounterService.getUnreadCounts(user.getId(), groups.stream()
+          .map(group -> ReadWatermarkService.groupKey(group.getId()))
+          .collect(Collectors.toList()));
+
       // Create a simple list to return
       List<ChatGroupDTO> result = new ArrayList<>();
 
@@ -88,14 +109,7 @@ public class ChatGroupService {
           dto.setLastMessage(group.getLastMessage());
           dto.setAvatar(group.getAvatar());
 
-          // Try to count unread messages
-          try {
-            int unreadCount = (int) chatMessageRepository.countUnreadGroupMessagesForUser(group.getId(), user.getId());
-            dto.setUnreadCount(unreadCount);
-          } catch (Exception e) {
-            System.err.println("ChatGroupService.getGroupsForUser: Error counting unread messages: " + e.getMessage());
-            dto.setUnreadCount(0);
-          }
+          dto.setUnreadCount(unreadCounts.get(ReadWatermarkService.groupKey(group.getId())).intValue());
 
           // Try to get members
           try {
@@ -180,6 +194,7 @@ public class ChatGroupService {
         .build();
 
     ChatGroup savedGroup = chatGroupRepository.save(group);
+    groupIdIndex.recordGroup(savedGroup.getId());
     return ChatGroupDTO.fromEntity(savedGroup, 0);
   }
 
@@ -196,7 +211,8 @@ public class ChatGroupService {
     User user = userRepository.findById(userId)
         .orElseThrow(() -> new ResourceNotFoundException("User", userId.toString()));
 
-    int unreadCount = (int) chatMessageRepository.countUnreadGroupMessagesForUser(group.getId(), user.getId());
+    int unreadCount = (int) unreadCounterService.getUnreadCount(user.getId(),
+        ReadWatermarkService.groupKey(group.getId()));
     return ChatGroupDTO.fromEntity(group, unreadCount);
   }
 
@@ -221,11 +237,13 @@ public class ChatGroupService {
     }
 
     ChatGroup updatedGroup = chatGroupRepository.save(group);
+    ephemeralMessageService.evictGroup(groupId);
 
     User user = userRepository.findById(userId)
         .orElseThrow(() -> new ResourceNotFoundException("User", userId.toString()));
 
-    int unreadCount = (int) chatMessageRepository.countUnreadGroupMessagesForUser(updatedGroup.getId(), user.getId());
+    int unreadCount = (int) unreadCounterService.getUnreadCount(user.getId(),
+        ReadWatermarkService.groupKey(updatedGroup.getId()));
     return ChatGroupDTO.fromEntity(updatedGroup, unreadCount);
   }
 
@@ -262,18 +280,21 @@ public class ChatGroupService {
       // Add new members
       group.getMembers().addAll(newMembers);
       ChatGroup updatedGroup = chatGroupRepository.save(group);
+      ephemeralMessageService.evictGroup(groupId);
 
       User user = userRepository.findById(userId)
           .orElseThrow(() -> new ResourceNotFoundException("User", userId.toString()));
 
-      int unreadCount = (int) chatMessageRepository.countUnreadGroupMessagesForUser(updatedGroup.getId(), user.getId());
+      int unreadCount = (int) unreadCounterService.getUnreadCount(user.getId(),
+          ReadWatermarkService.groupKey(updatedGroup.getId()));
       return ChatGroupDTO.fromEntity(updatedGroup, unreadCount);
     } else {
       // No new members to add
       User user = userRepository.findById(userId)
           .orElseThrow(() -> new ResourceNotFoundException("User", userId.toString()));
 
-      int unreadCount = (int) chatMessageRepository.countUnreadGroupMessagesForUser(group.getId(), user.getId());
+      int unreadCount = (int) unreadCounterService.getUnreadCount(user.getId(),
+          ReadWatermarkService.groupKey(group.getId()));
       return ChatGroupDTO.fromEntity(group, unreadCount);
     }
   }
@@ -303,11 +324,14 @@ public class ChatGroupService {
     // Remove the member
     group.getMembers().remove(memberToRemove);
     ChatGroup updatedGroup = chatGroupRepository.save(group);
+    ephemeralMessageService.evictGroup(groupId);
+    conversationSummaryService.removeParticipant(ReadWatermarkService.groupKey(groupId), memberIdToRemove);
 
     User user = userRepository.findById(userId)
         .orElseThrow(() -> new ResourceNotFoundException("User", userId.toString()));
 
-    int unreadCount = (int) chatMessageRepository.countUnreadGroupMessagesForUser(updatedGroup.getId(), user.getId());
+    int unreadCount = (int) unreadCounterService.getUnreadCount(user.getId(),
+        ReadWatermarkService.groupKey(updatedGroup.getId()));
     return ChatGroupDTO.fromEntity(updatedGroup, unreadCount);
   }
 
@@ -334,6 +358,8 @@ public class ChatGroupService {
     // Remove the user from the group
     group.getMembers().remove(user);
     chatGroupRepository.save(group);
+    ephemeralMessageService.evictGroup(groupId);
+    conversationSummaryService.removeParticipant(ReadWatermarkService.groupKey(groupId), userId);
   }
 
   // Delete a group
@@ -349,9 +375,13 @@ public class ChatGroupService {
 
     // Delete all messages in the group
     chatMessageRepository.deleteByGroupId(groupId);
+    conversationSummaryService.removeConversation(ReadWatermarkService.groupKey(groupId));
+    messageSearchService.removeConversation(ReadWatermarkService.groupKey(groupId));
 
     // Delete the group
     chatGroupRepository.delete(group);
+    ephemeralMessageService.evictGroup(groupId);
+    groupIdIndex.removeGroup(groupId);
   }
 
   // Helper method to check if a user is a member of a group
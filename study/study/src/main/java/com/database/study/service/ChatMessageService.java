@@ -1,22 +1,33 @@
 package com.database.study.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.database.study.dto.request.ChatMessageRequest;
 import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.dto.response.MessageSliceResponse;
 import com.database.study.entity.ChatGroup;
 import com.database.study.entity.ChatMessage;
+import com.database.study.entity.TimeOrderedUuidGenerator;
 import com.database.study.entity.User;
 import com.database.study.exception.AppException;
 import com.database.study.exception.ErrorCode;
@@ -24,6 +35,8 @@ import com.database.study.mapper.ChatMessageMapper;
 import com.database.study.repository.ChatGroupRepository;
 import com.database.study.repository.ChatMessageRepository;
 import com.database.study.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -38,11 +51,22 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class ChatMessageService {
 
+    static final int MAX_SLICE_SIZE = 100;
+
     private final ChatMessageRepository messageRepository;
     private final UserRepository userRepository;
     private final ChatGroupRepository chatGroupRepository;
     private final ChatMessageMapper messageMapper;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final ReadWatermarkService readWatermarkService;
+    private final UnreadCounterService unreadCounterService;
+    private final ConversationSummaryService conversationSummaryService;
+    private final GroupFanoutService groupFanoutService;
+    private final GroupIdIndex groupIdIndex;
+    private final MessageSearchService messageSearchService;
+    private final MessageFrameService frameService;
+    private final PlatformTransactionManager transactionManager;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -60,32 +84,17 @@ public class ChatMessageService {
             return sendGroupMessage(username, request);
         }
 
-        // Check if the receiverId might actually be a group ID
-        // This is a fallback for clients that might be sending group IDs in the
-        // receiverId field
+        // Clients may send a group id in the receiverId field. Known groups are
+        // answered from the in-memory index; ids it misses are checked against
+        // chat_group only once no user matches them (below).
         if (request.getReceiverId() != null && !request.getReceiverId().isEmpty()) {
             try {
-                UUID receiverId = UUID.fromString(request.getReceiverId());
-                // Check if this ID belongs to a group
-                ChatGroup group = chatGroupRepository.findById(receiverId).orElse(null);
-                if (group != null) {
-                    System.out.println("Detected receiverId as a group ID: " + receiverId);
-                    // Create a new request with the correct fields
-                    ChatMessageRequest groupRequest = new ChatMessageRequest();
-                    groupRequest.setContent(request.getContent());
-                    groupRequest.setGroupId(request.getReceiverId()); // Move receiverId to groupId
-                    groupRequest.setReceiverId(null); // Clear receiverId
-                    groupRequest.setPersistent(request.getPersistent());
-
-                    System.out.println("Redirecting to sendGroupMessage with corrected request");
-                    return sendGroupMessage(username, groupRequest);
+                if (groupIdIndex.isGroup(UUID.fromString(request.getReceiverId()))) {
+                    return sendGroupMessage(username, toGroupRequest(request));
                 }
             } catch (IllegalArgumentException e) {
                 // Not a valid UUID, continue as direct message
                 System.out.println("ReceiverID is not a valid UUID, continuing as direct message");
-            } catch (Exception e) {
-                // Any other exception, log and continue as direct message
-                System.out.println("Error checking if receiverId is a group: " + e.getMessage());
             }
         }
 
@@ -103,9 +112,16 @@ public class ChatMessageService {
                 throw new AppException(ErrorCode.INVALID_REQUEST, "Receiver ID is required for direct messages");
             }
 
-            // Find the receiver by UUID
-            User receiver = userRepository.findById(UUID.fromString(request.getReceiverId()))
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+            // Find the receiver by UUID, or the group created on another node
+            UUID receiverId = UUID.fromString(request.getReceiverId());
+            User receiver = userRepository.findById(receiverId).orElse(null);
+            if (receiver == null) {
+                if (!chatGroupRepository.existsById(receiverId)) {
+                    throw new AppException(ErrorCode.USER_NOT_FOUND);
+                }
+                groupIdIndex.recordGroup(receiverId);
+                return sendGroupMessage(username, toGroupRequest(request));
+            }
             System.out.println("Receiver found: " + receiver.getId());
 
             // Create the message entity
@@ -131,11 +147,16 @@ public class ChatMessageService {
                 // log.info("Saving message to database (persistent=true)");
                 message = messageRepository.save(message);
                 // log.info("Message saved with ID: {}", message.getId());
+                conversationSummaryService.recordMessage(message, List.of(sender.getId(), receiver.getId()));
+                messageSearchService.index(message);
+                if (!receiver.getId().equals(sender.getId())) {
+                    unreadCounterService.increment(message.getConversationId(), List.of(receiver.getId()));
+                }
             } else {
                 // log.info("Skipping database save for non-persistent message
                 // (persistent=false)");
                 // Generate a temporary ID for non-persistent messages
-                message.setId(UUID.randomUUID());
+                message.setId(TimeOrderedUuidGenerator.next());
 
                 // Ensure we're explicitly marking this as non-persistent for downstream
                 // processing
@@ -152,10 +173,7 @@ public class ChatMessageService {
 
             // Send the message to the receiver via WebSocket
             // log.info("Sending message to receiver via WebSocket: {}", receiver.getId());
-            messagingTemplate.convertAndSendToUser(
-                    receiver.getId().toString(),
-                    "/queue/messages",
-                    response);
+            frameService.sendToUser(receiver.getId().toString(), "/queue/messages", response);
             // log.info("Message sent to receiver via WebSocket");
 
             return response;
@@ -193,14 +211,126 @@ public class ChatMessageService {
 
         Page<ChatMessage> messages = messageRepository.findMessagesBetweenUsers(user, otherUser, pageable);
 
-        return messages.map(messageMapper::toResponse);
+        Set<UUID> read = readWatermarkService.readByReceiver(messages.getContent());
+        return messages.map(message -> toResponse(message, read));
+    }
+
+    /**
+     * Messages between the user and another user older than a cursor
+     *
+     * @param before cursor "timestamp,id" from a previous slice, or null for the
+     *               newest messages
+     * @param limit  maximum number of messages, capped at MAX_SLICE_SIZE
+     */
+    @Transactional(readOnly = true)
+    public MessageSliceResponse getMessagesBetweenUsersBefore(String username, String otherUserId, String before,
+            int limit) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        UUID otherId;
+        try {
+            otherId = UUID.fromString(otherUserId);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.INVALID_REQUEST);
+        }
+
+        String conversationId = messageMapper.generateConversationId(user.getId(), otherId);
+        return getMessagesByConversationIdBefore(conversationId, before, limit);
+    }
+
+    /**
+     * Messages of a direct conversation of the user older than a cursor
+     *
+     * @param conversationId conversation id "uuid_uuid" of which the user is
+     *                       one side
+     */
+    @Transactional(readOnly = true)
+    public MessageSliceResponse getConversationMessagesBefore(String username, String conversationId, String before,
+            int limit) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        if (!List.of(conversationId.split("_")).contains(user.getId().toString())) {
+            throw new AppException(ErrorCode.UNAUTHORIZED_ACCESS);
+        }
+        return getMessagesByConversationIdBefore(conversationId, before, limit);
+    }
+
+    /**
+     * Messages of a conversation older than a cursor. Pages are found through
+     * the (conversation_id, timestamp, id) index, so the cost of a page does
+     * not grow with how far back it is.
+     */
+    @Transactional(readOnly = true)
+    public MessageSliceResponse getMessagesByConversationIdBefore(String conversationId, String before, int limit) {
+        Pageable pageable = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_SLICE_SIZE)));
+        Slice<ChatMessage> messages;
+        if (before == null || before.isEmpty()) {
+            messages = messageRepository.findLatestByConversationId(conversationId, pageable);
+        } else {
+            MessageCursor cursor = MessageCursor.parse(before);
+            messages = messageRepository.findByConversationIdBefore(conversationId, cursor.timestamp(), cursor.id(),
+                    pageable);
+        }
+        return toSliceResponse(messages);
+    }
+
+    private MessageSliceResponse toSliceResponse(Slice<ChatMessage> messages) {
+        List<ChatMessage> content = messages.getContent();
+        String nextCursor = null;
+        if (messages.hasNext() && !content.isEmpty()) {
+            ChatMessage last = content.get(content.size() - 1);
+            nextCursor = new MessageCursor(last.getTimestamp(), last.getId()).toString();
+        }
+        Set<UUID> read = readWatermarkService.readByReceiver(content);
+        return MessageSliceResponse.builder()
+                .content(content.stream().map(message -> toResponse(message, read)).collect(Collectors.toList()))
+                .hasMore(messages.hasNext())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Position in message history: the (timestamp, id) of the last message
+     * already returned, written as "timestamp,id"
+     */
+    record MessageCursor(LocalDateTime timestamp, UUID id) {
+
+        static MessageCursor parse(String value) {
+            String[] parts = value.split(",", 2);
+            try {
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Cursor must be timestamp,id");
+                }
+                return new MessageCursor(LocalDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new AppException(ErrorCode.INVALID_REQUEST, "Invalid cursor: " + value);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + "," + id;
+        }
     }
 
     @Transactional(readOnly = true)
     public Page<ChatMessageResponse> getMessagesByConversationId(String conversationId, Pageable pageable) {
         Page<ChatMessage> messages = messageRepository.findByConversationIdOrderByTimestampDesc(conversationId,
                 pageable);
-        return messages.map(messageMapper::toResponse);
+        Set<UUID> read = readWatermarkService.readByReceiver(messages.getContent());
+        return messages.map(message -> toResponse(message, read));
+    }
+
+    /**
+     * Response of a stored message, read if its receiver's watermark covers it
+     * or it was flagged read before watermarks existed
+     */
+    private ChatMessageResponse toResponse(ChatMessage message, Set<UUID> read) {
+        ChatMessageResponse response = messageMapper.toResponse(message);
+        if (read.contains(message.getId())) {
+            response.setRead(true);
+        }
+        return response;
     }
 
     @Transactional
@@ -233,38 +363,18 @@ public class ChatMessageService {
             }
         }
 
-        // First try with a direct SQL update for better performance
-        try {
-            // log.info("Executing direct SQL update to mark messages as read for
-            // conversation ID: {}", conversationId);
-
-            // Use a native SQL query to update all messages at once
-            int updatedCount = messageRepository.markMessagesAsReadInConversation(conversationId, user.getId());
-
-            // log.info("Direct SQL update affected {} rows for conversation ID: {}",
-            // updatedCount, conversationId);
-
-            // If no rows were affected, try the entity-based approach
-            if (updatedCount == 0) {
-                // log.info("No rows affected by direct SQL update, trying entity-based approach
-                // for conversation ID: {}", conversationId);
-                updateMessagesEntityBased(user, conversationId);
-            } else {
-                // Force a flush to ensure changes are committed
-                messageRepository.flush();
-                // log.info("Flushed changes to database for conversation ID: {}",
-                // conversationId);
-            }
-        } catch (Exception e) {
-            // log.error("Error with direct SQL update for conversation ID: {}",
-            // conversationId, e);
-            // log.info("Falling back to entity-based approach for conversation ID: {}",
-            // conversationId);
-            updateMessagesEntityBased(user, conversationId);
-        }
+        // Read receipts are derived from the watermark, so no message row is updated
+        readWatermarkService.markConversationRead(user.getId(), conversationId);
+        unreadCounterService.reset(user.getId(), conversationId);
+    }
 
-        // Final verification
-        verifyMessagesRead(user, conversationId);
+    // Helper method to move a group id sent as receiverId to groupId
+    private static ChatMessageRequest toGroupRequest(ChatMessageRequest request) {
+        ChatMessageRequest groupRequest = new ChatMessageRequest();
+        groupRequest.setContent(request.getContent());
+        groupRequest.setGroupId(request.getReceiverId());
+        groupRequest.setPersistent(request.getPersistent());
+        return groupRequest;
     }
 
     // Helper method to generate a conversation ID
@@ -275,136 +385,15 @@ public class ChatMessageService {
         return smallerId.toString() + "_" + largerId.toString();
     }
 
-    private void updateMessagesEntityBased(User user, String conversationId) {
-        // log.info("Using entity-based approach to mark messages as read for
-        // conversation ID: {}", conversationId);
-
-        Page<ChatMessage> messages = messageRepository.findByConversationIdOrderByTimestampDesc(conversationId,
-                Pageable.unpaged());
-        // log.info("Found {} messages in conversation {}", messages.getTotalElements(),
-        // conversationId);
-
-        // Log all messages in the conversation for debugging
-        // messages.forEach(message -> {
-        // log.info("Message in conversation: ID={}, Sender={}, Receiver={}, Read={},
-        // Content={}",
-        // message.getId(),
-        // message.getSender().getId(),
-        // message.getReceiver().getId(),
-        // message.isRead(),
-        // message.getContent().substring(0, Math.min(20,
-        // message.getContent().length())) + "...");
-        // });
-
-        // int count = 0;
-        for (ChatMessage message : messages) {
-            if (message.getReceiver().equals(user) && !message.isRead()) {
-                try {
-                    // log.info("Marking message {} as read (entity method) - Receiver ID: {}, User
-                    // ID: {}",
-                    // message.getId(), message.getReceiver().getId(), user.getId());
-                    message.setRead(true);
-                    messageRepository.save(message);
-                    // count++;
-
-                    // Force a flush after each save to ensure it's committed
-                    messageRepository.flush();
-
-                    // log.info("Marked message {} as read via entity update", message.getId());
-                } catch (Exception ex) {
-                    // log.error("Error marking message {} as read with entity approach",
-                    // message.getId(), ex);
-
-                    // Try with direct update as last resort
-                    try {
-                        // log.info("Trying direct update for message {}", message.getId());
-                        messageRepository.markMessageAsRead(message.getId());
-                        messageRepository.flush();
-                        // log.info("Direct update successful for message {}", message.getId());
-                    } catch (Exception directEx) {
-                        // log.error("Direct update also failed for message {}", message.getId(),
-                        // directEx);
-                    }
-                }
-            } else {
-                if (message.getReceiver().equals(user)) {
-                    // log.info("Message {} already marked as read, skipping", message.getId());
-                } else {
-                    // log.info("Message {} is not for this user (receiver: {}), skipping",
-                    // message.getId(), message.getReceiver().getId());
-                }
-            }
-        }
-
-        // log.info("Entity-based approach marked {} messages as read in conversation
-        // {}", count, conversationId);
-    }
-
-    private void verifyMessagesRead(User user, String conversationId) {
-        // log.info("Verifying messages were marked as read for conversation ID: {}",
-        // conversationId);
-
-        // Clear persistence context to ensure we get fresh data
-        entityManager.clear();
-
-        Page<ChatMessage> verifyMessages = messageRepository.findByConversationIdOrderByTimestampDesc(conversationId,
-                Pageable.unpaged());
-        // log.info("Found {} messages in conversation {} for verification",
-        // verifyMessages.getTotalElements(), conversationId);
-
-        int stillUnreadCount = 0;
-        // int totalMessagesForUser = 0;
-
-        for (ChatMessage message : verifyMessages) {
-            if (message.getReceiver().equals(user)) {
-                // totalMessagesForUser++;
-
-                if (!message.isRead()) {
-                    stillUnreadCount++;
-                    // log.warn("Message {} is still unread after all update attempts - Sender: {},
-                    // Content: {}",
-                    // message.getId(),
-                    // message.getSender().getId(),
-                    // message.getContent().substring(0, Math.min(20,
-                    // message.getContent().length())) + "...");
-
-                    // One final attempt with direct SQL
-                    try {
-                        // log.info("Final attempt to mark message {} as read", message.getId());
-                        messageRepository.markMessageAsRead(message.getId());
-                        messageRepository.flush();
-                        // log.info("Final direct update successful for message {}", message.getId());
-                    } catch (Exception ex) {
-                        // log.error("Final attempt failed for message {}", message.getId(), ex);
-                    }
-                } else {
-                    // log.info("Message {} is correctly marked as read", message.getId());
-                }
-            }
-        }
-
-        // log.info("Verification summary for conversation {}: Total messages for user:
-        // {}, Still unread: {}",
-        // conversationId, totalMessagesForUser, stillUnreadCount);
-
-        if (stillUnreadCount > 0) {
-            // log.warn("{} messages are still unread after all update attempts in
-            // conversation {}",
-            // stillUnreadCount, conversationId);
-        } else {
-            // log.info("All messages successfully marked as read in conversation {}",
-            // conversationId);
-        }
-    }
-
     @Transactional(readOnly = true)
     public List<ChatMessageResponse> getLatestMessagesForUser(String username) {
         // Find the user by username
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
-        List<ChatMessage> latestMessages = messageRepository.findLatestMessagesForUser(user);
-        return messageMapper.toResponseList(latestMessages);
+        List<ChatMessage> latestMessages = conversationSummaryService.getLatestMessages(user.getId());
+        Set<UUID> read = readWatermarkService.readByReceiver(latestMessages);
+        return latestMessages.stream().map(message -> toResponse(message, read)).collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
@@ -428,12 +417,7 @@ public class ChatMessageService {
 
         String conversationId = messageMapper.generateConversationId(user.getId(), sender.getId());
 
-        Page<ChatMessage> messages = messageRepository.findByConversationIdOrderByTimestampDesc(conversationId,
-                Pageable.unpaged());
-
-        return (int) messages.stream()
-                .filter(message -> message.getReceiver().equals(user) && !message.isRead())
-                .count();
+        return (int) unreadCounterService.getUnreadCount(user.getId(), conversationId);
     }
 
     /**
@@ -480,6 +464,8 @@ public class ChatMessageService {
 
         // Delete the message
         messageRepository.delete(message);
+        conversationSummaryService.messageDeleted(message);
+        messageSearchService.remove(messageId);
 
         // Notify the other user about the deletion
         UUID otherUserId = user.getId().equals(senderId) ? receiverId : senderId;
@@ -516,6 +502,8 @@ public class ChatMessageService {
         // Update the content
         message.setContent(newContent);
         message = messageRepository.save(message);
+        conversationSummaryService.messageEdited(message);
+        messageSearchService.reindex(message);
 
         ChatMessageResponse response = messageMapper.toResponse(message);
 
@@ -563,6 +551,10 @@ public class ChatMessageService {
 
         // Delete all messages in the conversation
         messages.forEach(messageRepository::delete);
+        conversationSummaryService.removeConversation(conversationId);
+        messageSearchService.removeConversation(conversationId);
+        unreadCounterService.reset(user.getId(), conversationId);
+        unreadCounterService.reset(otherUser.getId(), conversationId);
 
         log.info("Conversation deleted between {} and {}", user.getUsername(), otherUser.getUsername());
     }
@@ -582,59 +574,74 @@ public class ChatMessageService {
     }
 
     /**
-     * Get messages for a group
-     * 
-     * @param groupId The ID of the group
-     * @param userId  The ID of the user requesting the messages
-     * @return List of messages in the group
+     * Check that a group exists and the user is one of its members
      */
     @Transactional(readOnly = true)
-    public List<ChatMessageResponse> getGroupMessages(UUID groupId, UUID userId) {
-        // Find the group
-        ChatGroup group = chatGroupRepository.findById(groupId)
-                .orElseThrow(() -> new AppException(ErrorCode.RESOURCE_NOT_FOUND));
-
-        // Find the user
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
-
-        // Check if user is a member of the group
-        if (!group.getMembers().contains(user)) {
+    public void checkGroupAccess(UUID groupId, UUID userId) {
+        if (!chatGroupRepository.existsById(groupId)) {
+            throw new AppException(ErrorCode.RESOURCE_NOT_FOUND, "Group with ID " + groupId + " not found");
+        }
+        if (!chatGroupRepository.isUserMemberOfGroup(groupId, userId)) {
             throw new AppException(ErrorCode.UNAUTHORIZED_ACCESS);
         }
+    }
 
-        // Get messages for the group using both methods
-        List<ChatMessage> messagesWithTypeFilter = messageRepository.findByGroupIdOrderByTimestampDesc(groupId);
-        List<ChatMessage> allGroupMessages = messageRepository.findAllByGroupIdOrderByTimestampDesc(groupId);
-
-        // Debug logging
-        System.out.println("Found " + messagesWithTypeFilter.size() + " messages for group " + groupId
-                + " with GROUP type filter");
-        for (ChatMessage message : messagesWithTypeFilter) {
-            System.out.println("Message ID: " + message.getId());
-            System.out.println("Content: " + message.getContent());
-            System.out.println("Message Type: " + message.getMessageType());
-            System.out.println("Group ID: " + (message.getGroup() != null ? message.getGroup().getId() : "null"));
-            System.out.println("---");
-        }
+    /**
+     * Messages of a group older than a cursor, newest first. Callers check
+     * membership with checkGroupAccess first.
+     *
+     * @param before cursor "timestamp,id" from a previous slice, or null for the
+     *               newest messages
+     * @param limit  maximum number of messages, capped at MAX_SLICE_SIZE
+     */
+    @Transactional(readOnly = true)
+    public MessageSliceResponse getGroupMessagesBefore(UUID groupId, String before, int limit) {
+        return toSliceResponse(findGroupSlice(groupId,
+                before == null || before.isEmpty() ? null : MessageCursor.parse(before),
+                Math.max(1, Math.min(limit, MAX_SLICE_SIZE))));
+    }
 
-        System.out.println(
-                "Found " + allGroupMessages.size() + " messages for group " + groupId + " without message type filter");
-        for (ChatMessage message : allGroupMessages) {
-            System.out.println("Message ID: " + message.getId());
-            System.out.println("Content: " + message.getContent());
-            System.out.println("Message Type: " + message.getMessageType());
-            System.out.println("Group ID: " + (message.getGroup() != null ? message.getGroup().getId() : "null"));
-            System.out.println("---");
+    /**
+     * Write a group's history older than a cursor as a JSON array, newest
+     * first. Each keyset slice is read in its own short read-only transaction
+     * and written after it ends, so a slow client holds no connection, and the
+     * persistence context is cleared after each slice, so memory does not grow
+     * with the size of the group. Callers check membership with
+     * checkGroupAccess first.
+     */
+    public void writeGroupMessages(UUID groupId, String before, OutputStream out) throws IOException {
+        if (before != null && !before.isEmpty()) {
+            MessageCursor.parse(before);
         }
+        TransactionTemplate readSlice = new TransactionTemplate(transactionManager);
+        readSlice.setReadOnly(true);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            MessageSliceResponse slice;
+            String cursor = before;
+            do {
+                String from = cursor;
+                slice = readSlice.execute(status -> {
+                    MessageSliceResponse messages = getGroupMessagesBefore(groupId, from, MAX_SLICE_SIZE);
+                    entityManager.clear();
+                    return messages;
+                });
+                for (ChatMessageResponse message : slice.getContent()) {
+                    generator.writeObject(message);
+                }
+                generator.flush();
+                cursor = slice.getNextCursor();
+            } while (slice.isHasMore());
+            generator.writeEndArray();
+        }
+    }
 
-        // Use all group messages instead of just those with GROUP type
-        List<ChatMessage> messages = allGroupMessages;
-
-        // Convert to response DTOs
-        return messages.stream()
-                .map(messageMapper::toResponse)
-                .collect(Collectors.toList());
+    private Slice<ChatMessage> findGroupSlice(UUID groupId, MessageCursor cursor, int size) {
+        Pageable pageable = PageRequest.of(0, size);
+        if (cursor == null) {
+            return messageRepository.findLatestByGroupId(groupId, pageable);
+        }
+        return messageRepository.findByGroupIdBefore(groupId, cursor.timestamp(), cursor.id(), pageable);
     }
 
     /**
@@ -698,44 +705,19 @@ public class ChatMessageService {
             message.setPersistent(isPersistent);
 
             // Only save to database if the message is persistent
+            List<UUID> memberIds = group.getMembers().stream().map(User::getId).toList();
+            List<UUID> recipientIds = memberIds.stream()
+                    .filter(memberId -> !memberId.equals(sender.getId()))
+                    .toList();
             if (isPersistent) {
-                // Log message details before saving
-                System.out.println("Saving group message with details:");
-                System.out.println("Content: " + message.getContent());
-                System.out.println("Group ID: " + (message.getGroup() != null ? message.getGroup().getId() : "null"));
-                System.out.println("Message Type: " + message.getMessageType());
-                System.out.println("Conversation ID: " + message.getConversationId());
-                System.out.println(
-                        "Receiver: " + (message.getReceiver() != null ? message.getReceiver().getId() : "null"));
-                System.out.println("Persistent: " + message.isPersistent());
-
                 message = messageRepository.save(message);
-
-                // Log saved message details
-                System.out.println("Saved message ID: " + message.getId());
-                System.out.println("Saved message type: " + message.getMessageType());
-
-                // Verify what's in the database with a direct query
-                try {
-                    ChatMessage savedMessage = messageRepository.findById(message.getId()).orElse(null);
-                    if (savedMessage != null) {
-                        System.out.println("Database verification:");
-                        System.out.println("  Message ID: " + savedMessage.getId());
-                        System.out.println("  Message Type: " + savedMessage.getMessageType());
-                        System.out.println("  Group ID: "
-                                + (savedMessage.getGroup() != null ? savedMessage.getGroup().getId() : "null"));
-                        System.out.println("  Receiver ID: "
-                                + (savedMessage.getReceiver() != null ? savedMessage.getReceiver().getId() : "null"));
-                        System.out.println("  Persistent: " + savedMessage.isPersistent());
-                    } else {
-                        System.out.println("Could not find saved message in database!");
-                    }
-                } catch (Exception e) {
-                    System.out.println("Error verifying database: " + e.getMessage());
-                }
+                conversationSummaryService.recordMessage(message, memberIds);
+                messageSearchService.index(message);
+                unreadCounterService.increment(message.getConversationId(), recipientIds);
+                log.debug("Saved group message {} in group {}", message.getId(), group.getId());
             } else {
                 // Generate a temporary ID for non-persistent messages
-                message.setId(UUID.randomUUID());
+                message.setId(TimeOrderedUuidGenerator.next());
                 message.setPersistent(false);
                 System.out.println("Message is non-persistent (persistent=false), skipping database save");
                 System.out.println("Generated temporary ID: " + message.getId());
@@ -756,21 +738,8 @@ public class ChatMessageService {
                 response.setGroupName(group.getName());
             }
 
-            // Send the message to all group members via WebSocket
-            for (User member : group.getMembers()) {
-                if (!member.equals(sender)) {
-                    try {
-                        messagingTemplate.convertAndSendToUser(
-                                member.getId().toString(),
-                                "/queue/messages",
-                                response);
-                    } catch (MessagingException e) {
-                        // Log error but continue with other members
-                        System.err.println(
-                                "Error sending message to group member: " + member.getId() + " - " + e.getMessage());
-                    }
-                }
-            }
+            // Serialize once and deliver to the other members after commit
+            groupFanoutService.deliverAfterCommit(recipientIds, "/queue/messages", response);
 
             return response;
         } catch (AppException e) {
@@ -794,24 +763,13 @@ public class ChatMessageService {
             User user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
-            // Find the group
-            ChatGroup group = chatGroupRepository.findById(groupId)
-                    .orElseThrow(() -> new AppException(ErrorCode.RESOURCE_NOT_FOUND));
-
-            // Check if user is a member of the group
-            if (!group.getMembers().contains(user)) {
-                throw new AppException(ErrorCode.UNAUTHORIZED_ACCESS);
-            }
-
-            // Use the new repository method to mark all group messages as read for this
-            // user
-            int updatedCount = messageRepository.markGroupMessagesAsReadForUser(groupId, user.getId());
-
-            log.info("Marked {} group messages as read for user {} in group {}",
-                    updatedCount, user.getUsername(), groupId);
+            checkGroupAccess(groupId, user.getId());
 
-            // Force a flush to ensure changes are committed
-            messageRepository.flush();
+            // Only this member's watermark moves; the shared read flag would mark
+            // the messages read for every member
+            readWatermarkService.markGroupRead(user.getId(), groupId);
+            unreadCounterService.reset(user.getId(), ReadWatermarkService.groupKey(groupId));
+            log.info("Marked group {} as read for user {}", groupId, user.getUsername());
         } catch (AppException e) {
             throw e;
         } catch (Exception e) {
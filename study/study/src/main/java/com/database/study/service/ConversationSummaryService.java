@@ -0,0 +1,255 @@
+package com.database.study.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.database.study.entity.BackfillProgress;
+import com.database.study.entity.ChatMessage;
+import com.database.study.entity.User;
+import com.database.study.repository.BackfillProgressRepository;
+import com.database.study.repository.ChatMessageRepository;
+import com.database.study.repository.ConversationSummaryRepository;
+import com.database.study.repository.InsertIfAbsentRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps conversation_summaries pointing at the latest message of every
+ * conversation and group, per participant, so the inbox of a user is one
+ * indexed range read instead of a grouped scan over all their messages.
+ *
+ * Sending a message moves the summaries of all participants with one update
+ * in the sender's transaction. Rows missing for a participant are created
+ * first in the same transaction with one insert-if-absent, so concurrent
+ * first messages do not fail on the primary key. Unread counts are kept by
+ * UnreadCounterService under the same id.
+ *
+ * Summaries of conversations older than the table are built by a backfill on
+ * start, which walks chat_messages in id order up to the newest message at
+ * its first start and rebuilds the conversations of each batch. Like the
+ * search index backfill, it keeps its high-water mark in backfill_progress, so
+ * a restart resumes after the last batch and nodes starting together take
+ * turns on batches.
+ */
+@Slf4j
+@Service
+public class ConversationSummaryService {
+
+    private static final int SNIPPET_LENGTH = 100;
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final String BACKFILL = "conversation_summaries";
+    private static final String BACKFILL_TABLE = "backfill_progress";
+    private static final List<String> BACKFILL_COLUMNS = List.of("id", "last_message_id", "until_message_id",
+            "updated_at");
+    private static final List<Class<?>> BACKFILL_COLUMN_TYPES = List.of(String.class, UUID.class, UUID.class,
+            LocalDateTime.class);
+
+    private static final String TABLE = "conversation_summaries";
+    private static final List<String> COLUMNS = List.of("id", "user_id", "conversation_key", "partner_id",
+            "group_id", "last_message_id", "last_sender_id", "snippet", "last_message_at");
+    private static final List<Class<?>> COLUMN_TYPES = List.of(String.class, UUID.class, String.class, UUID.class,
+            UUID.class, UUID.class, UUID.class, String.class, LocalDateTime.class);
+
+    private final ConversationSummaryRepository summaryRepository;
+    private final ChatMessageRepository messageRepository;
+    private final InsertIfAbsentRepository insertIfAbsentRepository;
+    private final BackfillProgressRepository progressRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ConversationSummaryService(ConversationSummaryRepository summaryRepository,
+            ChatMessageRepository messageRepository, InsertIfAbsentRepository insertIfAbsentRepository,
+            BackfillProgressRepository progressRepository, PlatformTransactionManager transactionManager) {
+        this.summaryRepository = summaryRepository;
+        this.messageRepository = messageRepository;
+        this.insertIfAbsentRepository = insertIfAbsentRepository;
+        this.progressRepository = progressRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Latest message of every conversation and group of a user, newest first
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> getLatestMessages(UUID userId) {
+        return summaryRepository.findLatestMessagesByUserId(userId);
+    }
+
+    /**
+     * Make a saved message the latest one of its conversation for all
+     * participants, in the caller's transaction
+     */
+    @Transactional
+    public void recordMessage(ChatMessage message, Collection<UUID> participantIds) {
+        String conversationKey = message.getConversationId();
+        Set<UUID> missing = new HashSet<>(participantIds);
+        missing.removeAll(summaryRepository.findUserIdsByConversationKey(conversationKey));
+        insert(missing, message);
+        summaryRepository.advance(conversationKey, message.getId(), message.getSender().getId(),
+                snippet(message.getContent()), message.getTimestamp());
+    }
+
+    /**
+     * Follow an edit of the message summaries point at
+     */
+    @Transactional
+    public void messageEdited(ChatMessage message) {
+        summaryRepository.updateSnippet(message.getId(), snippet(message.getContent()));
+    }
+
+    /**
+     * Move summaries back to the previous message if the deleted one was the
+     * latest of its conversation
+     */
+    @Transactional
+    public void messageDeleted(ChatMessage message) {
+        if (summaryRepository.existsByLastMessageId(message.getId())) {
+            rebuild(message.getConversationId());
+        }
+    }
+
+    /**
+     * Drop the summaries of a conversation or group for all participants
+     */
+    @Transactional
+    public void removeConversation(String conversationKey) {
+        summaryRepository.deleteByConversationKey(conversationKey);
+    }
+
+    /**
+     * Drop the summary of a group for a member that left it
+     */
+    @Transactional
+    public void removeParticipant(String conversationKey, UUID userId) {
+        summaryRepository.deleteByConversationKeyAndUserId(conversationKey, userId);
+    }
+
+    /**
+     * Point the summaries of a conversation at its newest message, creating
+     * them for its participants if there are none yet
+     */
+    @Transactional
+    public void rebuild(String conversationKey) {
+        List<ChatMessage> newest = messageRepository
+                .findLatestByConversationId(conversationKey, PageRequest.of(0, 1)).getContent();
+        if (newest.isEmpty()) {
+            summaryRepository.deleteByConversationKey(conversationKey);
+            return;
+        }
+        ChatMessage message = newest.get(0);
+        int updated = summaryRepository.replace(conversationKey, message.getId(), message.getSender().getId(),
+                snippet(message.getContent()), message.getTimestamp());
+        if (updated == 0) {
+            insert(participantsOf(message), message);
+        }
+    }
+
+    /**
+     * Build the summaries of the conversations stored before
+     * conversation_summaries was introduced, resuming after the high-water
+     * mark of an earlier start. Conversations with messages after the newest
+     * one at the first start are kept up to date as those are sent.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        transactionTemplate.executeWithoutResult(status -> insertIfAbsentRepository.insertIfAbsent(BACKFILL_TABLE,
+                BACKFILL_COLUMNS, BACKFILL_COLUMN_TYPES, List.<Object[]>of(new Object[] {
+                        BACKFILL, new UUID(0, 0), messageRepository.findMaxId(), LocalDateTime.now() })));
+        int scanned = 0;
+        int batchSize;
+        do {
+            batchSize = transactionTemplate.execute(status -> backfillBatch());
+            scanned += Math.max(batchSize, 0);
+        } while (batchSize == BACKFILL_BATCH_SIZE || batchSize < 0);
+        if (scanned > 0) {
+            log.info("Built conversation summaries from {} chat messages", scanned);
+        }
+    }
+
+    /**
+     * Rebuild the conversations of the batch of messages after the high-water
+     * mark and move the mark past it
+     *
+     * @return number of messages in the batch, or -1 when another node took it
+     */
+    private int backfillBatch() {
+        BackfillProgress progress = progressRepository.findById(BACKFILL).orElseThrow();
+        if (progress.getUntilMessageId() == null) {
+            return 0;
+        }
+        List<ChatMessageRepository.SearchableMessage> messages = messageRepository.findSearchableBetween(
+                progress.getLastMessageId(), progress.getUntilMessageId(), PageRequest.of(0, BACKFILL_BATCH_SIZE));
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        UUID last = messages.get(messages.size() - 1).getId();
+        if (progressRepository.advance(BACKFILL, progress.getLastMessageId(), last, LocalDateTime.now()) == 0) {
+            return -1;
+        }
+        messages.stream()
+                .map(ChatMessageRepository.SearchableMessage::getConversationId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new))
+                .forEach(this::rebuild);
+        return messages.size();
+    }
+
+    private void insert(Collection<UUID> userIds, ChatMessage message) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        userIds.forEach(userId -> rows.add(rowOf(userId, message)));
+        insertIfAbsentRepository.insertIfAbsent(TABLE, COLUMNS, COLUMN_TYPES, rows);
+    }
+
+    private Set<UUID> participantsOf(ChatMessage message) {
+        if (message.getGroup() != null) {
+            return message.getGroup().getMembers().stream().map(User::getId).collect(Collectors.toSet());
+        }
+        return Set.copyOf(List.of(message.getSender().getId(), message.getReceiver().getId()));
+    }
+
+    // Summary row of a participant in COLUMNS order
+    private static Object[] rowOf(UUID userId, ChatMessage message) {
+        UUID senderId = message.getSender().getId();
+        UUID partnerId = null;
+        if (message.getGroup() == null) {
+            partnerId = senderId.equals(userId) ? message.getReceiver().getId() : senderId;
+        }
+        return new Object[] {
+                userId + ":" + message.getConversationId(),
+                userId,
+                message.getConversationId(),
+                partnerId,
+                message.getGroup() != null ? message.getGroup().getId() : null,
+                message.getId(),
+                senderId,
+                snippet(message.getContent()),
+                message.getTimestamp()
+        };
+    }
+
+    private static String snippet(String content) {
+        if (content == null) {
+            return null;
+        }
+        return content.length() <= SNIPPET_LENGTH ? content : content.substring(0, SNIPPET_LENGTH);
+    }
+}
@@ -5,15 +5,18 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
+import java.time.Duration;
 import java.util.Base64;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.Mac;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
@@ -24,8 +27,15 @@ import javax.crypto.spec.SecretKeySpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
 
 /**
@@ -33,9 +43,22 @@ import jakarta.annotation.PostConstruct;
  * ENCRYPTION_KEY
  * Uses standard Java libraries (no external dependencies)
  * This service handles both token encryption and TOTP secret encryption
+ *
+ * Token decryption sits on the path of every authenticated request, so the
+ * PBKDF2-derived key (keyed by the salt embedded in the envelope) and the
+ * decrypted JWT (keyed by a SHA-256 digest of the envelope) are kept in
+ * bounded, expiring caches. Cache statistics are exported through Micrometer.
+ *
+ * Two token envelope formats are understood:
+ * - legacy: [salt_length(1)][salt(16)][iv(12)][encrypted data], key derived
+ * with PBKDF2 per token
+ * - version 2: [version(1)][salt(16)][iv(12)][encrypted data], key derived with
+ * HKDF-SHA256 from a master key that is derived with PBKDF2 once at startup.
+ * The version byte and salt are bound to the ciphertext as GCM associated data.
+ * decryptToken dispatches on the first byte, so legacy tokens keep working.
  */
 @Service
-public class EncryptionService {
+public class EncryptionService implements MeterBinder {
 
     private static final Logger log = LoggerFactory.getLogger(EncryptionService.class);
 
@@ -56,10 +79,67 @@ public class EncryptionService {
     private static final int PBKDF2_KEY_LENGTH = 256; // 256 bits for AES-256
     private static final int SALT_LENGTH = 16; // 128 bits for AES-256
 
+    // Token envelope versions. Legacy envelopes start with the salt length (16),
+    // which never collides with a version marker.
+    private static final byte ENVELOPE_VERSION_LEGACY = 1;
+    private static final byte ENVELOPE_VERSION_HKDF = 2;
+    private static final String HKDF_ALGORITHM = "HmacSHA256";
+    private static final byte[] HKDF_INFO = "token-envelope-v2".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MASTER_KEY_SALT = "token-envelope-master-key".getBytes(StandardCharsets.UTF_8);
+
+    // Envelope written by encryptToken (1 = legacy PBKDF2, 2 = HKDF). Keep 1 until
+    // every node reads version 2, so a rolling upgrade never writes a token an old
+    // node cannot decrypt; switch to 2 in a later rollout.
+    @Value("${security.token-envelope.version:1}")
+    private int tokenEnvelopeVersion;
+
+    // Master key for version 2 envelopes, derived once from ENCRYPTION_KEY
+    private byte[] tokenMasterKey;
+
+    // Token decryption caches
+    @Value("${security.token-cache.enabled:true}")
+    private boolean tokenCacheEnabled;
+
+    @Value("${security.token-cache.max-keys:10000}")
+    private long maxCachedKeys;
+
+    @Value("${security.token-cache.max-tokens:10000}")
+    private long maxCachedTokens;
+
+    @Value("${security.token-cache.ttl-minutes:60}")
+    private long tokenCacheTtlMinutes;
+
+    // salt (Base64) -> AES key derived with PBKDF2_ITERATIONS_TOKEN rounds
+    private Cache<String, SecretKeySpec> tokenKeyCache;
+
+    // SHA-256(envelope) (Base64) -> plaintext JWT that passed GCM authentication
+    private Cache<String, String> decryptedTokenCache;
+
     @PostConstruct
     public void init() {
-        // No need to derive a global key here anymore
-        log.info("EncryptionService initialized");
+        tokenKeyCache = Caffeine.newBuilder()
+                .maximumSize(maxCachedKeys)
+                .expireAfterAccess(Duration.ofMinutes(tokenCacheTtlMinutes))
+                .recordStats()
+                .build();
+        decryptedTokenCache = Caffeine.newBuilder()
+                .maximumSize(maxCachedTokens)
+                .expireAfterWrite(Duration.ofMinutes(tokenCacheTtlMinutes))
+                .recordStats()
+                .build();
+        if (tokenEnvelopeVersion != ENVELOPE_VERSION_LEGACY && tokenEnvelopeVersion != ENVELOPE_VERSION_HKDF) {
+            throw new IllegalStateException("Unsupported token envelope version: " + tokenEnvelopeVersion);
+        }
+        tokenMasterKey = deriveKeyWithPBKDF2Token(encryptionKey, MASTER_KEY_SALT);
+        log.info("EncryptionService initialized (envelope version: {}, token cache enabled: {}, "
+                + "key cache: {}, decrypted token cache: {}, ttl: {} min)", tokenEnvelopeVersion,
+                tokenCacheEnabled, maxCachedKeys, maxCachedTokens, tokenCacheTtlMinutes);
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, tokenKeyCache, "encryption.token.keys");
+        CaffeineCacheMetrics.monitor(registry, decryptedTokenCache, "encryption.token.plaintext");
     }
 
     /**
@@ -75,21 +155,27 @@ public class EncryptionService {
             byte[] salt = new byte[16];
             new SecureRandom().nextBytes(salt);
 
-            // Derive dynamic key from ENCRYPTION_KEY using PBKDF2
-            byte[] dynamicKey = deriveKeyWithPBKDF2Token(encryptionKey, salt);
-            SecretKeySpec secretKey = new SecretKeySpec(dynamicKey, "AES");
+            // Derive the per-token key: HKDF from the master key for version 2,
+            // otherwise PBKDF2 from ENCRYPTION_KEY (cached so the first request
+            // carrying this token does not derive it again)
+            boolean hkdfEnvelope = tokenEnvelopeVersion == ENVELOPE_VERSION_HKDF;
+            byte header = hkdfEnvelope ? ENVELOPE_VERSION_HKDF : (byte) salt.length;
+            SecretKeySpec secretKey = hkdfEnvelope ? deriveKeyWithHKDF(salt) : getTokenKey(salt);
 
             // Initialize the cipher for encryption
             Cipher cipher = Cipher.getInstance(ALGORITHM);
             GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
             cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
+            if (hkdfEnvelope) {
+                cipher.updateAAD(envelopeHeader(header, salt));
+            }
 
             // Encrypt the token
             byte[] encryptedToken = cipher.doFinal(token.getBytes(StandardCharsets.UTF_8));
 
-            // Format: [salt_length(1)][salt(16)][iv(12)][encrypted data]
+            // Format: [version or salt_length(1)][salt(16)][iv(12)][encrypted data]
             ByteBuffer byteBuffer = ByteBuffer.allocate(1 + salt.length + iv.length + encryptedToken.length);
-            byteBuffer.put((byte) salt.length);
+            byteBuffer.put(header);
             byteBuffer.put(salt);
             byteBuffer.put(iv);
             byteBuffer.put(encryptedToken);
@@ -129,6 +215,15 @@ public class EncryptionService {
             log.debug("Sanitized token (first 10 chars): {}",
                     sanitizedToken.substring(0, Math.min(10, sanitizedToken.length())));
 
+            // Tokens already seen are answered without touching the cipher
+            String envelopeDigest = tokenCacheEnabled ? digest(sanitizedToken) : null;
+            if (envelopeDigest != null) {
+                String cachedToken = decryptedTokenCache.getIfPresent(envelopeDigest);
+                if (cachedToken != null) {
+                    return cachedToken;
+                }
+            }
+
             try {
                 // Decode from Base64
                 byte[] decodedToken = Base64.getDecoder().decode(sanitizedToken);
@@ -136,8 +231,10 @@ public class EncryptionService {
                 // Extract salt, IV and cipher text
                 ByteBuffer byteBuffer = ByteBuffer.wrap(decodedToken);
 
-                // Read salt length
-                int saltLength = byteBuffer.get() & 0xFF;
+                // Read envelope version, or salt length for legacy envelopes
+                byte header = byteBuffer.get();
+                boolean hkdfEnvelope = header == ENVELOPE_VERSION_HKDF;
+                int saltLength = hkdfEnvelope ? SALT_LENGTH : header & 0xFF;
 
                 // Read salt
                 byte[] salt = new byte[saltLength];
@@ -151,18 +248,24 @@ public class EncryptionService {
                 byteBuffer.get(cipherText);
 
                 // Derive the same key using the embedded salt
-                byte[] dynamicKey = deriveKeyWithPBKDF2Token(encryptionKey, salt);
-                SecretKeySpec secretKey = new SecretKeySpec(dynamicKey, "AES");
+                SecretKeySpec secretKey = hkdfEnvelope ? deriveKeyWithHKDF(salt) : getTokenKey(salt);
 
                 // Initialize cipher for decryption
                 Cipher cipher = Cipher.getInstance(ALGORITHM);
                 GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
                 cipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
+                if (hkdfEnvelope) {
+                    cipher.updateAAD(envelopeHeader(header, salt));
+                }
 
                 // Decrypt the token
                 byte[] decryptedToken = cipher.doFinal(cipherText);
                 log.debug("Token successfully decrypted");
-                return new String(decryptedToken, StandardCharsets.UTF_8);
+                String plainToken = new String(decryptedToken, StandardCharsets.UTF_8);
+                if (envelopeDigest != null) {
+                    decryptedTokenCache.put(envelopeDigest, plainToken);
+                }
+                return plainToken;
             } catch (IllegalArgumentException e) {
                 log.debug("Base64 decoding error: {}", e.getMessage());
                 // If this isn't a valid Base64 token, it might be a plain JWT
@@ -307,6 +410,50 @@ public class EncryptionService {
         }
     }
 
+    /**
+     * Get the token key for the given salt, deriving it with PBKDF2 only on a
+     * cache miss
+     */
+    private SecretKeySpec getTokenKey(byte[] salt) {
+        if (!tokenCacheEnabled) {
+            return new SecretKeySpec(deriveKeyWithPBKDF2Token(encryptionKey, salt), "AES");
+        }
+        return tokenKeyCache.get(Base64.getEncoder().encodeToString(salt),
+                k -> new SecretKeySpec(deriveKeyWithPBKDF2Token(encryptionKey, salt), "AES"));
+    }
+
+    /**
+     * Derive the key of a version 2 envelope with HKDF-SHA256 (RFC 5869), using
+     * the envelope salt and the master key as input keying material. A single
+     * expand block gives the 32 bytes needed for AES-256.
+     */
+    private SecretKeySpec deriveKeyWithHKDF(byte[] salt) throws NoSuchAlgorithmException, InvalidKeyException {
+        Mac hmac = Mac.getInstance(HKDF_ALGORITHM);
+
+        // Extract: PRK = HMAC(salt, master key)
+        hmac.init(new SecretKeySpec(salt, HKDF_ALGORITHM));
+        byte[] pseudoRandomKey = hmac.doFinal(tokenMasterKey);
+
+        // Expand: OKM = HMAC(PRK, info || 0x01)
+        hmac.init(new SecretKeySpec(pseudoRandomKey, HKDF_ALGORITHM));
+        hmac.update(HKDF_INFO);
+        hmac.update((byte) 0x01);
+        return new SecretKeySpec(hmac.doFinal(), 0, AES_KEY_LENGTH_BYTES, "AES");
+    }
+
+    private byte[] envelopeHeader(byte version, byte[] salt) {
+        return ByteBuffer.allocate(1 + salt.length).put(version).put(salt).array();
+    }
+
+    private String digest(String value) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     private byte[] deriveKeyWithPBKDF2Token(String masterKey, byte[] salt) {
         try {
             // Always use the provided salt - essential for TOTP and token decryption
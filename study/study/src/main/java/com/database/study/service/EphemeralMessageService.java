@@ -0,0 +1,233 @@
+package com.database.study.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.database.study.dto.request.ChatMessageRequest;
+import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.entity.TimeOrderedUuidGenerator;
+import com.database.study.exception.AppException;
+import com.database.study.exception.ErrorCode;
+import com.database.study.mapper.ChatMessageMapper;
+import com.database.study.repository.ChatGroupRepository;
+import com.database.study.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends messages with persistent=false straight to the broker.
+ *
+ * Nothing is written, so there is no transaction and no ChatMessage entity.
+ * Senders, recipients and group members are resolved from caches filled by
+ * name-only queries (no roles), so a conversation in this mode reads the
+ * database only when an entry is missing or expired. Users are kept for
+ * chat.ephemeral.ttl-seconds. Group members are kept for the much shorter
+ * chat.ephemeral.group-ttl-seconds: membership changes made on this node
+ * evict the group right away, but other nodes only see them once their copy
+ * expires, and until then a removed member still receives the group's
+ * messages.
+ */
+@Slf4j
+@Service
+public class EphemeralMessageService implements MeterBinder {
+
+    private final UserRepository userRepository;
+    private final ChatGroupRepository chatGroupRepository;
+    private final MessageFrameService frameService;
+    private final GroupFanoutService groupFanoutService;
+
+    @Value("${chat.ephemeral.max-cached-users:10000}")
+    private long maxCachedUsers;
+
+    @Value("${chat.ephemeral.max-cached-groups:10000}")
+    private long maxCachedGroups;
+
+    @Value("${chat.ephemeral.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${chat.ephemeral.group-ttl-seconds:5}")
+    private long groupTtlSeconds;
+
+    private Cache<UUID, ChatUser> usersById;
+    private Cache<String, UUID> userIdsByUsername;
+    private Cache<UUID, GroupRecipients> groups;
+
+    public EphemeralMessageService(UserRepository userRepository, ChatGroupRepository chatGroupRepository,
+            MessageFrameService frameService, GroupFanoutService groupFanoutService) {
+        this.userRepository = userRepository;
+        this.chatGroupRepository = chatGroupRepository;
+        this.frameService = frameService;
+        this.groupFanoutService = groupFanoutService;
+    }
+
+    @PostConstruct
+    public void init() {
+        usersById = Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        userIdsByUsername = Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        groups = Caffeine.newBuilder()
+                .maximumSize(maxCachedGroups)
+                .expireAfterWrite(Duration.ofSeconds(groupTtlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, usersById, "chat.ephemeral.users");
+        CaffeineCacheMetrics.monitor(registry, groups, "chat.ephemeral.groups");
+    }
+
+    /**
+     * Deliver a non-persistent message to its receiver or group and return it
+     */
+    public ChatMessageResponse send(String username, ChatMessageRequest request) {
+        ChatUser sender = findUserByUsername(username);
+
+        if (request.getGroupId() != null && !request.getGroupId().isEmpty()) {
+            return sendToGroup(sender, parseId(request.getGroupId()), request.getContent());
+        }
+        if (request.getReceiverId() == null || request.getReceiverId().isEmpty()) {
+            throw new AppException(ErrorCode.INVALID_REQUEST, "Receiver ID is required for direct messages");
+        }
+
+        // Clients may send a group id as the receiver id
+        UUID receiverId = parseId(request.getReceiverId());
+        ChatUser receiver = findUser(receiverId);
+        if (receiver == null) {
+            if (findGroup(receiverId) == null) {
+                throw new AppException(ErrorCode.USER_NOT_FOUND);
+            }
+            return sendToGroup(sender, receiverId, request.getContent());
+        }
+
+        ChatMessageResponse response = newResponse(sender, request.getContent());
+        response.setReceiver(new ChatMessageResponse.UserInfo(receiver.id().toString(), receiver.name()));
+        frameService.sendToUser(receiver.id().toString(), "/queue/messages", response);
+        return response;
+    }
+
+    /**
+     * Id of a user, from the cache when possible
+     */
+    public UUID findUserId(String username) {
+        return findUserByUsername(username).id();
+    }
+
+    /**
+     * Forget the cached members of a group after they changed, again once
+     * the change commits
+     */
+    public void evictGroup(UUID groupId) {
+        groups.invalidate(groupId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    groups.invalidate(groupId);
+                }
+            });
+        }
+    }
+
+    private ChatMessageResponse sendToGroup(ChatUser sender, UUID groupId, String content) {
+        GroupRecipients group = findGroup(groupId);
+        if (group == null) {
+            throw new AppException(ErrorCode.RESOURCE_NOT_FOUND);
+        }
+        if (!group.memberIds().contains(sender.id())) {
+            throw new AppException(ErrorCode.UNAUTHORIZED_ACCESS);
+        }
+
+        ChatMessageResponse response = newResponse(sender, content);
+        response.setGroupId(groupId.toString());
+        response.setGroupName(group.name());
+        groupFanoutService.deliverAfterCommit(group.memberIds().stream()
+                .filter(memberId -> !memberId.equals(sender.id()))
+                .toList(), "/queue/messages", response);
+        return response;
+    }
+
+    private static ChatMessageResponse newResponse(ChatUser sender, String content) {
+        ChatMessageResponse response = new ChatMessageResponse();
+        response.setId(TimeOrderedUuidGenerator.next().toString());
+        response.setContent(content);
+        response.setSender(new ChatMessageResponse.UserInfo(sender.id().toString(), sender.name()));
+        response.setTimestamp(LocalDateTime.now().toString());
+        response.setRead(false);
+        response.setPersistent(false);
+        return response;
+    }
+
+    private ChatUser findUserByUsername(String username) {
+        UUID id = userIdsByUsername.getIfPresent(username);
+        ChatUser user = id != null ? usersById.getIfPresent(id) : null;
+        if (user != null) {
+            return user;
+        }
+        user = userRepository.findChatUserByUsername(username)
+                .map(EphemeralMessageService::toChatUser)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        usersById.put(user.id(), user);
+        userIdsByUsername.put(username, user.id());
+        return user;
+    }
+
+    // Null if there is no such user
+    private ChatUser findUser(UUID id) {
+        return usersById.get(id, key -> userRepository.findChatUserById(key)
+                .map(EphemeralMessageService::toChatUser)
+                .orElse(null));
+    }
+
+    // Null if there is no such group, or it has no members
+    private GroupRecipients findGroup(UUID groupId) {
+        return groups.get(groupId, key -> {
+            List<UUID> memberIds = chatGroupRepository.findMemberIds(key);
+            if (memberIds.isEmpty()) {
+                return null;
+            }
+            return new GroupRecipients(chatGroupRepository.findNameById(key).orElse(null), Set.copyOf(memberIds));
+        });
+    }
+
+    private static ChatUser toChatUser(UserRepository.ChatUserView view) {
+        return new ChatUser(view.getId(), ChatMessageMapper.displayName(view.getFirstname(), view.getLastname(),
+                view.getUsername(), view.getEmail()));
+    }
+
+    private static UUID parseId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.INVALID_REQUEST, "Invalid id: " + id);
+        }
+    }
+
+    record ChatUser(UUID id, String name) {
+    }
+
+    record GroupRecipients(String name, Set<UUID> memberIds) {
+    }
+}
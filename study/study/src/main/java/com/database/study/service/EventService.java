@@ -9,6 +9,7 @@ import com.database.study.exception.ErrorCode;
 import com.database.study.mapper.EventMapper;
 import com.database.study.repository.EventRepository;
 import com.database.study.repository.UserRepository;
+import com.database.study.security.ScopeAuthorityCache;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -84,8 +85,7 @@ public class EventService {
     String eventUserId = event.getUser() != null ? event.getUser().getId().toString() : null;
     
     // Check for admin role
-    boolean isAdmin = authentication.getAuthorities().stream()
-        .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    boolean isAdmin = ScopeAuthorityCache.isAdmin(authentication);
 
     if (!isAdmin && (eventUsername == null || !authenticatedUsername.equals(eventUsername))) {
         // Additional JWT-specific checks for backward compatibility
@@ -150,8 +150,7 @@ public class EventService {
         .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
             // Check for admin role first
-    boolean isAdmin = authentication.getAuthorities().stream()
-        .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    boolean isAdmin = ScopeAuthorityCache.isAdmin(authentication);
     
     if (isAdmin) {
       return updateEventsForAdmin(events, request, user);
@@ -182,8 +181,7 @@ public class EventService {
     }
 
     // Check for admin role first
-    boolean isAdmin = authentication.getAuthorities().stream()
-        .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    boolean isAdmin = ScopeAuthorityCache.isAdmin(authentication);
 
     if (isAdmin) {
       eventRepository.delete(event);
@@ -0,0 +1,165 @@
+package com.database.study.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Delivers one payload to many users, for messages sent to a group.
+ *
+ * The payload is serialized once (see MessageFrameService) and the same bytes
+ * are sent to every member. Delivery starts after the sender's transaction
+ * commits, so the transaction is not held open while messages are sent, and
+ * nothing is delivered for a rolled back send. Members are split into batches
+ * that run on a bounded pool (chat.fanout.*); batches that do not fit in its
+ * queue are dropped and counted rather than blocking the sender.
+ */
+@Slf4j
+@Service
+public class GroupFanoutService implements MeterBinder {
+
+    private final MessageFrameService frameService;
+
+    @Value("${chat.fanout.threads:4}")
+    private int threads;
+
+    @Value("${chat.fanout.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${chat.fanout.batch-size:100}")
+    private int batchSize;
+
+    private ThreadPoolExecutor executor;
+    private Timer fanoutTimer;
+    private Counter droppedCounter;
+
+    public GroupFanoutService(MessageFrameService frameService) {
+        this.frameService = frameService;
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("group-fanout-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        fanoutTimer = Timer.builder("chat.group.fanout")
+                .description("Time from commit until a message was delivered to all group members")
+                .register(registry);
+        droppedCounter = Counter.builder("chat.group.fanout.dropped")
+                .description("Group member deliveries dropped because the pool was full or sending failed")
+                .register(registry);
+        registry.gauge("chat.group.fanout.queue.depth", executor, pool -> pool.getQueue().size());
+    }
+
+    /**
+     * Send a payload to the user destination of each recipient once the
+     * caller's transaction commits
+     */
+    public void deliverAfterCommit(Collection<UUID> recipientIds, String destination, Object payload) {
+        if (recipientIds.isEmpty()) {
+            return;
+        }
+        MessageFrameService.Frames frames;
+        try {
+            frames = frameService.encode(payload);
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize payload for {}: {}", destination, e.getMessage(), e);
+            drop(recipientIds.size());
+            return;
+        }
+        List<UUID> recipients = List.copyOf(recipientIds);
+        Runnable dispatch = () -> dispatch(recipients, destination, frames);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch.run();
+                }
+            });
+        } else {
+            dispatch.run();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("{} group deliveries were still queued at shutdown", executor.getQueue().size());
+        }
+    }
+
+    private void dispatch(List<UUID> recipients, String destination, MessageFrameService.Frames frames) {
+        long started = System.nanoTime();
+        List<List<UUID>> batches = new ArrayList<>();
+        for (int from = 0; from < recipients.size(); from += batchSize) {
+            batches.add(recipients.subList(from, Math.min(from + batchSize, recipients.size())));
+        }
+        AtomicInteger remaining = new AtomicInteger(batches.size());
+        Runnable batchDone = () -> {
+            if (remaining.decrementAndGet() == 0 && fanoutTimer != null) {
+                fanoutTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        };
+        for (List<UUID> batch : batches) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        sendBatch(batch, destination, frames);
+                    } finally {
+                        batchDone.run();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("Group fan-out pool is full, dropped delivery to {} members", batch.size());
+                drop(batch.size());
+                batchDone.run();
+            }
+        }
+    }
+
+    private void sendBatch(List<UUID> batch, String destination, MessageFrameService.Frames frames) {
+        for (UUID recipientId : batch) {
+            try {
+                frameService.send(recipientId.toString(), destination, frames);
+            } catch (MessagingException e) {
+                log.warn("Error delivering to group member {}: {}", recipientId, e.getMessage());
+                drop(1);
+            }
+        }
+    }
+
+    private void drop(int deliveries) {
+        if (droppedCounter != null) {
+            droppedCounter.increment(deliveries);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.database.study.service;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import com.database.study.repository.ChatGroupRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ids of all chat groups, to tell whether a receiver id of a message is a
+ * group without querying chat_group for every direct message.
+ *
+ * Loaded once at startup and kept up to date by ChatGroupService on create
+ * and delete. Groups created on another node are missing until they are
+ * first found through {@link #recordGroup(UUID)}, which callers do when a
+ * receiver id turns out not to be a user. Ids of deleted groups only cost
+ * the lookup the group path does anyway.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupIdIndex implements MeterBinder {
+
+    private final ChatGroupRepository chatGroupRepository;
+
+    private final Set<UUID> groupIds = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        groupIds.addAll(chatGroupRepository.findAllIds());
+        log.info("Group id index loaded with {} groups", groupIds.size());
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        registry.gauge("chat.group.ids", groupIds, Set::size);
+    }
+
+    public boolean isGroup(UUID id) {
+        return groupIds.contains(id);
+    }
+
+    public void recordGroup(UUID groupId) {
+        groupIds.add(groupId);
+    }
+
+    public void removeGroup(UUID groupId) {
+        groupIds.remove(groupId);
+    }
+}
@@ -31,6 +31,7 @@ import com.database.study.repository.KanbanBoardRepository;
 import com.database.study.repository.KanbanColumnRepository;
 import com.database.study.repository.KanbanTaskRepository;
 import com.database.study.repository.UserRepository;
+import com.database.study.security.ScopeAuthorityCache;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -522,8 +523,7 @@ public class KanbanService {
         }
 
         // Skip check for admins
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        boolean isAdmin = ScopeAuthorityCache.isAdmin(authentication);
         if (isAdmin) {
             return;
         }
@@ -0,0 +1,184 @@
+package com.database.study.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.AbstractSubProtocolEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.dto.response.CompactChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends payloads to user destinations, serialized once per payload rather
+ * than once per recipient.
+ *
+ * Clients choose the format of chat messages by what they subscribe to:
+ * /user/{id}/queue/messages gets the usual JSON, and
+ * /user/{id}/queue/messages.compact gets {@link CompactChatMessage}, which
+ * is about half the size. SockJS carries text frames only, so the compact
+ * format is short JSON rather than a binary encoding. A recipient gets the
+ * compact frame only while one of their sessions on this node subscribes to
+ * it, and JSON while one subscribes to the plain destination or none
+ * subscribes to either here (for example behind a broker relay).
+ */
+@Slf4j
+@Service
+public class MessageFrameService {
+
+    public static final String COMPACT_SUFFIX = ".compact";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Subscriptions per destination, and per session for cleanup
+    private final Map<String, AtomicInteger> subscriptionCounts = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> subscriptionsBySession = new ConcurrentHashMap<>();
+
+    public MessageFrameService(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Serialize a payload for sending to any number of recipients
+     */
+    public Frames encode(Object payload) throws JsonProcessingException {
+        return new Frames(payload, objectMapper.writeValueAsBytes(payload));
+    }
+
+    /**
+     * Send a payload to one user, in the format they subscribed to
+     */
+    public void sendToUser(String userId, String destination, Object payload) {
+        try {
+            send(userId, destination, encode(payload));
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Could not serialize payload for " + destination, e);
+        }
+    }
+
+    /**
+     * Send encoded frames to one user, in the format they subscribed to
+     */
+    public void send(String userId, String destination, Frames frames) {
+        String plain = messagingTemplate.getUserDestinationPrefix() + userId + destination;
+        boolean compact = frames.hasCompactForm() && isSubscribed(plain + COMPACT_SUFFIX);
+        if (compact) {
+            messagingTemplate.send(plain + COMPACT_SUFFIX, jsonMessage(frames.compact()));
+        }
+        if (!compact || isSubscribed(plain)) {
+            messagingTemplate.send(plain, jsonMessage(frames.json()));
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = accessor(event);
+        String destination = accessor.getDestination();
+        if (accessor.getSessionId() == null || accessor.getSubscriptionId() == null || destination == null
+                || !destination.startsWith(messagingTemplate.getUserDestinationPrefix())) {
+            return;
+        }
+        String previous = subscriptionsBySession
+                .computeIfAbsent(accessor.getSessionId(), key -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), destination);
+        if (previous != null) {
+            decrement(previous);
+        }
+        subscriptionCounts.computeIfAbsent(destination, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = accessor(event);
+        Map<String, String> subscriptions = accessor.getSessionId() == null ? null
+                : subscriptionsBySession.get(accessor.getSessionId());
+        if (subscriptions != null && accessor.getSubscriptionId() != null) {
+            String destination = subscriptions.remove(accessor.getSubscriptionId());
+            if (destination != null) {
+                decrement(destination);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = subscriptionsBySession.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::decrement);
+        }
+    }
+
+    private boolean isSubscribed(String destination) {
+        AtomicInteger count = subscriptionCounts.get(destination);
+        return count != null && count.get() > 0;
+    }
+
+    private void decrement(String destination) {
+        subscriptionCounts.computeIfPresent(destination,
+                (key, count) -> count.decrementAndGet() > 0 ? count : null);
+    }
+
+    private static SimpMessageHeaderAccessor accessor(AbstractSubProtocolEvent event) {
+        return SimpMessageHeaderAccessor.wrap(event.getMessage());
+    }
+
+    private static Message<byte[]> jsonMessage(byte[] body) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+
+    /**
+     * A payload serialized as JSON, and in the compact format on first use
+     */
+    public final class Frames {
+
+        private final Object payload;
+        private final byte[] json;
+        private byte[] compact;
+
+        private Frames(Object payload, byte[] json) {
+            this.payload = payload;
+            this.json = json;
+        }
+
+        public byte[] json() {
+            return json;
+        }
+
+        boolean hasCompactForm() {
+            return payload instanceof ChatMessageResponse;
+        }
+
+        synchronized byte[] compact() {
+            if (compact == null) {
+                try {
+                    compact = objectMapper.writeValueAsBytes(CompactChatMessage.from((ChatMessageResponse) payload));
+                } catch (JsonProcessingException e) {
+                    log.warn("Could not serialize compact frame, sending JSON: {}", e.getMessage());
+                    compact = json;
+                }
+            }
+            return compact;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.database.study.service;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.dto.response.MessageSliceResponse;
+import com.database.study.entity.BackfillProgress;
+import com.database.study.entity.ChatMessage;
+import com.database.study.entity.MessageTerm;
+import com.database.study.entity.User;
+import com.database.study.exception.AppException;
+import com.database.study.exception.ErrorCode;
+import com.database.study.mapper.ChatMessageMapper;
+import com.database.study.repository.BackfillProgressRepository;
+import com.database.study.repository.ChatGroupRepository;
+import com.database.study.repository.ChatMessageRepository;
+import com.database.study.repository.ConversationSummaryRepository;
+import com.database.study.repository.InsertIfAbsentRepository;
+import com.database.study.repository.MessageTermRepository;
+import com.database.study.repository.MessageTermRepository.MessageHit;
+import com.database.study.repository.UserRepository;
+import com.database.study.service.ChatMessageService.MessageCursor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Full-text search over stored chat messages.
+ *
+ * Every stored message is split into lower case words that are kept in
+ * message_terms, in the transaction that sends, edits or deletes it. A search
+ * matches messages containing all words of the query, in one conversation or
+ * group, or in all conversations of the user (taken from their conversation
+ * summaries). Results are paged newest first with the same "timestamp,id"
+ * cursor as message history.
+ *
+ * The query term with the fewest postings in a first window drives the
+ * search: its postings are read newest first in windows of SCAN_WINDOW, and
+ * only those messages are checked for the other terms. A window is merged
+ * from bounded range reads of each conversation on the (term,
+ * conversation_key, sent_at) index: a share of postings per conversation in
+ * one statement, then more from a conversation once the merge has used its
+ * share. A window thus reads about SCAN_WINDOW postings plus a few per
+ * conversation, however many postings the term has. A search reads at most
+ * MAX_SCANNED_POSTINGS postings; when it stops there, it returns what it
+ * found with a cursor after the last posting read, so a page may hold fewer
+ * messages than asked for while hasMore is still true.
+ *
+ * Messages stored before the index existed are indexed by a backfill on
+ * start, in id order up to the newest message at its first start. Its
+ * high-water mark is kept in backfill_progress, so a restart resumes after
+ * the last indexed batch and nodes starting together take turns on batches.
+ */
+@Slf4j
+@Service
+public class MessageSearchService {
+
+    static final int MAX_TERMS_PER_MESSAGE = 200;
+    static final int MAX_QUERY_TERMS = 8;
+    static final int SCAN_WINDOW = 200;
+    static final int MAX_SCANNED_POSTINGS = 2000;
+    static final int MIN_POSTINGS_PER_CONVERSATION = 4;
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final String BACKFILL = "message_terms";
+    private static final String BACKFILL_TABLE = "backfill_progress";
+    private static final List<String> BACKFILL_COLUMNS = List.of("id", "last_message_id", "until_message_id",
+            "updated_at");
+    private static final List<Class<?>> BACKFILL_COLUMN_TYPES = List.of(String.class, UUID.class, UUID.class,
+            LocalDateTime.class);
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Index order of postings: sent_at, then message id as unsigned bytes like the database compares them
+    private static final Comparator<MessageHit> NEWEST_FIRST = Comparator
+            .comparing(MessageHit::getSentAt)
+            .thenComparing(MessageHit::getMessageId, (a, b) -> {
+                int byId = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+                return byId != 0 ? byId : Long.compareUnsigned(a.getLeastSignificantBits(),
+                        b.getLeastSignificantBits());
+            })
+            .reversed();
+
+    private final MessageTermRepository termRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ConversationSummaryRepository summaryRepository;
+    private final ChatGroupRepository chatGroupRepository;
+    private final UserRepository userRepository;
+    private final ChatMessageMapper messageMapper;
+    private final ReadWatermarkService readWatermarkService;
+    private final BackfillProgressRepository progressRepository;
+    private final InsertIfAbsentRepository insertIfAbsentRepository;
+    private final TransactionTemplate newTransaction;
+
+    public MessageSearchService(MessageTermRepository termRepository, ChatMessageRepository messageRepository,
+            ConversationSummaryRepository summaryRepository, ChatGroupRepository chatGroupRepository,
+            UserRepository userRepository, ChatMessageMapper messageMapper, ReadWatermarkService readWatermarkService,
+            BackfillProgressRepository progressRepository, InsertIfAbsentRepository insertIfAbsentRepository,
+            PlatformTransactionManager transactionManager) {
+        this.termRepository = termRepository;
+        this.messageRepository = messageRepository;
+        this.summaryRepository = summaryRepository;
+        this.chatGroupRepository = chatGroupRepository;
+        this.userRepository = userRepository;
+        this.messageMapper = messageMapper;
+        this.readWatermarkService = readWatermarkService;
+        this.progressRepository = progressRepository;
+        this.insertIfAbsentRepository = insertIfAbsentRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Messages of a user containing all words of a query, newest first
+     *
+     * @param contactId other user of a direct conversation to search in, or null
+     * @param groupId   group to search in, or null for all conversations
+     * @param before    cursor "timestamp,id" from a previous slice, or null
+     * @param limit     maximum number of messages, capped at MAX_SLICE_SIZE
+     */
+    @Transactional(readOnly = true)
+    public MessageSliceResponse search(String username, String query, String contactId, String groupId,
+            String before, int limit) {
+        Set<String> terms = tokenize(query, MAX_QUERY_TERMS);
+        if (terms.isEmpty()) {
+            throw new AppException(ErrorCode.INVALID_REQUEST, "Search query must contain a word");
+        }
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+
+        List<String> conversationKeys = conversationKeys(user, contactId, groupId);
+        if (conversationKeys.isEmpty()) {
+            return MessageSliceResponse.builder().content(List.of()).hasMore(false).build();
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, ChatMessageService.MAX_SLICE_SIZE));
+        MessageCursor cursor = before == null || before.isEmpty() ? null : MessageCursor.parse(before);
+
+        // The term with the fewest postings in its first window drives the scan
+        String driver = null;
+        List<MessageHit> window = null;
+        for (String term : terms) {
+            List<MessageHit> postings = postings(term, conversationKeys, cursor);
+            if (window == null || postings.size() < window.size()) {
+                driver = term;
+                window = postings;
+            }
+            if (postings.isEmpty()) {
+                break;
+            }
+        }
+        Set<String> otherTerms = new LinkedHashSet<>(terms);
+        otherTerms.remove(driver);
+
+        List<MessageHit> hits = new ArrayList<>();
+        MessageHit lastScanned = null;
+        int scanned = 0;
+        boolean hasMore = false;
+        while (!window.isEmpty()) {
+            Set<UUID> matching = otherTerms.isEmpty() ? null : Set.copyOf(termRepository.findMessagesWithTerms(
+                    window.stream().map(MessageHit::getMessageId).toList(), otherTerms, otherTerms.size()));
+            int read = 0;
+            while (read < window.size() && hits.size() < pageSize) {
+                lastScanned = window.get(read++);
+                if (matching == null || matching.contains(lastScanned.getMessageId())) {
+                    hits.add(lastScanned);
+                }
+            }
+            scanned += read;
+            boolean moreInIndex = read < window.size() || window.size() == SCAN_WINDOW;
+            if (hits.size() == pageSize || scanned >= MAX_SCANNED_POSTINGS || !moreInIndex) {
+                hasMore = moreInIndex;
+                break;
+            }
+            window = postings(driver, conversationKeys,
+                    new MessageCursor(lastScanned.getSentAt(), lastScanned.getMessageId()));
+        }
+
+        // Postings of messages deleted in bulk are skipped here
+        Map<UUID, ChatMessage> messages = messageRepository
+                .findAllById(hits.stream().map(MessageHit::getMessageId).toList()).stream()
+                .collect(Collectors.toMap(ChatMessage::getId, Function.identity()));
+        Set<UUID> read = readWatermarkService.readByReceiver(messages.values());
+        return MessageSliceResponse.builder()
+                .content(hits.stream()
+                        .map(hit -> messages.get(hit.getMessageId()))
+                        .filter(message -> message != null)
+                        .map(message -> {
+                            ChatMessageResponse response = messageMapper.toResponse(message);
+                            if (read.contains(message.getId())) {
+                                response.setRead(true);
+                            }
+                            return response;
+                        })
+                        .collect(Collectors.toList()))
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? new MessageCursor(lastScanned.getSentAt(), lastScanned.getMessageId()).toString()
+                        : null)
+                .build();
+    }
+
+    // One window of the newest postings of a term after a cursor, merged from the conversations' own ranges
+    private List<MessageHit> postings(String term, List<String> conversationKeys, MessageCursor cursor) {
+        int share = Math.min(SCAN_WINDOW,
+                Math.max(MIN_POSTINGS_PER_CONVERSATION, SCAN_WINDOW / conversationKeys.size() + 1));
+        Map<String, List<MessageHit>> byConversation = termRepository.findLatestPostingsPerConversation(term,
+                conversationKeys, cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.id() : null,
+                share).stream().collect(Collectors.groupingBy(MessageHit::getConversationKey));
+
+        PriorityQueue<ConversationPostings> merge = new PriorityQueue<>(
+                Comparator.comparing((ConversationPostings postings) -> postings.buffer.peekFirst(), NEWEST_FIRST));
+        byConversation.forEach((conversationKey, hits) -> {
+            ConversationPostings postings = new ConversationPostings(conversationKey, share);
+            hits.stream().sorted(NEWEST_FIRST).forEach(postings.buffer::add);
+            postings.exhausted = hits.size() < share;
+            merge.add(postings);
+        });
+        List<MessageHit> window = new ArrayList<>();
+        while (window.size() < SCAN_WINDOW && !merge.isEmpty()) {
+            ConversationPostings next = merge.poll();
+            MessageHit hit = next.buffer.pollFirst();
+            window.add(hit);
+            if (next.buffer.isEmpty() && !next.exhausted) {
+                // Read twice as many as last time from the conversation the window keeps drawing from
+                next.fetchSize = Math.min(SCAN_WINDOW, next.fetchSize * 2);
+                List<MessageHit> more = termRepository.findLatestPostingsPerConversation(term,
+                        List.of(next.conversationKey), hit.getSentAt(), hit.getMessageId(), next.fetchSize);
+                more.stream().sorted(NEWEST_FIRST).forEach(next.buffer::add);
+                next.exhausted = more.size() < next.fetchSize;
+            }
+            if (!next.buffer.isEmpty()) {
+                merge.add(next);
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Add a stored message to the index, in the caller's transaction
+     */
+    @Transactional
+    public void index(ChatMessage message) {
+        index(message.getId(), message.getConversationId(), message.getTimestamp(), message.getContent());
+    }
+
+    /**
+     * Replace the words of an edited message
+     */
+    @Transactional
+    public void reindex(ChatMessage message) {
+        termRepository.deleteByMessageId(message.getId());
+        index(message);
+    }
+
+    /**
+     * Drop a deleted message from the index
+     */
+    @Transactional
+    public void remove(UUID messageId) {
+        termRepository.deleteByMessageId(messageId);
+    }
+
+    /**
+     * Drop all messages of a deleted conversation or group from the index
+     */
+    @Transactional
+    public void removeConversation(String conversationKey) {
+        termRepository.deleteByConversationKey(conversationKey);
+    }
+
+    /**
+     * Index the messages stored before message_terms was introduced, resuming
+     * after the high-water mark of an earlier start. Messages after the newest
+     * one at the first start are indexed when they are sent.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        newTransaction.executeWithoutResult(status -> insertIfAbsentRepository.insertIfAbsent(BACKFILL_TABLE,
+                BACKFILL_COLUMNS, BACKFILL_COLUMN_TYPES, List.<Object[]>of(new Object[] {
+                        BACKFILL, new UUID(0, 0), messageRepository.findMaxId(), LocalDateTime.now() })));
+        int indexed = 0;
+        int batchSize;
+        do {
+            batchSize = newTransaction.execute(status -> backfillBatch());
+            indexed += Math.max(batchSize, 0);
+        } while (batchSize == BACKFILL_BATCH_SIZE || batchSize < 0);
+        if (indexed > 0) {
+            log.info("Indexed {} chat messages for search", indexed);
+        }
+    }
+
+    /**
+     * Index the batch after the high-water mark and move the mark past it
+     *
+     * @return number of messages indexed, or -1 when another node took the batch
+     */
+    private int backfillBatch() {
+        BackfillProgress progress = progressRepository.findById(BACKFILL).orElseThrow();
+        if (progress.getUntilMessageId() == null) {
+            return 0;
+        }
+        List<ChatMessageRepository.SearchableMessage> messages = messageRepository.findSearchableBetween(
+                progress.getLastMessageId(), progress.getUntilMessageId(), PageRequest.of(0, BACKFILL_BATCH_SIZE));
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        UUID last = messages.get(messages.size() - 1).getId();
+        if (progressRepository.advance(BACKFILL, progress.getLastMessageId(), last, LocalDateTime.now()) == 0) {
+            return -1;
+        }
+        // Replaces postings written by a backfill without a mark, or when a message was sent during the first start
+        termRepository.deleteByMessageIdIn(messages.stream().map(ChatMessageRepository.SearchableMessage::getId)
+                .toList());
+        messages.forEach(message -> index(message.getId(), message.getConversationId(), message.getTimestamp(),
+                message.getContent()));
+        return messages.size();
+    }
+
+    /**
+     * Distinct lower case words of a text, in order of appearance
+     */
+    static Set<String> tokenize(String text, int maxTerms) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        for (String word : NON_WORD.split(normalized)) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            terms.add(word.length() <= MessageTerm.MAX_LENGTH ? word : word.substring(0, MessageTerm.MAX_LENGTH));
+            if (terms.size() == maxTerms) {
+                break;
+            }
+        }
+        return terms;
+    }
+
+    private void index(UUID messageId, String conversationKey, LocalDateTime sentAt, String content) {
+        if (conversationKey == null) {
+            return;
+        }
+        List<MessageTerm> postings = new ArrayList<>();
+        for (String term : tokenize(content, MAX_TERMS_PER_MESSAGE)) {
+            postings.add(MessageTerm.builder()
+                    .term(term)
+                    .conversationKey(conversationKey)
+                    .messageId(messageId)
+                    .sentAt(sentAt)
+                    .build());
+        }
+        termRepository.saveAll(postings);
+    }
+
+    private List<String> conversationKeys(User user, String contactId, String groupId) {
+        if (groupId != null && !groupId.isEmpty()) {
+            UUID id = parseId(groupId);
+            if (!chatGroupRepository.isUserMemberOfGroup(id, user.getId())) {
+                throw new AppException(ErrorCode.UNAUTHORIZED_ACCESS);
+            }
+            return List.of(ReadWatermarkService.groupKey(id));
+        }
+        if (contactId != null && !contactId.isEmpty()) {
+            return List.of(messageMapper.generateConversationId(user.getId(), parseId(contactId)));
+        }
+        return summaryRepository.findConversationKeysByUserId(user.getId());
+    }
+
+    private static UUID parseId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.INVALID_REQUEST, "Invalid id: " + id);
+        }
+    }
+
+    // Postings of one conversation read so far and not merged yet, newest first
+    private static final class ConversationPostings {
+        private final String conversationKey;
+        private final Deque<MessageHit> buffer = new ArrayDeque<>();
+        private int fetchSize;
+        private boolean exhausted;
+
+        private ConversationPostings(String conversationKey, int fetchSize) {
+            this.conversationKey = conversationKey;
+            this.fetchSize = fetchSize;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.database.study.dto.response.PermissionResponse;
 import com.database.study.entity.Permission;
 import com.database.study.mapper.PermissionMapper;
 import com.database.study.repository.PermissionRepository;
+import com.database.study.security.ScopeAuthorityCache;
 
 import lombok.extern.slf4j.Slf4j;
 import lombok.RequiredArgsConstructor;
@@ -21,10 +22,12 @@ import lombok.experimental.FieldDefaults;
 public class PermissionService {
   PermissionRepository permissionRepository;
   PermissionMapper permissionMapper;
+  ScopeAuthorityCache scopeAuthorityCache;
 
   public PermissionResponse createPermission(PermissionRequest request) {
     Permission permission = permissionMapper.toPermission(request);
     permission = permissionRepository.save(permission);
+    scopeAuthorityCache.invalidate();
     return permissionMapper.toPermissionResponse(permission);
   }
 
@@ -36,5 +39,6 @@ public class PermissionService {
   
   public void deletePermission(String permission) {
     permissionRepository.deleteById(permission);
+    scopeAuthorityCache.invalidate();
   }
 }
@@ -0,0 +1,203 @@
+package com.database.study.service;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.database.study.exception.AppException;
+import com.database.study.repository.ChatContactRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tracks which users are online from their STOMP sessions on this node.
+ *
+ * A user is online while they have at least one connected session; sessions
+ * end on DISCONNECT, on a closed socket, or when heartbeats stop. Changes are
+ * collected and published once per tick (chat.presence.tick-ms): users whose
+ * state really changed since the last tick are looked up in one contact
+ * query, and each online user that has them as an accepted contact gets one
+ * /queue/presence frame with all changes. A reconnect within a tick is not
+ * published at all.
+ *
+ * Sessions are only seen by the node they connected to, and nothing is shared
+ * between nodes, so presence needs the in-memory broker
+ * (chat.websocket.broker=simple) of a single node. Startup fails with the
+ * relay broker unless presence is switched off (chat.presence.enabled=false),
+ * in which case no frames are sent and contact presence is empty.
+ */
+@Slf4j
+@Service
+public class PresenceService implements MeterBinder {
+
+    private static final int WATCHER_QUERY_BATCH = 500;
+
+    private final ChatContactRepository contactRepository;
+    private final EphemeralMessageService ephemeralMessageService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final Map<UUID, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, UUID> usersBySession = new ConcurrentHashMap<>();
+    private final Set<UUID> changed = ConcurrentHashMap.newKeySet();
+    // Users last published as online; only touched by publish()
+    private final Set<UUID> published = new HashSet<>();
+    private final LongAdder framesSent = new LongAdder();
+
+    @Value("${chat.presence.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${chat.websocket.broker:simple}")
+    private String broker = "simple";
+
+    public PresenceService(ChatContactRepository contactRepository, EphemeralMessageService ephemeralMessageService,
+            SimpMessagingTemplate messagingTemplate) {
+        this.contactRepository = contactRepository;
+        this.ephemeralMessageService = ephemeralMessageService;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled && "relay".equals(broker)) {
+            throw new IllegalStateException("Presence only tracks the sessions of one node and cannot run with "
+                    + "chat.websocket.broker=relay; set chat.presence.enabled=false");
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        registry.gauge("chat.presence.online.users", sessionsByUser, Map::size);
+        registry.gauge("chat.presence.sessions", usersBySession, Map::size);
+        FunctionCounter.builder("chat.presence.frames", framesSent, LongAdder::doubleValue)
+                .description("Presence frames sent to contacts")
+                .register(registry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (!enabled || user == null || sessionId == null || "anonymous".equals(user.getName())) {
+            return;
+        }
+        UUID userId;
+        try {
+            userId = ephemeralMessageService.findUserId(user.getName());
+        } catch (AppException e) {
+            log.debug("No user {} for WebSocket session {}", user.getName(), sessionId);
+            return;
+        }
+        usersBySession.put(sessionId, userId);
+        sessionsByUser.compute(userId, (key, sessions) -> {
+            Set<String> updated = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+            updated.add(sessionId);
+            return updated;
+        });
+        changed.add(userId);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        UUID userId = usersBySession.remove(event.getSessionId());
+        if (userId == null) {
+            return;
+        }
+        sessionsByUser.computeIfPresent(userId, (key, sessions) -> {
+            sessions.remove(event.getSessionId());
+            return sessions.isEmpty() ? null : sessions;
+        });
+        changed.add(userId);
+    }
+
+    public boolean isOnline(UUID userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    /**
+     * Online state of the accepted contacts of a user
+     */
+    public Map<String, Boolean> getContactPresence(UUID userId) {
+        Map<String, Boolean> presence = new LinkedHashMap<>();
+        if (!enabled) {
+            return presence;
+        }
+        for (UUID contactId : contactRepository.findAcceptedContactIds(userId)) {
+            presence.put(contactId.toString(), isOnline(contactId));
+        }
+        return presence;
+    }
+
+    /**
+     * Send the changes since the last tick to the contacts of the changed users
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.tick-ms:1000}")
+    public synchronized void publish() {
+        List<UUID> candidates = new ArrayList<>(changed);
+        changed.removeAll(candidates);
+        Map<UUID, Boolean> updates = new HashMap<>();
+        for (UUID userId : candidates) {
+            boolean online = isOnline(userId);
+            if (online ? published.add(userId) : published.remove(userId)) {
+                updates.put(userId, online);
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, List<PresenceUpdate>> framesByWatcher = new HashMap<>();
+        List<UUID> userIds = new ArrayList<>(updates.keySet());
+        try {
+            for (int from = 0; from < userIds.size(); from += WATCHER_QUERY_BATCH) {
+                List<UUID> batch = userIds.subList(from, Math.min(from + WATCHER_QUERY_BATCH, userIds.size()));
+                for (ChatContactRepository.ContactPair pair : contactRepository.findAcceptedWatchers(batch)) {
+                    if (isOnline(pair.getUserId())) {
+                        framesByWatcher.computeIfAbsent(pair.getUserId(), key -> new ArrayList<>())
+                                .add(new PresenceUpdate(pair.getContactId().toString(),
+                                        updates.get(pair.getContactId())));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Published state is already updated; contacts catch up through getContactPresence
+            log.warn("Could not load contacts for {} presence changes: {}", updates.size(), e.getMessage());
+            return;
+        }
+
+        framesByWatcher.forEach((watcherId, frame) -> {
+            try {
+                messagingTemplate.convertAndSendToUser(watcherId.toString(), "/queue/presence", frame);
+                framesSent.increment();
+            } catch (MessagingException e) {
+                log.warn("Error sending presence to {}: {}", watcherId, e.getMessage());
+            }
+        });
+    }
+
+    // One entry of a /queue/presence frame
+    public record PresenceUpdate(String userId, boolean online) {
+    }
+}
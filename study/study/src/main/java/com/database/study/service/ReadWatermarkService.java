@@ -0,0 +1,188 @@
+package com.database.study.service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.database.study.entity.ChatMessage;
+import com.database.study.entity.ReadWatermark;
+import com.database.study.repository.ChatMessageRepository;
+import com.database.study.repository.InsertIfAbsentRepository;
+import com.database.study.repository.ReadWatermarkRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Read state per user and conversation, kept as a watermark on the newest
+ * message read instead of a flag on every message.
+ *
+ * Marking a conversation or group as read is one conditional update of the
+ * watermark row, plus an insert-if-absent and a second update the first
+ * time, however many messages it covers. Unread counts are counted from the
+ * watermark on the (conversation_id | group_id, timestamp, id) indexes, and
+ * read receipts of direct messages are derived from the receiver's
+ * watermark. Conversations read before watermarks existed fall back to the
+ * per-message read flag until they are marked as read once.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReadWatermarkService {
+
+    static final String GROUP_KEY_PREFIX = "group_";
+
+    private static final String TABLE = "read_watermarks";
+    private static final List<String> COLUMNS = List.of("id", "user_id", "conversation_key", "last_read_timestamp",
+            "last_read_message_id", "updated_at");
+    private static final List<Class<?>> COLUMN_TYPES = List.of(String.class, UUID.class, String.class,
+            LocalDateTime.class, UUID.class, LocalDateTime.class);
+
+    private final ReadWatermarkRepository readWatermarkRepository;
+    private final ChatMessageRepository messageRepository;
+    private final InsertIfAbsentRepository insertIfAbsentRepository;
+
+    /**
+     * Conversation key of a group, the same value group messages carry as
+     * their conversation id
+     */
+    public static String groupKey(UUID groupId) {
+        return GROUP_KEY_PREFIX + groupId;
+    }
+
+    /**
+     * Mark everything up to the newest message of a direct conversation as read
+     */
+    @Transactional
+    public void markConversationRead(UUID userId, String conversationId) {
+        List<ChatMessage> newest = messageRepository
+                .findLatestByConversationId(conversationId, PageRequest.of(0, 1)).getContent();
+        if (!newest.isEmpty()) {
+            markRead(userId, conversationId, newest.get(0));
+        }
+    }
+
+    /**
+     * Mark everything up to the newest message of a group as read
+     */
+    @Transactional
+    public void markGroupRead(UUID userId, UUID groupId) {
+        List<ChatMessage> newest = messageRepository
+                .findLatestByGroupId(groupId, PageRequest.of(0, 1)).getContent();
+        if (!newest.isEmpty()) {
+            markRead(userId, groupKey(groupId), newest.get(0));
+        }
+    }
+
+    /**
+     * Move the watermark of a user to a message, if it is newer than the
+     * current one. Without a watermark row one is inserted at the message; a
+     * row inserted concurrently by another request is kept and moved forward
+     * instead.
+     */
+    @Transactional
+    public void markRead(UUID userId, String conversationKey, ChatMessage message) {
+        String id = userId + ":" + conversationKey;
+        LocalDateTime now = LocalDateTime.now();
+        if (readWatermarkRepository.advance(id, message.getTimestamp(), message.getId(), now) > 0) {
+            return;
+        }
+        insertIfAbsentRepository.insertIfAbsent(TABLE, COLUMNS, COLUMN_TYPES, List.<Object[]>of(new Object[] {
+                id, userId, conversationKey, message.getTimestamp(), message.getId(), now }));
+        readWatermarkRepository.advance(id, message.getTimestamp(), message.getId(), now);
+    }
+
+    /**
+     * Ids of the direct messages their receiver has read, by the receiver's
+     * watermark, with one lookup for all conversations of the messages
+     */
+    @Transactional(readOnly = true)
+    public Set<UUID> readByReceiver(Collection<ChatMessage> messages) {
+        Set<String> ids = new HashSet<>();
+        for (ChatMessage message : messages) {
+            if (message.getGroup() == null && message.getReceiver() != null) {
+                ids.add(message.getReceiver().getId() + ":" + message.getConversationId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        Map<String, ReadWatermark> watermarks = readWatermarkRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(ReadWatermark::getId, Function.identity()));
+        Set<UUID> read = new HashSet<>();
+        for (ChatMessage message : messages) {
+            if (message.getGroup() != null || message.getReceiver() == null) {
+                continue;
+            }
+            ReadWatermark watermark = watermarks.get(message.getReceiver().getId() + ":" + message.getConversationId());
+            if (watermark != null && !isAfter(message, watermark)) {
+                read.add(message.getId());
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Messages to a user in a direct conversation newer than their watermark
+     */
+    @Transactional(readOnly = true)
+    public long countUnreadInConversation(UUID userId, String conversationId) {
+        Optional<ReadWatermark> watermark = readWatermarkRepository.findById(userId + ":" + conversationId);
+        if (watermark.isEmpty()) {
+            return messageRepository.countUnreadByConversationId(conversationId, userId);
+        }
+        return messageRepository.countByConversationIdAfter(conversationId, userId,
+                watermark.get().getLastReadTimestamp(), watermark.get().getLastReadMessageId());
+    }
+
+    /**
+     * Messages from other members of a group newer than the user's watermark
+     */
+    @Transactional(readOnly = true)
+    public long countUnreadInGroup(UUID userId, UUID groupId) {
+        Optional<ReadWatermark> watermark = readWatermarkRepository.findById(userId + ":" + groupKey(groupId));
+        if (watermark.isEmpty()) {
+            return messageRepository.countUnreadGroupMessagesForUser(groupId, userId);
+        }
+        return messageRepository.countGroupMessagesAfter(groupId, userId,
+                watermark.get().getLastReadTimestamp(), watermark.get().getLastReadMessageId());
+    }
+
+    /**
+     * Unread counts of a user for many direct conversations and groups with
+     * one grouped query; keys without unread messages count zero
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Long> countUnread(UUID userId, Collection<String> conversationKeys) {
+        Map<String, Long> counts = new HashMap<>();
+        conversationKeys.forEach(conversationKey -> counts.put(conversationKey, 0L));
+        messageRepository.countUnreadByConversationKeys(userId, conversationKeys)
+                .forEach(count -> counts.put(count.getConversationId(), count.getUnreadCount()));
+        return counts;
+    }
+
+    // Same (timestamp, id) order as the queries; ids compare as unsigned bytes like the database does
+    private static boolean isAfter(ChatMessage message, ReadWatermark watermark) {
+        int byTimestamp = message.getTimestamp().compareTo(watermark.getLastReadTimestamp());
+        if (byTimestamp != 0) {
+            return byTimestamp > 0;
+        }
+        UUID id = message.getId();
+        UUID lastReadId = watermark.getLastReadMessageId();
+        int byId = Long.compareUnsigned(id.getMostSignificantBits(), lastReadId.getMostSignificantBits());
+        if (byId == 0) {
+            byId = Long.compareUnsigned(id.getLeastSignificantBits(), lastReadId.getLeastSignificantBits());
+        }
+        return byId > 0;
+    }
+}
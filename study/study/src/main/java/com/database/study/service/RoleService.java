@@ -10,6 +10,7 @@ import com.database.study.dto.response.RoleResponse;
 import com.database.study.mapper.RoleMapper;
 import com.database.study.repository.RoleRepository;
 import com.database.study.repository.PermissionRepository;
+import com.database.study.security.ScopeAuthorityCache;
 
 import lombok.extern.slf4j.Slf4j;
 import lombok.RequiredArgsConstructor;
@@ -24,12 +25,14 @@ public class RoleService {
   final RoleRepository roleRepository;
   final RoleMapper roleMapper;
   final PermissionRepository permissionRepository;
+  final ScopeAuthorityCache scopeAuthorityCache;
 
   public RoleResponse createRole(RoleRequest request) {
     var role = roleMapper.toRole(request);
     var permissions = permissionRepository.findByNameIn(request.getPermissions());
     role.setPermissions(new HashSet<>(permissions));
     role = roleRepository.save(role);
+    scopeAuthorityCache.invalidate();
     return roleMapper.toRoleResponse(role);
   }
 
@@ -43,5 +46,6 @@ public class RoleService {
     var role = roleRepository.findByName(roleName)
         .orElseThrow(() -> new RuntimeException("Role not found with name: " + roleName));
     roleRepository.deleteById(role.getId());
+    scopeAuthorityCache.invalidate();
   }
 }
\ No newline at end of file
@@ -1,23 +1,63 @@
 package com.database.study.service;
 
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.database.study.entity.User;
+import com.database.study.exception.AppException;
+import com.database.study.exception.ErrorCode;
 import com.database.study.repository.UserRepository;
 import com.database.study.repository.ActiveTokenRepository;
-
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Failed attempt tracking and login rate limiting, answered from memory.
+ *
+ * Failures are counted in sliding windows per username and per client IP, held
+ * in bounded caches that evict idle keys once the window has passed. Each IP
+ * also gets a token bucket (security.rate-limit.*) that every authentication
+ * attempt draws from. Reaching security.max-failed-attempts within the window
+ * locks the username at once in memory; the block flag, the attempt count and
+ * the token revocation are written to the database by a scheduled flush, so a
+ * burst of failures costs no database round trip per attempt.
+ *
+ * Blocked usernames are loaded from the database at startup and reloaded
+ * periodically, which also picks up lockouts from other nodes and accounts
+ * unblocked directly in the database. A lockout of a username with no account
+ * is only kept in a bounded in-memory cache until the window passes, so
+ * guessing usernames writes nothing and grows no unbounded set.
+ *
+ * The failure windows themselves are per node: behind a load balancer that
+ * spreads attempts over N nodes, a username can fail up to N times
+ * security.max-failed-attempts before every node has locked it.
+ */
 @Service
 @Slf4j
-public class SecurityMonitoringService {
+public class SecurityMonitoringService implements MeterBinder {
 
   public static final String AUTH_TYPE_LOGIN = "LOGIN";
   public static final String AUTH_TYPE_PASSWORD_RESET = "PASSWORD_RESET";
@@ -25,21 +65,117 @@ public class SecurityMonitoringService {
   public static final String AUTH_TYPE_TOTP = "TOTP";
   public static final String AUTH_TYPE_EMAIL_OTP = "EMAIL_OTP";
 
-  // In-memory cache of failed attempts to avoid DB queries for every attempt
-  private final Map<String, FailedAttemptsCounter> failedAttemptsCache = new ConcurrentHashMap<>();
+  // Resolution of the sliding windows
+  private static final int WINDOW_SLICES = 15;
 
   @Value("${security.max-failed-attempts:3}")
   private int maxFailedAttempts;
 
+  @Value("${security.login-limiter.window-minutes:15}")
+  private long windowMinutes;
+
+  @Value("${security.login-limiter.max-failures-per-ip:50}")
+  private int maxFailuresPerIp;
+
+  @Value("${security.login-limiter.max-tracked-keys:100000}")
+  private long maxTrackedKeys;
+
+  @Value("${security.rate-limit.enabled:true}")
+  private boolean rateLimitEnabled;
+
+  @Value("${security.rate-limit.max-requests-per-second:10}")
+  private int maxRequestsPerSecond;
+
+  @Value("${security.rate-limit.burst:20}")
+  private int rateLimitBurst;
+
   @Autowired
   private UserRepository userRepository;
 
   @Autowired
   private ActiveTokenRepository activeTokenRepository;
 
+  @Autowired
+  private SessionRegistryService sessionRegistry;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate transactionTemplate;
+
+  private Cache<String, SlidingWindowCounter> usernameFailures;
+  private Cache<String, SlidingWindowCounter> ipFailures;
+  private Cache<String, TokenBucket> ipBuckets;
+
+  private final Set<String> blockedUsernames = ConcurrentHashMap.newKeySet();
+
+  // Locked usernames without an account, never written to the database
+  private Cache<String, Boolean> unknownLockouts;
+
+  // username -> attempt count to persist with the block flag, 0 to clear both
+  private final Map<String, Integer> pendingLockouts = new ConcurrentHashMap<>();
+
+  private Counter rateLimitedCounter;
+
+  @PostConstruct
+  public void init() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    usernameFailures = Caffeine.newBuilder()
+        .maximumSize(maxTrackedKeys)
+        .expireAfterAccess(Duration.ofMinutes(windowMinutes))
+        .recordStats()
+        .build();
+    ipFailures = Caffeine.newBuilder()
+        .maximumSize(maxTrackedKeys)
+        .expireAfterAccess(Duration.ofMinutes(windowMinutes))
+        .recordStats()
+        .build();
+    unknownLockouts = Caffeine.newBuilder()
+        .maximumSize(maxTrackedKeys)
+        .expireAfterWrite(Duration.ofMinutes(windowMinutes))
+        .build();
+    ipBuckets = Caffeine.newBuilder()
+        .maximumSize(maxTrackedKeys)
+        .expireAfterAccess(Duration.ofMinutes(1))
+        .build();
+  }
+
+  @Override
+  public void bindTo(@NonNull MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, usernameFailures, "security.failures.username");
+    CaffeineCacheMetrics.monitor(registry, ipFailures, "security.failures.ip");
+    registry.gauge("security.blocked.accounts", blockedUsernames, Set::size);
+    registry.gauge("security.lockout.pending", pendingLockouts, Map::size);
+    rateLimitedCounter = Counter.builder("security.rate.limited")
+        .description("Authentication attempts rejected by the per-IP rate limit")
+        .register(registry);
+  }
+
+  /**
+   * Reject the request if its IP has used up its token bucket or has too many
+   * failed attempts within the window
+   *
+   * @throws AppException TOO_MANY_ATTEMPTS
+   */
+  public void checkRateLimit(HttpServletRequest request) {
+    if (!rateLimitEnabled || request == null) {
+      return;
+    }
+    String ipAddress = getClientIp(request);
+    boolean allowed = ipBuckets.get(ipAddress, k -> new TokenBucket(maxRequestsPerSecond, rateLimitBurst))
+        .tryAcquire(System.nanoTime());
+    if (!allowed || countFailures(ipFailures, ipAddress) >= maxFailuresPerIp) {
+      if (rateLimitedCounter != null) {
+        rateLimitedCounter.increment();
+      }
+      log.warn("Rate limited authentication attempt from IP: {}", ipAddress);
+      throw new AppException(ErrorCode.TOO_MANY_ATTEMPTS);
+    }
+  }
+
   /**
    * Track failed authentication attempt
-   * 
+   *
    * @param username           Username
    * @param email              Email address (can be null)
    * @param request            HTTP request
@@ -47,112 +183,77 @@ public class SecurityMonitoringService {
    *                           etc.)
    * @return true if user is now blocked, false otherwise
    */
-  @Transactional
   public boolean trackFailedAttempt(String username, String email, HttpServletRequest request,
       String authenticationType) {
 
     String ipAddress = getClientIp(request);
-    String cacheKey = generateCacheKey(username, email, ipAddress);
-
-    // Get or create counter from cache
-    FailedAttemptsCounter counter = failedAttemptsCache.computeIfAbsent(cacheKey,
-        k -> new FailedAttemptsCounter(username, email, ipAddress, authenticationType));
+    long now = System.currentTimeMillis();
+    ipFailures.get(ipAddress, k -> newWindow()).increment(now);
+    if (username == null || username.isEmpty()) {
+      return false;
+    }
 
-    // Increment attempt counter
-    int attempts = counter.incrementAndGet();
+    int attempts = usernameFailures.get(username, k -> newWindow()).increment(now);
     log.info("Failed {} attempt #{} for user: {}, IP: {}", authenticationType, attempts, username, ipAddress);
 
-    // Also update the user's timeTried in the database - but SKIP for TOTP
-    // authentication
-    // since it's already handled in AuthenticationService
-    boolean isTotpAuth = authenticationType.equals(AUTH_TYPE_TOTP);
-    User user = userRepository.findByUsername(username).orElse(null);
-    if (user != null) {
-      if (!isTotpAuth) {
-        // Only increment the counter for non-TOTP authentication
-        int oldCount = user.getTimeTried();
-        user.setTimeTried(oldCount + 1);
-        log.warn("DEBUG: SecurityMonitoringService - Incrementing timeTried from {} to {} for user {}",
-            oldCount, user.getTimeTried(), username);
-      } else {
-        log.warn("DEBUG: SecurityMonitoringService - SKIPPING timeTried increment for TOTP auth. Current value: {}",
-            user.getTimeTried());
-      }
-
-      // If max attempts reached, block the user
-      if (user.getTimeTried() >= maxFailedAttempts) {
-        log.warn("User {} blocked due to too many failed attempts - Account locked for security reasons", username);
-        user.setBlock(true);
-
-        // Revoke all active tokens for this user
+    // TOTP and email OTP callers keep timeTried and the block flag themselves
+    // and report lockouts through markBlocked
+    if (authenticationType.equals(AUTH_TYPE_TOTP)) {
+      if (isBlocked(username, email, null)) {
         revokeActiveTokens(username);
+        return true;
       }
-
-      userRepository.save(user);
-
-      // Debug log the final saved value
-      User savedUser = userRepository.findByUsername(username).orElse(null);
-      if (savedUser != null) {
-        log.warn("DEBUG: SecurityMonitoringService - After save, timeTried in DB is now: {} for user {}",
-            savedUser.getTimeTried(), username);
-      }
-
-      return user.isBlock();
+      return false;
     }
 
-    // If attempts >= max and user exists in DB, block them
     if (attempts >= maxFailedAttempts) {
-      log.warn("Account with username {} may be under attack. Max failed attempts reached.", username);
-      // Log active cache entries for debugging
-      logActiveCacheEntries(username);
+      if (unknownLockouts.getIfPresent(username) != null) {
+        return true;
+      }
+      if (blockedUsernames.add(username)) {
+        log.warn("User {} blocked due to too many failed attempts - Account locked for security reasons", username);
+        // Block flag and token revocation are written on the next flush
+        pendingLockouts.put(username, attempts);
+      }
       return true;
     }
-
     return false;
   }
 
-  private void logActiveCacheEntries(String username) {
-    // Debug logging to show all cache entries for this user
-    failedAttemptsCache.forEach((key, value) -> {
-      if (key.contains(username)) {
-        log.debug("Active cache entry: key={}, attempts={}, type={}",
-            key, value.getAttempts(), value.getAuthenticationType());
-      }
-    });
-  }
-
   /**
-   * Reset failed attempts counter on successful authentication
+   * Reset failed attempts counter on successful authentication. A database
+   * write is queued only when there was something to reset, so an ordinary
+   * login costs no write.
    */
-  @Transactional
   public void resetFailedAttempts(String username, String email, HttpServletRequest request) {
-    String ipAddress = getClientIp(request);
-    String cacheKey = generateCacheKey(username, email, ipAddress);
-    failedAttemptsCache.remove(cacheKey);
-    log.info("Reset failed attempts counter for user: {}", username);
-
-    // Also reset the user's timeTried in the database
-    User user = userRepository.findByUsername(username).orElse(null);
-    if (user != null) {
-      user.setTimeTried(0);
-      user.setBlock(false);
-      userRepository.save(user);
+    if (username == null || username.isEmpty()) {
+      return;
+    }
+    boolean hadFailures = usernameFailures.asMap().remove(username) != null;
+    boolean wasBlocked = blockedUsernames.remove(username);
+    unknownLockouts.invalidate(username);
+    if (hadFailures || wasBlocked) {
+      pendingLockouts.put(username, 0);
+      log.info("Reset failed attempts counter for user: {}", username);
     }
   }
 
   /**
-   * Check if a user is blocked
+   * Record a lockout the caller has already written to the database
    */
-  public boolean isBlocked(String username, String email, String ipAddress) {
-    // Check the user's isBlock status in the database
-    User user = userRepository.findByUsername(username)
-        .orElseGet(() -> userRepository.findByEmail(email).orElse(null));
+  public void markBlocked(String username) {
+    blockedUsernames.add(username);
+  }
 
-    if (user != null) {
-      return user.isBlock();
+  /**
+   * Check if a user is blocked, or the IP has too many failed attempts
+   */
+  public boolean isBlocked(String username, String email, String ipAddress) {
+    if (username != null && (blockedUsernames.contains(username)
+        || unknownLockouts.getIfPresent(username) != null)) {
+      return true;
     }
-
-    return false;
+    return ipAddress != null && countFailures(ipFailures, ipAddress) >= maxFailuresPerIp;
   }
 
   /**
@@ -162,33 +263,75 @@ public class SecurityMonitoringService {
   public void revokeActiveTokens(String username) {
     log.info("Revoking all active tokens for user: {}", username);
     activeTokenRepository.deleteByUsername(username);
+    sessionRegistry.evict(username);
   }
 
   /**
-   * Generate a unique cache key for tracking attempts
+   * Write queued lockouts and resets, each in its own transaction so a failing
+   * row does not hold back the others. A lockout that matches no account moves
+   * to the in-memory cache of unknown usernames instead.
    */
-  private String generateCacheKey(String username, String email, String ipAddress) {
-    StringBuilder keyBuilder = new StringBuilder();
-
-    if (username != null && !username.isEmpty()) {
-      keyBuilder.append("u:").append(username);
-    }
-
-    if (email != null && !email.isEmpty()) {
-      if (keyBuilder.length() > 0) {
-        keyBuilder.append("_");
+  @Scheduled(fixedDelayString = "${security.login-limiter.flush-interval-ms:500}")
+  public void flushLockouts() {
+    pendingLockouts.forEach((username, attempts) -> {
+      try {
+        boolean known = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+          if (attempts == 0) {
+            userRepository.resetFailedAttemptsByUsername(username);
+            return true;
+          }
+          if (userRepository.lockByUsername(username, attempts) == 0) {
+            return false;
+          }
+          activeTokenRepository.deleteByUsername(username);
+          sessionRegistry.evict(username);
+          return true;
+        }));
+        if (!known) {
+          unknownLockouts.put(username, Boolean.TRUE);
+          blockedUsernames.remove(username);
+        }
+        pendingLockouts.remove(username, attempts);
+      } catch (RuntimeException e) {
+        log.error("Error persisting lockout state for user {}, will retry: {}", username, e.getMessage(), e);
       }
-      keyBuilder.append("e:").append(email);
-    }
+    });
+  }
 
-    if (ipAddress != null && !ipAddress.isEmpty()) {
-      if (keyBuilder.length() > 0) {
-        keyBuilder.append("_");
+  /**
+   * Reload blocked usernames from the database, keeping queued changes that
+   * have not been written yet
+   */
+  @Scheduled(fixedDelayString = "${security.login-limiter.resync-interval-ms:60000}")
+  public void reloadBlockedUsernames() {
+    Set<String> blocked = new HashSet<>(userRepository.findBlockedUsernames());
+    pendingLockouts.forEach((username, attempts) -> {
+      if (attempts > 0) {
+        blocked.add(username);
+      } else {
+        blocked.remove(username);
       }
-      keyBuilder.append("ip:").append(ipAddress);
+    });
+    blockedUsernames.retainAll(blocked);
+    blockedUsernames.addAll(blocked);
+    log.debug("Loaded {} blocked usernames", blocked.size());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flushLockouts();
+    if (!pendingLockouts.isEmpty()) {
+      log.warn("{} lockout changes could not be written before shutdown", pendingLockouts.size());
     }
+  }
 
-    return keyBuilder.toString();
+  private SlidingWindowCounter newWindow() {
+    return new SlidingWindowCounter(TimeUnit.MINUTES.toMillis(windowMinutes), WINDOW_SLICES);
+  }
+
+  private static int countFailures(Cache<String, SlidingWindowCounter> failures, String key) {
+    SlidingWindowCounter counter = failures.getIfPresent(key);
+    return counter == null ? 0 : counter.sum(System.currentTimeMillis());
   }
 
   /**
@@ -216,59 +359,75 @@ public class SecurityMonitoringService {
   }
 
   /**
-   * Class to track failed authentication attempts
+   * Event count over a sliding window split into slices. Each slice is one
+   * long holding the slice number in the high bits and its count in the low
+   * bits, so rolling a slice over and counting into it is a single CAS.
    */
-  private static class FailedAttemptsCounter {
-    private final String username;
-    private final String email;
-    private final String ipAddress;
-    private final String authenticationType;
-    private int attempts;
-
-    public FailedAttemptsCounter(String username, String email, String ipAddress, String authenticationType) {
-      this.username = username;
-      this.email = email;
-      this.ipAddress = ipAddress;
-      this.authenticationType = authenticationType;
-      this.attempts = 0;
-    }
+  static final class SlidingWindowCounter {
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
 
-    public int incrementAndGet() {
-      return ++attempts;
-    }
-
-    @SuppressWarnings("unused")
-    public String getUsername() {
-      return username;
-    }
+    private final long sliceMillis;
+    private final AtomicLongArray slices;
 
-    @SuppressWarnings("unused")
-    public String getEmail() {
-      return email;
+    SlidingWindowCounter(long windowMillis, int sliceCount) {
+      this.sliceMillis = Math.max(1, windowMillis / sliceCount);
+      this.slices = new AtomicLongArray(sliceCount);
     }
 
-    @SuppressWarnings("unused")
-    public String getIpAddress() {
-      return ipAddress;
+    int increment(long nowMillis) {
+      long slice = nowMillis / sliceMillis;
+      int index = (int) (slice % slices.length());
+      while (true) {
+        long current = slices.get(index);
+        long count = (current >>> COUNT_BITS) == slice ? current & COUNT_MASK : 0;
+        long next = (slice << COUNT_BITS) | Math.min(count + 1, COUNT_MASK);
+        if (slices.compareAndSet(index, current, next)) {
+          break;
+        }
+      }
+      return sum(nowMillis);
     }
 
-    public String getAuthenticationType() {
-      return authenticationType;
+    int sum(long nowMillis) {
+      long slice = nowMillis / sliceMillis;
+      int total = 0;
+      for (int i = 0; i < slices.length(); i++) {
+        long value = slices.get(i);
+        if (slice - (value >>> COUNT_BITS) < slices.length()) {
+          total += (int) (value & COUNT_MASK);
+        }
+      }
+      return total;
     }
+  }
 
-    public int getAttempts() {
-      return attempts;
+  /**
+   * Token bucket kept as the time at which it will be full again, so taking a
+   * token is a single CAS
+   */
+  static final class TokenBucket {
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    TokenBucket(int tokensPerSecond, int capacity) {
+      this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, tokensPerSecond);
+      this.capacityNanos = intervalNanos * Math.max(1, capacity);
+      this.fullAt = new AtomicLong(System.nanoTime());
     }
 
-    @Override
-    public String toString() {
-      return "FailedAttemptsCounter{" +
-          "username='" + username + '\'' +
-          ", email='" + email + '\'' +
-          ", ipAddress='" + ipAddress + '\'' +
-          ", attempts=" + attempts +
-          ", type=" + authenticationType +
-          '}';
+    boolean tryAcquire(long nowNanos) {
+      while (true) {
+        long current = fullAt.get();
+        long next = Math.max(current - nowNanos, 0) + nowNanos + intervalNanos;
+        if (next - nowNanos > capacityNanos) {
+          return false;
+        }
+        if (fullAt.compareAndSet(current, next)) {
+          return true;
+        }
+      }
     }
   }
 
@@ -277,40 +436,17 @@ public class SecurityMonitoringService {
   }
 
   /**
-   * Get current failed attempts count
+   * Get current failed attempts count within the window
    */
   public int getCurrentFailedAttempts(String username, String email, String ipAddress, String authenticationType) {
-    String cacheKey = generateCacheKey(username, email, ipAddress);
-    FailedAttemptsCounter counter = failedAttemptsCache.get(cacheKey);
-
-    if (counter != null && counter.getAuthenticationType().equals(authenticationType)) {
-      return counter.getAttempts();
-    }
-
-    // If not in cache, check the database
-    User user = userRepository.findByUsername(username)
-        .orElseGet(() -> userRepository.findByEmail(email).orElse(null));
-
-    if (user != null) {
-      return user.getTimeTried();
-    }
-
-    return 0;
+    return getCurrentFailedAttempts(username, email, ipAddress);
   }
 
   /**
    * Get current failed attempts count regardless of authentication type
    */
   public int getCurrentFailedAttempts(String username, String email, String ipAddress) {
-    // Check the database first
-    User user = userRepository.findByUsername(username)
-        .orElseGet(() -> userRepository.findByEmail(email).orElse(null));
-
-    if (user != null) {
-      return user.getTimeTried();
-    }
-
-    return 0;
+    return username == null ? 0 : countFailures(usernameFailures, username);
   }
 
   /**
@@ -331,4 +467,4 @@ public class SecurityMonitoringService {
     int remaining = maxFailedAttempts - currentAttempts;
     return Math.max(0, remaining);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package com.database.study.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Channel propagating session invalidations between application nodes, so that
+ * a logout or revocation on one node drops the cached session on every other
+ * node.
+ */
+public interface SessionInvalidationChannel {
+
+  /**
+   * Publish that the session of a user changed or was revoked. Delivery to
+   * other nodes happens only once the current transaction commits.
+   *
+   * @param username User whose cached session must be dropped
+   */
+  void publish(String username);
+
+  /**
+   * Register a listener for invalidations published by other nodes.
+   *
+   * @param listener Receives the username of each invalidated session
+   */
+  void subscribe(Consumer<String> listener);
+
+  /**
+   * Identifier of this node, attached to every published invalidation
+   */
+  String getNodeId();
+}
@@ -0,0 +1,347 @@
+package com.database.study.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.database.study.entity.ActiveToken;
+import com.database.study.repository.ActiveTokenRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory registry of active sessions, mirroring the active_tokens table.
+ *
+ * Only a SHA-256 digest of the encrypted access and refresh tokens is kept per
+ * username, together with their expiry, so request authentication can check a
+ * token without loading the LONGTEXT columns. The registry is warmed from the
+ * database at startup and written through by login, refresh and logout.
+ * Registrations are applied after the surrounding transaction commits;
+ * evictions are applied immediately and again after commit.
+ *
+ * The in-memory entry is trusted. A miss or a digest mismatch is confirmed
+ * against the database at most once per username every
+ * security.session-registry.reload-interval-ms, or right after an
+ * invalidation of that username, so forged or stale tokens cannot turn into a
+ * database query each. A reload only replaces the entry if no registration or
+ * eviction of the username happened while it was reading.
+ *
+ * Revocations and token rotations are also published on the
+ * {@link SessionInvalidationChannel} so other nodes drop their copy and reload
+ * it from the database on next use. New sessions are not: another node that
+ * misses one confirms it against the database like any other miss.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SessionRegistryService {
+
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  });
+
+  private final ActiveTokenRepository activeTokenRepository;
+  private final SessionInvalidationChannel invalidationChannel;
+  private final ActiveTokenWriteBehindService activeTokenWriteBehind;
+
+  // Changes of the usernames hashing to each stripe, so a reload can tell it raced with one
+  private static final int CHANGE_STRIPES = 256;
+
+  private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+  private final AtomicLongArray changes = new AtomicLongArray(CHANGE_STRIPES);
+
+  // username -> System.nanoTime() of its last reload
+  private final Map<String, Long> reloadedAt = new ConcurrentHashMap<>();
+
+  @Value("${security.session-registry.reload-interval-ms:1000}")
+  private long reloadIntervalMs = 1000;
+
+  @PostConstruct
+  public void subscribe() {
+    invalidationChannel.subscribe(username -> {
+      remove(username);
+      reloadedAt.remove(username);
+      log.debug("Session of {} invalidated by another node", username);
+    });
+  }
+
+  /**
+   * Load all sessions whose refresh token is still valid
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    List<ActiveToken> tokens = activeTokenRepository.findByExpiryRefreshTimeAfter(new Date());
+    tokens.forEach(token -> sessions.merge(token.getUsername(), Session.of(token),
+        (current, loaded) -> loaded.refreshExpiry > current.refreshExpiry ? loaded : current));
+    log.info("Session registry warmed with {} sessions", sessions.size());
+  }
+
+  /**
+   * Register the session of a saved token once the transaction commits
+   */
+  public void register(ActiveToken token) {
+    if (token == null || token.getUsername() == null) {
+      return;
+    }
+    Session session = Session.of(token);
+    afterCommit(() -> put(token.getUsername(), session));
+  }
+
+  /**
+   * Register the session of a token whose access token was rotated, and tell
+   * other nodes to drop the previous one
+   */
+  public void replace(ActiveToken token) {
+    if (token == null || token.getUsername() == null) {
+      return;
+    }
+    register(token);
+    invalidationChannel.publish(token.getUsername());
+  }
+
+  /**
+   * Replace the access token of a session whose refresh token is unchanged
+   */
+  public void updateAccessToken(Session session, String encryptedToken, Date expiryTime) {
+    Session updated = new Session(session.id, session.username, digest(encryptedToken),
+        session.refreshDigest, expiryTime.getTime(), session.refreshExpiry);
+    afterCommit(() -> put(session.username, updated));
+    invalidationChannel.publish(session.username);
+  }
+
+  /**
+   * Drop the session of a user
+   */
+  public void evict(String username) {
+    if (username == null) {
+      return;
+    }
+    remove(username);
+    afterCommit(() -> remove(username));
+    invalidationChannel.publish(username);
+  }
+
+  /**
+   * Drop the session of a deleted token, unless the user already holds a newer
+   * one
+   */
+  public void evict(ActiveToken token) {
+    if (token == null || token.getUsername() == null) {
+      return;
+    }
+    String username = token.getUsername();
+    String id = token.getId();
+    removeIf(username, id);
+    afterCommit(() -> removeIf(username, id));
+    invalidationChannel.publish(username);
+  }
+
+  /**
+   * Drop every session whose access or refresh token has expired, mirroring
+   * the scheduled database cleanup
+   */
+  public int evictExpired() {
+    long now = System.currentTimeMillis();
+    int before = sessions.size();
+    sessions.values().removeIf(session -> session.accessExpiry < now || session.refreshExpiry < now);
+    long reloadedBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(reloadIntervalMs);
+    reloadedAt.values().removeIf(at -> at - reloadedBefore < 0);
+    return before - sessions.size();
+  }
+
+  /**
+   * Find the session of a user, loading it from the database on a miss
+   */
+  public Session find(String username) {
+    Session session = sessions.get(username);
+    return session != null || !mayReload(username) ? session : load(username);
+  }
+
+  /**
+   * Find the session of a user holding the given encrypted access token
+   *
+   * @return the session, or null if the token is not the active one
+   */
+  public Session findByAccessToken(String username, String encryptedToken) {
+    byte[] tokenDigest = digest(encryptedToken);
+    Session session = sessions.get(username);
+    if (session != null && MessageDigest.isEqual(session.accessDigest, tokenDigest)) {
+      return session;
+    }
+    if (!mayReload(username)) {
+      return null;
+    }
+    session = load(username);
+    return session != null && MessageDigest.isEqual(session.accessDigest, tokenDigest) ? session : null;
+  }
+
+  /**
+   * Find the session of a user holding the given encrypted refresh token
+   *
+   * @return the session, or null if the token is not the active one
+   */
+  public Session findByRefreshToken(String username, String encryptedRefreshToken) {
+    byte[] tokenDigest = digest(encryptedRefreshToken);
+    Session session = sessions.get(username);
+    if (session != null && MessageDigest.isEqual(session.refreshDigest, tokenDigest)) {
+      return session;
+    }
+    if (!mayReload(username)) {
+      return null;
+    }
+    session = load(username);
+    return session != null && MessageDigest.isEqual(session.refreshDigest, tokenDigest) ? session : null;
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  // Whether the database may be asked about this username now, at most once per reload interval
+  private boolean mayReload(String username) {
+    if (username == null) {
+      return false;
+    }
+    long now = System.nanoTime();
+    Long last = reloadedAt.get(username);
+    if (last == null) {
+      return reloadedAt.putIfAbsent(username, now) == null;
+    }
+    return now - last >= TimeUnit.MILLISECONDS.toNanos(reloadIntervalMs) && reloadedAt.replace(username, last, now);
+  }
+
+  private Session load(String username) {
+    long seen = changes.get(stripe(username));
+    ActiveToken token = activeTokenRepository.findFirstByUsername(username);
+    Session session = null;
+    if (token != null) {
+      session = Session.of(token);
+      // An access token rotation may still be queued for this row
+      ActiveTokenWriteBehindService.PendingAccessToken pending = activeTokenWriteBehind.getPending(token.getId());
+      if (pending != null) {
+        session = new Session(session.id, session.username, digest(pending.getToken()), session.refreshDigest,
+            pending.getExpiryTime().getTime(), session.refreshExpiry);
+      }
+    }
+    Session loaded = session;
+    // Keep a registration or eviction applied while the row was being read, it is newer
+    sessions.compute(username, (k, current) -> changes.get(stripe(k)) == seen ? loaded : current);
+    return loaded;
+  }
+
+  private void put(String username, Session session) {
+    sessions.compute(username, (k, current) -> {
+      changes.incrementAndGet(stripe(k));
+      return session;
+    });
+  }
+
+  private void remove(String username) {
+    sessions.compute(username, (k, current) -> {
+      changes.incrementAndGet(stripe(k));
+      return null;
+    });
+  }
+
+  private void removeIf(String username, String id) {
+    sessions.computeIfPresent(username, (k, current) -> {
+      if (!current.id.equals(id)) {
+        return current;
+      }
+      changes.incrementAndGet(stripe(k));
+      return null;
+    });
+  }
+
+  private static int stripe(String username) {
+    return Math.floorMod(username.hashCode(), CHANGE_STRIPES);
+  }
+
+  private void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+
+  static byte[] digest(String value) {
+    if (value == null) {
+      return new byte[0];
+    }
+    return SHA_256.get().digest(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Immutable view of an active session
+   */
+  public static final class Session {
+    private final String id;
+    private final String username;
+    private final byte[] accessDigest;
+    private final byte[] refreshDigest;
+    private final long accessExpiry;
+    private final long refreshExpiry;
+
+    private Session(String id, String username, byte[] accessDigest, byte[] refreshDigest,
+        long accessExpiry, long refreshExpiry) {
+      this.id = id;
+      this.username = username;
+      this.accessDigest = accessDigest;
+      this.refreshDigest = refreshDigest;
+      this.accessExpiry = accessExpiry;
+      this.refreshExpiry = refreshExpiry;
+    }
+
+    static Session of(ActiveToken token) {
+      return new Session(token.getId(), token.getUsername(),
+          digest(token.getToken()), digest(token.getRefreshToken()),
+          token.getExpiryTime() != null ? token.getExpiryTime().getTime() : 0L,
+          token.getExpiryRefreshTime() != null ? token.getExpiryRefreshTime().getTime() : 0L);
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    byte[] getAccessDigest() {
+      return accessDigest;
+    }
+
+    public boolean isAccessTokenExpired() {
+      return accessExpiry < System.currentTimeMillis();
+    }
+
+    public boolean isRefreshTokenExpired() {
+      return refreshExpiry < System.currentTimeMillis();
+    }
+  }
+}
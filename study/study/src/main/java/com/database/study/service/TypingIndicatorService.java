@@ -0,0 +1,166 @@
+package com.database.study.service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Relays typing indicators with at most one frame per (sender, receiver)
+ * pair and window (chat.typing.window-ms).
+ *
+ * A change between typing and not typing inside the window is held back and
+ * sent when the window ends, and only if the state still differs from what
+ * the receiver last got, so a burst of keystrokes becomes one "typing" and
+ * one "stopped" frame. While typing goes on, "typing" is repeated once per
+ * window so receivers can expire stale indicators. Senders are resolved
+ * through the user cache of EphemeralMessageService and receivers are only
+ * parsed, so indicators do not read the database.
+ */
+@Slf4j
+@Service
+public class TypingIndicatorService implements MeterBinder {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final EphemeralMessageService ephemeralMessageService;
+
+    @Value("${chat.typing.window-ms:1000}")
+    private long windowMs;
+
+    @Value("${chat.typing.max-tracked-pairs:100000}")
+    private long maxTrackedPairs;
+
+    private Cache<String, PairState> pairs;
+    private ScheduledExecutorService scheduler;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+
+    public TypingIndicatorService(SimpMessagingTemplate messagingTemplate,
+            EphemeralMessageService ephemeralMessageService) {
+        this.messagingTemplate = messagingTemplate;
+        this.ephemeralMessageService = ephemeralMessageService;
+    }
+
+    @PostConstruct
+    public void init() {
+        pairs = Caffeine.newBuilder()
+                .maximumSize(maxTrackedPairs)
+                .expireAfterAccess(Duration.ofMillis(Math.max(windowMs * 10, 60_000)))
+                .build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("typing-flush-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("chat.typing.received", received, LongAdder::doubleValue)
+                .description("Typing indicator frames received from clients")
+                .register(registry);
+        FunctionCounter.builder("chat.typing.sent", sent, LongAdder::doubleValue)
+                .description("Typing indicator frames relayed to receivers after coalescing")
+                .register(registry);
+    }
+
+    /**
+     * Record that a user started or stopped typing to another user
+     *
+     * @param typing false when the user stopped; null, as sent by clients that
+     *               only send the receiver, means typing
+     */
+    public void typing(String username, String receiverId, Boolean typing) {
+        update(username, receiverId, !Boolean.FALSE.equals(typing));
+    }
+
+    private void update(String username, String receiverId, boolean typing) {
+        received.increment();
+        UUID receiver = UUID.fromString(receiverId);
+        UUID sender = ephemeralMessageService.findUserId(username);
+        PairState state = pairs.get(sender + ":" + receiver, key -> new PairState(sender, receiver));
+        long now = System.currentTimeMillis();
+        boolean sendNow;
+        synchronized (state) {
+            state.wanted = typing;
+            long nextAllowed = state.lastSentAt + windowMs;
+            boolean changed = state.lastSentAt == 0 || state.lastSent != typing;
+            if (now >= nextAllowed && (changed || typing)) {
+                state.lastSent = typing;
+                state.lastSentAt = now;
+                sendNow = true;
+            } else {
+                sendNow = false;
+                if (changed && !state.flushScheduled) {
+                    state.flushScheduled = true;
+                    scheduler.schedule(() -> flush(state), nextAllowed - now, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (sendNow) {
+            send(state.sender, state.receiver, typing);
+        }
+    }
+
+    private void flush(PairState state) {
+        boolean typing;
+        synchronized (state) {
+            state.flushScheduled = false;
+            if (state.wanted == state.lastSent) {
+                return;
+            }
+            typing = state.wanted;
+            state.lastSent = typing;
+            state.lastSentAt = System.currentTimeMillis();
+        }
+        send(state.sender, state.receiver, typing);
+    }
+
+    private void send(UUID sender, UUID receiver, boolean typing) {
+        try {
+            messagingTemplate.convertAndSendToUser(receiver.toString(), "/queue/typing",
+                    new TypingEvent(sender.toString(), receiver.toString(), typing));
+            sent.increment();
+        } catch (MessagingException e) {
+            log.warn("Error sending typing indicator to {}: {}", receiver, e.getMessage());
+        }
+    }
+
+    // Payload of /queue/typing
+    public record TypingEvent(String senderId, String receiverId, boolean typing) {
+    }
+
+    private static final class PairState {
+        final UUID sender;
+        final UUID receiver;
+        boolean wanted;
+        boolean lastSent;
+        long lastSentAt;
+        boolean flushScheduled;
+
+        PairState(UUID sender, UUID receiver) {
+            this.sender = sender;
+            this.receiver = receiver;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.database.study.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongUnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.database.study.repository.InsertIfAbsentRepository;
+import com.database.study.repository.UnreadCounterRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Unread message counts per user and conversation, kept in the unread_counters
+ * table instead of being counted on every contact or group list.
+ *
+ * Sending a persistent message increments the counters of its recipients in
+ * the sender's transaction; marking a conversation or group as read resets
+ * the reader's counter. All counters of a user are loaded with one query and
+ * cached per user, and the cache follows committed increments and resets.
+ * Other nodes see them once their cached entry expires
+ * (chat.unread-counters.ttl-seconds).
+ *
+ * A counter that does not exist yet is seeded from the read watermark the
+ * first time it is read or incremented. All counters missing from a read are
+ * counted with one grouped query and stored with one insert-if-absent, in the
+ * caller's transaction or, when that is read-only, in a new one. Keys without
+ * messages are stored with a zero count as well, so later loads find them
+ * instead of counting them again. Deleting a single unread message does not
+ * decrement the counter, and a counter seeded concurrently with a send may
+ * miss that message; both are corrected the next time the conversation is
+ * read.
+ */
+@Service
+public class UnreadCounterService implements MeterBinder {
+
+    private static final String TABLE = "unread_counters";
+    private static final List<String> COLUMNS = List.of("id", "user_id", "conversation_key", "unread_count",
+            "updated_at");
+    private static final List<Class<?>> COLUMN_TYPES = List.of(String.class, UUID.class, String.class, Long.class,
+            LocalDateTime.class);
+
+    private final UnreadCounterRepository unreadCounterRepository;
+    private final ReadWatermarkService readWatermarkService;
+    private final InsertIfAbsentRepository insertIfAbsentRepository;
+    private final TransactionTemplate writableTransaction;
+
+    @Value("${chat.unread-counters.max-users:10000}")
+    private long maxCachedUsers;
+
+    @Value("${chat.unread-counters.ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    // user id -> conversation key -> unread count
+    private Cache<UUID, Map<String, Long>> counters;
+
+    public UnreadCounterService(UnreadCounterRepository unreadCounterRepository,
+            ReadWatermarkService readWatermarkService, InsertIfAbsentRepository insertIfAbsentRepository,
+            PlatformTransactionManager transactionManager) {
+        this.unreadCounterRepository = unreadCounterRepository;
+        this.readWatermarkService = readWatermarkService;
+        this.insertIfAbsentRepository = insertIfAbsentRepository;
+        this.writableTransaction = new TransactionTemplate(transactionManager);
+        this.writableTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        counters = Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, counters, "chat.unread.counters");
+    }
+
+    /**
+     * Unread counts of a user for a set of conversation keys, read from one
+     * query over all counters of the user
+     */
+    @Transactional
+    public Map<String, Long> getUnreadCounts(UUID userId, Collection<String> conversationKeys) {
+        Map<String, Long> cached = counters.get(userId, this::load);
+        Set<String> missing = new HashSet<>(conversationKeys);
+        missing.removeAll(cached.keySet());
+        if (!missing.isEmpty()) {
+            // Inserts fail in a read-only transaction, so seed in a writable one
+            Map<String, Long> seeded = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                    ? writableTransaction.execute(status -> seed(userId, missing))
+                    : seed(userId, missing);
+            seeded.forEach(cached::putIfAbsent);
+        }
+        Map<String, Long> result = new LinkedHashMap<>();
+        conversationKeys.forEach(conversationKey -> result.put(conversationKey, cached.get(conversationKey)));
+        return result;
+    }
+
+    @Transactional
+    public long getUnreadCount(UUID userId, String conversationKey) {
+        return getUnreadCounts(userId, Set.of(conversationKey)).get(conversationKey);
+    }
+
+    /**
+     * Count one new message for each recipient, in the caller's transaction
+     * and after the message was saved
+     */
+    @Transactional
+    public void increment(String conversationKey, Collection<UUID> recipientIds) {
+        if (recipientIds.isEmpty()) {
+            return;
+        }
+        Map<String, UUID> ids = new HashMap<>();
+        recipientIds.forEach(userId -> ids.put(counterId(userId, conversationKey), userId));
+        LocalDateTime now = LocalDateTime.now();
+
+        // Missing counters are seeded from the watermark, which already
+        // counts the saved message, so only existing ones are incremented
+        Set<String> existing = new HashSet<>(unreadCounterRepository.findExistingIds(ids.keySet()));
+        List<Object[]> seeds = new ArrayList<>();
+        ids.forEach((id, userId) -> {
+            if (!existing.contains(id)) {
+                seeds.add(row(userId, conversationKey, countFromWatermark(userId, conversationKey), now));
+            }
+        });
+        if (!seeds.isEmpty()) {
+            insertIfAbsentRepository.insertIfAbsent(TABLE, COLUMNS, COLUMN_TYPES, seeds);
+        }
+        if (!existing.isEmpty()) {
+            unreadCounterRepository.incrementAll(existing, now);
+        }
+
+        afterCommit(() -> recipientIds.forEach(userId -> adjustCached(userId, conversationKey, count -> count + 1)));
+    }
+
+    /**
+     * Set the counter of a user to zero after the conversation was read
+     */
+    @Transactional
+    public void reset(UUID userId, String conversationKey) {
+        unreadCounterRepository.reset(counterId(userId, conversationKey), LocalDateTime.now());
+        afterCommit(() -> counters.asMap().computeIfPresent(userId, (key, cached) -> {
+            cached.put(conversationKey, 0L);
+            return cached;
+        }));
+    }
+
+    private Map<String, Long> seed(UUID userId, Set<String> conversationKeys) {
+        Map<String, Long> counts = readWatermarkService.countUnread(userId, conversationKeys);
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> seeds = new ArrayList<>();
+        counts.forEach((conversationKey, count) -> seeds.add(row(userId, conversationKey, count, now)));
+        insertIfAbsentRepository.insertIfAbsent(TABLE, COLUMNS, COLUMN_TYPES, seeds);
+        return counts;
+    }
+
+    private Map<String, Long> load(UUID userId) {
+        Map<String, Long> loaded = new ConcurrentHashMap<>();
+        unreadCounterRepository.findByUserId(userId)
+                .forEach(counter -> loaded.put(counter.getConversationKey(), counter.getUnreadCount()));
+        return loaded;
+    }
+
+    private static Object[] row(UUID userId, String conversationKey, long count, LocalDateTime now) {
+        return new Object[] { counterId(userId, conversationKey), userId, conversationKey, count, now };
+    }
+
+    private long countFromWatermark(UUID userId, String conversationKey) {
+        if (conversationKey.startsWith(ReadWatermarkService.GROUP_KEY_PREFIX)) {
+            UUID groupId = UUID.fromString(conversationKey.substring(ReadWatermarkService.GROUP_KEY_PREFIX.length()));
+            return readWatermarkService.countUnreadInGroup(userId, groupId);
+        }
+        return readWatermarkService.countUnreadInConversation(userId, conversationKey);
+    }
+
+    private void adjustCached(UUID userId, String conversationKey, LongUnaryOperator update) {
+        counters.asMap().computeIfPresent(userId, (key, cached) -> {
+            cached.computeIfPresent(conversationKey, (k, count) -> update.applyAsLong(count));
+            return cached;
+        });
+    }
+
+    private static String counterId(UUID userId, String conversationKey) {
+        return userId + ":" + conversationKey;
+    }
+
+    // Only apply to the cache what the caller actually committed
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -53,6 +53,7 @@ public class UserService {
   KanbanBoardRepository kanbanBoardRepository;
   EmailVerificationTokenRepository emailVerificationTokenRepository;
   ActiveTokenRepository invalidatedTokenRepository;
+  SessionRegistryService sessionRegistry;
   TotpService totpService;
   // TotpSecretRepository totpSecretRepository;
   ChatContactRepository chatContactRepository;
@@ -68,6 +69,7 @@ public class UserService {
       KanbanBoardRepository kanbanBoardRepository,
       EmailVerificationTokenRepository emailVerificationTokenRepository,
       ActiveTokenRepository invalidatedTokenRepository,
+      SessionRegistryService sessionRegistry,
       TotpService totpService,
       TotpSecretRepository totpSecretRepository,
       ChatContactRepository chatContactRepository,
@@ -81,6 +83,7 @@ public class UserService {
     this.kanbanBoardRepository = kanbanBoardRepository;
     this.emailVerificationTokenRepository = emailVerificationTokenRepository;
     this.invalidatedTokenRepository = invalidatedTokenRepository;
+    this.sessionRegistry = sessionRegistry;
     this.totpService = totpService;
     // this.totpSecretRepository = totpSecretRepository;
     this.chatContactRepository = chatContactRepository;
@@ -251,6 +254,7 @@ public class UserService {
 
       try {
         invalidatedTokenRepository.deleteByUsername(username);
+        sessionRegistry.evict(username);
         log.info("Deleted invalidated tokens for user: {}", username);
       } catch (Exception e) {
         log.error("Error deleting invalidated tokens for user: {}", username, e);
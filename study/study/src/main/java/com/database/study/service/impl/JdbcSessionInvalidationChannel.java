@@ -0,0 +1,163 @@
+package com.database.study.service.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.database.study.entity.SessionInvalidation;
+import com.database.study.repository.SessionInvalidationRepository;
+import com.database.study.service.SessionInvalidationChannel;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Session invalidation channel backed by the session_invalidations outbox
+ * table, for multi-node deployments without an external broker.
+ *
+ * publish inserts a row in the caller's transaction, so the invalidation
+ * becomes visible exactly when the session change commits. Every node polls
+ * the table for rows written by other nodes, after the highest id it has
+ * seen. Ids are allocated at insert but become visible at commit, so a
+ * transaction that commits late leaves a gap below that cursor: missing ids
+ * are looked up again on every poll until they show up or are older than
+ * security.session-invalidation.gap-timeout-ms, which is how long a
+ * publishing transaction may take to commit. Ids of rolled back transactions
+ * never show up and are dropped the same way.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "security.session-invalidation.channel", havingValue = "jdbc")
+public class JdbcSessionInvalidationChannel implements SessionInvalidationChannel {
+
+  private static final int POLL_BATCH_SIZE = 1000;
+
+  private final SessionInvalidationRepository sessionInvalidationRepository;
+  private final String nodeId;
+  private final long gapTimeoutMs;
+  private final long retentionMs;
+  private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+  // Highest id seen, -1 until the first poll starts from the newest row
+  private long lastId = -1;
+
+  // Missing id below lastId -> when it was first missed
+  private final Map<Long, Long> gaps = new HashMap<>();
+
+  private final Counter publishedCounter;
+  private final Counter receivedCounter;
+  private final Timer propagationLag;
+
+  public JdbcSessionInvalidationChannel(
+      SessionInvalidationRepository sessionInvalidationRepository,
+      @Value("${security.session-invalidation.node-id:}") String nodeId,
+      @Value("${security.session-invalidation.gap-timeout-ms:60000}") long gapTimeoutMs,
+      @Value("${security.session-invalidation.retention-minutes:10}") long retentionMinutes,
+      MeterRegistry meterRegistry) {
+    this.sessionInvalidationRepository = sessionInvalidationRepository;
+    this.nodeId = nodeId == null || nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId;
+    this.gapTimeoutMs = gapTimeoutMs;
+    this.retentionMs = TimeUnit.MINUTES.toMillis(retentionMinutes);
+    this.publishedCounter = Counter.builder("session.invalidation.published")
+        .tag("channel", "jdbc").register(meterRegistry);
+    this.receivedCounter = Counter.builder("session.invalidation.received")
+        .tag("channel", "jdbc").register(meterRegistry);
+    this.propagationLag = Timer.builder("session.invalidation.lag")
+        .description("Time between publishing an invalidation and applying it on another node")
+        .tag("channel", "jdbc").register(meterRegistry);
+    log.info("JDBC session invalidation channel started on node {}", this.nodeId);
+  }
+
+  @Override
+  public void publish(String username) {
+    sessionInvalidationRepository.save(SessionInvalidation.builder()
+        .username(username)
+        .originNode(nodeId)
+        .createdAt(System.currentTimeMillis())
+        .build());
+    publishedCounter.increment();
+  }
+
+  @Override
+  public void subscribe(Consumer<String> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Apply invalidations written by other nodes since the previous poll,
+   * including those that filled a gap below the cursor
+   */
+  @Scheduled(fixedDelayString = "${security.session-invalidation.poll-interval-ms:250}")
+  public synchronized void poll() {
+    long pollStartedAt = System.currentTimeMillis();
+    try {
+      if (lastId < 0) {
+        Long maxId = sessionInvalidationRepository.findMaxId();
+        lastId = maxId != null ? maxId : 0;
+        return;
+      }
+      if (!gaps.isEmpty()) {
+        List<SessionInvalidation> filled = sessionInvalidationRepository
+            .findByIdIn(List.copyOf(gaps.keySet()));
+        filled.forEach(invalidation -> gaps.remove(invalidation.getId()));
+        apply(filled, pollStartedAt);
+      }
+      List<SessionInvalidation> invalidations = sessionInvalidationRepository
+          .findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, POLL_BATCH_SIZE));
+      for (SessionInvalidation invalidation : invalidations) {
+        long firstMissing = Math.max(lastId + 1, invalidation.getId() - POLL_BATCH_SIZE);
+        for (long missing = firstMissing; missing < invalidation.getId(); missing++) {
+          gaps.put(missing, pollStartedAt);
+        }
+        lastId = invalidation.getId();
+      }
+      apply(invalidations, pollStartedAt);
+      gaps.values().removeIf(missedAt -> pollStartedAt - missedAt > gapTimeoutMs);
+    } catch (Exception e) {
+      log.error("Error polling session invalidations: {}", e.getMessage(), e);
+    }
+  }
+
+  private void apply(List<SessionInvalidation> invalidations, long pollStartedAt) {
+    for (SessionInvalidation invalidation : invalidations) {
+      if (nodeId.equals(invalidation.getOriginNode())) {
+        continue;
+      }
+      listeners.forEach(listener -> listener.accept(invalidation.getUsername()));
+      receivedCounter.increment();
+      propagationLag.record(Math.max(0, pollStartedAt - invalidation.getCreatedAt()), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Delete outbox rows every node has had time to apply
+   */
+  @Scheduled(fixedDelayString = "${security.session-invalidation.purge-interval-ms:60000}")
+  public void purge() {
+    try {
+      int deleted = sessionInvalidationRepository.deleteByCreatedAtBefore(System.currentTimeMillis() - retentionMs);
+      if (deleted > 0) {
+        log.debug("Purged {} session invalidations", deleted);
+      }
+    } catch (Exception e) {
+      log.error("Error purging session invalidations: {}", e.getMessage(), e);
+    }
+  }
+}
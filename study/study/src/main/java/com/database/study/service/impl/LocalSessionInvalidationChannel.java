@@ -0,0 +1,97 @@
+package com.database.study.service.impl;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.database.study.service.SessionInvalidationChannel;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-JVM session invalidation channel. Invalidations are handed directly to
+ * every other channel instance running in the same JVM (for example several
+ * application contexts in one process). A single-node deployment has no other
+ * instance, so publishing is a no-op apart from metrics.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "security.session-invalidation.channel", havingValue = "local", matchIfMissing = true)
+public class LocalSessionInvalidationChannel implements SessionInvalidationChannel {
+
+  private static final List<LocalSessionInvalidationChannel> CHANNELS = new CopyOnWriteArrayList<>();
+
+  private final String nodeId;
+  private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+  private final Counter publishedCounter;
+  private final Counter receivedCounter;
+  private final Timer propagationLag;
+
+  public LocalSessionInvalidationChannel(
+      @Value("${security.session-invalidation.node-id:}") String nodeId,
+      MeterRegistry meterRegistry) {
+    this.nodeId = nodeId == null || nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId;
+    this.publishedCounter = Counter.builder("session.invalidation.published")
+        .tag("channel", "local").register(meterRegistry);
+    this.receivedCounter = Counter.builder("session.invalidation.received")
+        .tag("channel", "local").register(meterRegistry);
+    this.propagationLag = Timer.builder("session.invalidation.lag")
+        .description("Time between publishing an invalidation and applying it on another node")
+        .tag("channel", "local").register(meterRegistry);
+    CHANNELS.add(this);
+    log.info("Local session invalidation channel started on node {}", this.nodeId);
+  }
+
+  @PreDestroy
+  public void close() {
+    CHANNELS.remove(this);
+  }
+
+  @Override
+  public void publish(String username) {
+    long publishedAt = System.currentTimeMillis();
+    publishedCounter.increment();
+    Runnable deliver = () -> CHANNELS.stream()
+        .filter(channel -> channel != this)
+        .forEach(channel -> channel.receive(username, publishedAt));
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          deliver.run();
+        }
+      });
+    } else {
+      deliver.run();
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<String> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  private void receive(String username, long publishedAt) {
+    receivedCounter.increment();
+    listeners.forEach(listener -> listener.accept(username));
+    propagationLag.record(System.currentTimeMillis() - publishedAt, TimeUnit.MILLISECONDS);
+  }
+}
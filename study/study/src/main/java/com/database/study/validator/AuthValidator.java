@@ -1,6 +1,7 @@
 package com.database.study.validator;
 
 import com.database.study.exception.UnauthorizedAccessException;
+import com.database.study.security.ScopeAuthorityCache;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
@@ -23,8 +24,7 @@ public class AuthValidator {
     }
 
     // Skip check for admins
-    boolean isAdmin = authentication.getAuthorities().stream()
-        .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    boolean isAdmin = ScopeAuthorityCache.isAdmin(authentication);
 
     if (isAdmin) {
       return; // Allow access for admin users
@@ -0,0 +1,117 @@
+package com.database.study.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SessionOutboundQueuesTest {
+
+  @Mock
+  private MessageChannel channel;
+
+  @Mock
+  private MessageHandler handler;
+
+  @Mock
+  private WebSocketSession session;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private SessionOutboundQueues queues;
+
+  @BeforeEach
+  void setUp() {
+    queues = new SessionOutboundQueues(2, SessionOutboundQueues.OverflowPolicy.DROP_EPHEMERAL,
+        new String[] {"/queue/typing", "/queue/presence"}, 60_000);
+    queues.bindTo(registry);
+    when(session.getId()).thenReturn("s1");
+    when(channel.send(any())).thenReturn(true);
+    queues.register(session);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void preSend_DropsOldestEphemeralFrameWhenQueueIsFull() throws Exception {
+    Message<?> first = frame("/user/u1/queue/messages");
+    Message<?> typing = frame("/user/u1/queue/typing");
+    Message<?> second = frame("/user/u1/queue/messages");
+    Message<?> third = frame("/user/u1/queue/messages");
+
+    // first goes to the channel, the others wait for it
+    for (Message<?> message : List.of(first, typing, second, third)) {
+      assertNull(queues.preSend(message, channel));
+    }
+    // The released frame passes on its way through the channel
+    assertSame(first, queues.preSend(first, channel));
+
+    queues.afterMessageHandled(first, channel, handler, null);
+    queues.afterMessageHandled(second, channel, handler, null);
+
+    ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+    verify(channel, times(3)).send(sent.capture());
+    assertEquals(List.of(first, second, third), sent.getAllValues());
+    assertEquals(1, registry.get("chat.websocket.session.queue.dropped").functionCounter().count());
+    assertEquals(2, registry.get("chat.websocket.session.queue.length").summary().max());
+    verify(session, never()).close(any());
+  }
+
+  @Test
+  void preSend_ClosesSessionWhenQueueIsFullOfMessages() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      assertNull(queues.preSend(frame("/user/u1/queue/messages"), channel));
+    }
+    assertNull(queues.preSend(frame("/user/u1/queue/typing"), channel));
+    verify(session, never()).close(any());
+
+    assertNull(queues.preSend(frame("/user/u1/queue/messages"), channel));
+
+    verify(session, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    assertNull(queues.preSend(frame("/user/u1/queue/messages"), channel));
+    verify(channel, times(1)).send(any());
+  }
+
+  @Test
+  void preSend_SendTimeLimitCountsFromStartOfSendNotFromPoolQueue() throws Exception {
+    queues = new SessionOutboundQueues(10, SessionOutboundQueues.OverflowPolicy.DROP_EPHEMERAL,
+        new String[] {"/queue/typing"}, 20);
+    queues.register(session);
+    Message<?> first = frame("/user/u1/queue/messages");
+    assertNull(queues.preSend(first, channel));
+
+    // Waiting for a pool thread is not a stalled send
+    Thread.sleep(50);
+    assertNull(queues.preSend(frame("/user/u1/queue/messages"), channel));
+    verify(session, never()).close(any());
+
+    assertSame(first, queues.beforeHandle(first, channel, handler));
+    Thread.sleep(50);
+    assertNull(queues.preSend(frame("/user/u1/queue/messages"), channel));
+
+    verify(session, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+  }
+
+  private static Message<byte[]> frame(String destination) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setSessionId("s1");
+    accessor.setDestination(destination);
+    return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+  }
+}
@@ -0,0 +1,69 @@
+package com.database.study.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilsTest {
+
+  private static final UUID USER_ID = UUID.fromString("6f9619ff-8b86-d011-b42d-00c04fc964ff");
+
+  private JwtUtils jwtUtils;
+
+  @BeforeEach
+  void setUp() {
+    jwtUtils = new JwtUtils();
+    ReflectionTestUtils.setField(jwtUtils, "jwtKey",
+        Base64.getEncoder().encodeToString("test-jwt-key-0123456789abcdef0123456789abcdef".getBytes()));
+    ReflectionTestUtils.setField(jwtUtils, "maxCachedVerifiers", 100L);
+    ReflectionTestUtils.setField(jwtUtils, "verifierCacheTtlMinutes", 5L);
+    jwtUtils.init();
+  }
+
+  @Test
+  void refreshExpiry_MatchesSimpleDateFormat() throws Exception {
+    SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
+    Date expiry = sdf.parse(sdf.format(new Date()));
+
+    assertEquals(sdf.format(expiry), jwtUtils.formatRefreshExpiry(expiry));
+    assertEquals(expiry, jwtUtils.parseRefreshExpiry(sdf.format(expiry)));
+  }
+
+  @Test
+  void getDynamicVerifier_VerifiesTokenSignedWithDynamicKey() throws Exception {
+    String refreshExpiry = jwtUtils.formatRefreshExpiry(new Date(System.currentTimeMillis() + 3_600_000));
+    SignedJWT token = sign(jwtUtils.computeDynamicSecretKey(USER_ID, jwtUtils.parseRefreshExpiry(refreshExpiry)));
+
+    assertTrue(token.verify(jwtUtils.getDynamicVerifier(USER_ID.toString(), refreshExpiry)));
+    assertFalse(token.verify(jwtUtils.getStaticVerifier()));
+  }
+
+  @Test
+  void getDynamicVerifier_ReusedForSameClaims() throws Exception {
+    String refreshExpiry = "20301231235959";
+
+    assertSame(jwtUtils.getDynamicVerifier(USER_ID.toString(), refreshExpiry),
+        jwtUtils.getDynamicVerifier(USER_ID.toString(), refreshExpiry));
+    assertNotSame(jwtUtils.getDynamicVerifier(USER_ID.toString(), refreshExpiry),
+        jwtUtils.getDynamicVerifier(USER_ID.toString(), "20301231235958"));
+  }
+
+  private SignedJWT sign(byte[] key) throws Exception {
+    SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512),
+        new JWTClaimsSet.Builder().subject("testuser").build());
+    jwt.sign(new MACSigner(key));
+    return jwt;
+  }
+}
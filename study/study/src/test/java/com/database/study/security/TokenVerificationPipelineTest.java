@@ -0,0 +1,111 @@
+package com.database.study.security;
+
+import com.database.study.exception.AppException;
+import com.database.study.service.EncryptionService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenVerificationPipelineTest {
+
+  private static final UUID USER_ID = UUID.fromString("6f9619ff-8b86-d011-b42d-00c04fc964ff");
+
+  private JwtUtils jwtUtils;
+  private EncryptionService encryptionService;
+  private TokenVerificationPipeline pipeline;
+
+  @BeforeEach
+  void setUp() {
+    jwtUtils = new JwtUtils();
+    ReflectionTestUtils.setField(jwtUtils, "jwtKey",
+        Base64.getEncoder().encodeToString("test-jwt-key-0123456789abcdef0123456789abcdef".getBytes()));
+    ReflectionTestUtils.setField(jwtUtils, "maxCachedVerifiers", 100L);
+    ReflectionTestUtils.setField(jwtUtils, "verifierCacheTtlMinutes", 5L);
+    jwtUtils.init();
+
+    encryptionService = new EncryptionService();
+    ReflectionTestUtils.setField(encryptionService, "encryptionKey", "test-encryption-key-for-unit-tests");
+    ReflectionTestUtils.setField(encryptionService, "totpEncryptionKey", "test-totp-key-for-unit-tests");
+    ReflectionTestUtils.setField(encryptionService, "tokenEnvelopeVersion", 2);
+    ReflectionTestUtils.setField(encryptionService, "tokenCacheEnabled", true);
+    ReflectionTestUtils.setField(encryptionService, "maxCachedKeys", 100L);
+    ReflectionTestUtils.setField(encryptionService, "maxCachedTokens", 100L);
+    ReflectionTestUtils.setField(encryptionService, "tokenCacheTtlMinutes", 5L);
+    encryptionService.init();
+
+    pipeline = new TokenVerificationPipeline(encryptionService, jwtUtils, new ScopeAuthorityCache());
+  }
+
+  @AfterEach
+  void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void verify_ReturnsClaimsAndAuthorities() throws Exception {
+    String token = encryptedToken(new Date(System.currentTimeMillis() + 60_000));
+
+    TokenVerificationPipeline.VerifiedToken verified = pipeline.verify(token);
+
+    assertEquals("testuser", verified.getSubject());
+    assertEquals(USER_ID.toString(), verified.getUserId());
+    assertEquals("jwt-id", verified.getJwtId());
+    assertEquals(2, verified.getAuthorities().size());
+    assertEquals("ROLE_ADMIN", verified.getAuthorities().get(0).getAuthority());
+  }
+
+  @Test
+  void verify_ResultReusedWithinRequest() throws Exception {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    String token = encryptedToken(new Date(System.currentTimeMillis() + 60_000));
+
+    assertSame(pipeline.verify(token), pipeline.verify(token));
+  }
+
+  @Test
+  void verify_SameScopeSharesAuthorities() throws Exception {
+    Date expiry = new Date(System.currentTimeMillis() + 60_000);
+
+    assertSame(pipeline.verify(encryptedToken(expiry)).getAuthorities(),
+        pipeline.verify(encryptedToken(expiry)).getAuthorities());
+    assertSame(ScopeAuthorityCache.ROLE_ADMIN, pipeline.verify(encryptedToken(expiry)).getAuthorities().get(0));
+  }
+
+  @Test
+  void verify_ExpiredTokenIsRejected() throws Exception {
+    String token = encryptedToken(new Date(System.currentTimeMillis() - 1_000));
+
+    assertThrows(AppException.class, () -> pipeline.verify(token));
+  }
+
+  private String encryptedToken(Date expiry) throws Exception {
+    Date refreshExpiry = new Date(System.currentTimeMillis() + 3_600_000);
+    String refreshExpiryStr = jwtUtils.formatRefreshExpiry(refreshExpiry);
+    byte[] key = jwtUtils.computeDynamicSecretKey(USER_ID, jwtUtils.parseRefreshExpiry(refreshExpiryStr));
+    SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512), new JWTClaimsSet.Builder()
+        .subject("testuser")
+        .claim("userId", USER_ID.toString())
+        .claim("refreshExpiry", refreshExpiryStr)
+        .expirationTime(expiry)
+        .jwtID("jwt-id")
+        .claim("scope", "ROLE_ADMIN READ_DATA")
+        .build());
+    jwt.sign(new MACSigner(key));
+    return encryptionService.encryptToken(jwt.serialize());
+  }
+}
@@ -0,0 +1,116 @@
+package com.database.study.service;
+
+import com.database.study.repository.ActiveTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ActiveTokenWriteBehindServiceTest {
+
+  @Mock
+  private ActiveTokenRepository activeTokenRepository;
+
+  @Mock
+  private JdbcTemplate jdbcTemplate;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private ActiveTokenWriteBehindService writeBehind;
+
+  @BeforeEach
+  void setUp() {
+    writeBehind = new ActiveTokenWriteBehindService(activeTokenRepository, jdbcTemplate, transactionManager);
+    ReflectionTestUtils.setField(writeBehind, "refreshDurability", "async");
+    ReflectionTestUtils.setField(writeBehind, "batchSize", 100);
+    writeBehind.init();
+    writeBehind.bindTo(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void flush_RotationsOfOneSessionAreCoalesced() {
+    Date expiry = new Date(System.currentTimeMillis() + 60_000);
+    givenRows("jwt-id", "access-0", "other-id", "other-0");
+    writeBehind.updateAccessToken("jwt-id", digest("access-0"), "access-1", expiry, "Refreshed");
+    writeBehind.updateAccessToken("jwt-id", digest("access-1"), "access-2", expiry, "Refreshed");
+    writeBehind.updateAccessToken("other-id", digest("other-0"), "access-3", expiry, "Refreshed");
+
+    assertEquals("access-2", writeBehind.getPending("jwt-id").getToken());
+    writeBehind.flush();
+
+    ArgumentCaptor<Collection<ActiveTokenWriteBehindService.PendingAccessToken>> batch =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batch.capture(), eq(2),
+        any(ParameterizedPreparedStatementSetter.class));
+    assertEquals(2, batch.getValue().size());
+    assertEquals(0, writeBehind.getQueueDepth());
+    verifyNoInteractions(activeTokenRepository);
+  }
+
+  @Test
+  void updateAccessToken_SyncDurabilityWritesImmediately() {
+    ReflectionTestUtils.setField(writeBehind, "refreshDurability", "sync");
+    writeBehind.init();
+    Date expiry = new Date(System.currentTimeMillis() + 60_000);
+
+    writeBehind.updateAccessToken("jwt-id", digest("access-0"), "access-1", expiry, "Refreshed");
+
+    verify(activeTokenRepository).updateAccessToken("jwt-id", "access-1", expiry, "Refreshed");
+    assertNull(writeBehind.getPending("jwt-id"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void flush_RowSavedWithAnotherTokenIsNotOverwritten() {
+    Date expiry = new Date(System.currentTimeMillis() + 60_000);
+    // A login saved a new token after the rotation was queued
+    givenRows("jwt-id", "login-access", "other-id", "other-0");
+    writeBehind.updateAccessToken("jwt-id", digest("access-0"), "access-1", expiry, "Refreshed");
+    writeBehind.updateAccessToken("other-id", digest("other-0"), "access-3", expiry, "Refreshed");
+
+    writeBehind.flush();
+
+    ArgumentCaptor<Collection<ActiveTokenWriteBehindService.PendingAccessToken>> batch =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(jdbcTemplate).batchUpdate(anyString(), batch.capture(), eq(1),
+        any(ParameterizedPreparedStatementSetter.class));
+    assertEquals("other-id", batch.getValue().iterator().next().getId());
+    assertEquals(0, writeBehind.getQueueDepth());
+  }
+
+  private void givenRows(String... idsAndTokens) {
+    doAnswer(invocation -> {
+      RowCallbackHandler handler = invocation.getArgument(1);
+      for (int i = 0; i < idsAndTokens.length; i += 2) {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(idsAndTokens[i]);
+        when(rs.getString(2)).thenReturn(idsAndTokens[i + 1]);
+        handler.processRow(rs);
+      }
+      return null;
+    }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+  }
+
+  private static byte[] digest(String token) {
+    return SessionRegistryService.digest(token);
+  }
+}
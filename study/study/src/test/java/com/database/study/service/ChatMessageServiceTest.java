@@ -0,0 +1,229 @@
+package com.database.study.service;
+
+import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.dto.response.MessageSliceResponse;
+import com.database.study.entity.ChatMessage;
+import com.database.study.entity.User;
+import com.database.study.exception.AppException;
+import com.database.study.exception.ErrorCode;
+import com.database.study.mapper.ChatMessageMapper;
+import com.database.study.repository.ChatGroupRepository;
+import com.database.study.repository.ChatMessageRepository;
+import com.database.study.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatMessageServiceTest {
+
+  @Mock
+  private ChatMessageRepository messageRepository;
+
+  @Mock
+  private ChatGroupRepository chatGroupRepository;
+
+  @Mock
+  private UserRepository userRepository;
+
+  @Mock
+  private ChatMessageMapper messageMapper;
+
+  @Mock
+  private ReadWatermarkService readWatermarkService;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @Mock
+  private EntityManager entityManager;
+
+  @Spy
+  private ObjectMapper objectMapper = new ObjectMapper();
+
+  @InjectMocks
+  private ChatMessageService chatMessageService;
+
+  private final UUID groupId = UUID.randomUUID();
+  private final LocalDateTime now = LocalDateTime.now();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(chatMessageService, "entityManager", entityManager);
+    lenient().when(messageMapper.toResponse(any(ChatMessage.class))).thenAnswer(invocation -> {
+      ChatMessageResponse response = new ChatMessageResponse();
+      response.setId(invocation.<ChatMessage>getArgument(0).getId().toString());
+      return response;
+    });
+  }
+
+  private ChatMessage message(int minutesAgo) {
+    return ChatMessage.builder().id(UUID.randomUUID()).timestamp(now.minusMinutes(minutesAgo)).build();
+  }
+
+  @Test
+  void getGroupMessagesBefore_NextCursorContinuesAfterLastMessageOfSlice() {
+    ChatMessage newest = message(0);
+    ChatMessage newer = message(1);
+    ChatMessage oldest = message(2);
+    when(messageRepository.findLatestByGroupId(eq(groupId), any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of(newest, newer), PageRequest.of(0, 2), true));
+    when(messageRepository.findByGroupIdBefore(eq(groupId), eq(newer.getTimestamp()), eq(newer.getId()),
+        any(Pageable.class))).thenReturn(new SliceImpl<>(List.of(oldest), PageRequest.of(0, 2), false));
+
+    MessageSliceResponse first = chatMessageService.getGroupMessagesBefore(groupId, null, 2);
+    MessageSliceResponse second = chatMessageService.getGroupMessagesBefore(groupId, first.getNextCursor(), 2);
+
+    assertEquals(List.of(newest.getId().toString(), newer.getId().toString()),
+        first.getContent().stream().map(ChatMessageResponse::getId).toList());
+    assertTrue(first.isHasMore());
+    assertEquals(newer.getTimestamp() + "," + newer.getId(), first.getNextCursor());
+    assertEquals(List.of(oldest.getId().toString()),
+        second.getContent().stream().map(ChatMessageResponse::getId).toList());
+    assertFalse(second.isHasMore());
+    assertNull(second.getNextCursor());
+  }
+
+  @Test
+  void getGroupMessagesBefore_CapsLimitAtMaxSliceSize() {
+    when(messageRepository.findLatestByGroupId(eq(groupId), any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of()));
+
+    chatMessageService.getGroupMessagesBefore(groupId, "", 10_000);
+
+    verify(messageRepository).findLatestByGroupId(groupId, PageRequest.of(0, ChatMessageService.MAX_SLICE_SIZE));
+  }
+
+  @Test
+  void writeGroupMessages_ReadsEachSliceInItsOwnReadOnlyTransactionAndWritesAllInOrder() throws Exception {
+    ChatMessage newest = message(0);
+    ChatMessage oldest = message(1);
+    when(messageRepository.findLatestByGroupId(eq(groupId), any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of(newest), PageRequest.of(0, 1), true));
+    when(messageRepository.findByGroupIdBefore(eq(groupId), eq(newest.getTimestamp()), eq(newest.getId()),
+        any(Pageable.class))).thenReturn(new SliceImpl<>(List.of(oldest), PageRequest.of(0, 1), false));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    chatMessageService.writeGroupMessages(groupId, null, out);
+
+    JsonNode written = new ObjectMapper().readTree(out.toByteArray());
+    assertEquals(2, written.size());
+    assertEquals(newest.getId().toString(), written.get(0).get("id").asText());
+    assertEquals(oldest.getId().toString(), written.get(1).get("id").asText());
+    verify(transactionManager, times(2)).getTransaction(argThat(TransactionDefinition::isReadOnly));
+    InOrder inOrder = inOrder(messageRepository, transactionManager);
+    inOrder.verify(messageRepository).findLatestByGroupId(eq(groupId), any(Pageable.class));
+    inOrder.verify(transactionManager).commit(any());
+    inOrder.verify(messageRepository).findByGroupIdBefore(any(), any(), any(), any(Pageable.class));
+    inOrder.verify(transactionManager).commit(any());
+    verify(entityManager, times(2)).clear();
+  }
+
+  @Test
+  void writeGroupMessages_RejectsMalformedCursorBeforeReading() {
+    assertThrows(AppException.class,
+        () -> chatMessageService.writeGroupMessages(groupId, "yesterday", new ByteArrayOutputStream()));
+    verifyNoInteractions(messageRepository, transactionManager);
+  }
+
+  @Test
+  void checkGroupAccess_RejectsNonMembersAndMissingGroups() {
+    UUID userId = UUID.randomUUID();
+    UUID missingGroupId = UUID.randomUUID();
+    when(chatGroupRepository.existsById(groupId)).thenReturn(true);
+    when(chatGroupRepository.isUserMemberOfGroup(groupId, userId)).thenReturn(false);
+    when(chatGroupRepository.existsById(missingGroupId)).thenReturn(false);
+
+    AppException notMember = assertThrows(AppException.class,
+        () -> chatMessageService.checkGroupAccess(groupId, userId));
+    AppException missing = assertThrows(AppException.class,
+        () -> chatMessageService.checkGroupAccess(missingGroupId, userId));
+
+    assertEquals(ErrorCode.UNAUTHORIZED_ACCESS, notMember.getErrorCode());
+    assertEquals(ErrorCode.RESOURCE_NOT_FOUND, missing.getErrorCode());
+  }
+
+  @Test
+  void checkGroupAccess_AcceptsMembers() {
+    UUID userId = UUID.randomUUID();
+    when(chatGroupRepository.existsById(groupId)).thenReturn(true);
+    when(chatGroupRepository.isUserMemberOfGroup(groupId, userId)).thenReturn(true);
+
+    assertDoesNotThrow(() -> chatMessageService.checkGroupAccess(groupId, userId));
+  }
+
+  @Test
+  void messageCursor_ToStringParsesBackToSamePosition() {
+    ChatMessageService.MessageCursor cursor = new ChatMessageService.MessageCursor(
+        LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_456_000), UUID.randomUUID());
+
+    assertEquals(cursor, ChatMessageService.MessageCursor.parse(cursor.toString()));
+  }
+
+  @Test
+  void messageCursor_MalformedValuesAreInvalidRequests() {
+    String id = UUID.randomUUID().toString();
+    for (String value : List.of("", "2024-05-01T12:30:15", "yesterday," + id, "2024-05-01T12:30:15,not-a-uuid",
+        id + ",2024-05-01T12:30:15")) {
+      AppException e = assertThrows(AppException.class, () -> ChatMessageService.MessageCursor.parse(value));
+      assertEquals(ErrorCode.INVALID_REQUEST, e.getErrorCode(), value);
+    }
+  }
+
+  @Test
+  void getMessagesByConversationIdBefore_FirstSliceIsLatestAndCursorSelectsOlderOnes() {
+    ChatMessage newest = message(0);
+    ChatMessage older = message(1);
+    when(messageRepository.findLatestByConversationId(eq("a_b"), any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of(newest), PageRequest.of(0, 1), true));
+    when(messageRepository.findByConversationIdBefore(eq("a_b"), eq(newest.getTimestamp()), eq(newest.getId()),
+        any(Pageable.class))).thenReturn(new SliceImpl<>(List.of(older), PageRequest.of(0, 1), false));
+
+    MessageSliceResponse first = chatMessageService.getMessagesByConversationIdBefore("a_b", null, 1);
+    MessageSliceResponse second = chatMessageService.getMessagesByConversationIdBefore("a_b",
+        first.getNextCursor(), 1);
+
+    assertEquals(newest.getId().toString(), first.getContent().get(0).getId());
+    assertTrue(first.isHasMore());
+    assertEquals(older.getId().toString(), second.getContent().get(0).getId());
+    assertFalse(second.isHasMore());
+    assertNull(second.getNextCursor());
+    verify(messageRepository).findLatestByConversationId("a_b", PageRequest.of(0, 1));
+  }
+
+  @Test
+  void getConversationMessagesBefore_RejectsUsersOutsideTheConversation() {
+    User alice = User.builder().id(UUID.randomUUID()).username("alice").build();
+    when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+
+    AppException e = assertThrows(AppException.class, () -> chatMessageService.getConversationMessagesBefore(
+        "alice", UUID.randomUUID() + "_" + UUID.randomUUID(), null, 20));
+
+    assertEquals(ErrorCode.UNAUTHORIZED_ACCESS, e.getErrorCode());
+    verifyNoInteractions(messageRepository);
+  }
+}
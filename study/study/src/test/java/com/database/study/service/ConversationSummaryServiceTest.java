@@ -0,0 +1,134 @@
+package com.database.study.service;
+
+import com.database.study.entity.BackfillProgress;
+import com.database.study.entity.ChatMessage;
+import com.database.study.entity.User;
+import com.database.study.repository.BackfillProgressRepository;
+import com.database.study.repository.ChatMessageRepository;
+import com.database.study.repository.ConversationSummaryRepository;
+import com.database.study.repository.InsertIfAbsentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ConversationSummaryServiceTest {
+
+  @Mock
+  private ConversationSummaryRepository summaryRepository;
+
+  @Mock
+  private ChatMessageRepository messageRepository;
+
+  @Mock
+  private InsertIfAbsentRepository insertIfAbsentRepository;
+
+  @Mock
+  private BackfillProgressRepository progressRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private ConversationSummaryService conversationSummaryService;
+
+  private final User alice = User.builder().id(UUID.randomUUID()).username("alice").build();
+  private final User bob = User.builder().id(UUID.randomUUID()).username("bob").build();
+
+  @BeforeEach
+  void setUp() {
+    conversationSummaryService = new ConversationSummaryService(summaryRepository, messageRepository,
+        insertIfAbsentRepository, progressRepository, transactionManager);
+  }
+
+  private ChatMessage message(String content) {
+    return ChatMessage.builder()
+        .id(UUID.randomUUID())
+        .sender(alice)
+        .receiver(bob)
+        .content(content)
+        .conversationId("alice_bob")
+        .timestamp(LocalDateTime.now())
+        .build();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void recordMessage_CreatesMissingSummaryThenAdvancesAll() {
+    ChatMessage message = message("hello");
+    when(summaryRepository.findUserIdsByConversationKey("alice_bob")).thenReturn(List.of(alice.getId()));
+
+    conversationSummaryService.recordMessage(message, List.of(alice.getId(), bob.getId()));
+
+    ArgumentCaptor<List<Object[]>> created = ArgumentCaptor.forClass(List.class);
+    verify(insertIfAbsentRepository).insertIfAbsent(eq("conversation_summaries"), anyList(), anyList(),
+        created.capture());
+    assertEquals(1, created.getValue().size());
+    Object[] row = created.getValue().get(0);
+    assertEquals(bob.getId() + ":alice_bob", row[0]);
+    assertEquals(alice.getId(), row[3]);
+    assertEquals(message.getId(), row[5]);
+    verify(summaryRepository).advance("alice_bob", message.getId(), alice.getId(), "hello", message.getTimestamp());
+  }
+
+  @Test
+  void messageDeleted_MovesSummariesBackToThePreviousMessage() {
+    ChatMessage deleted = message("latest");
+    ChatMessage previous = message("previous");
+    when(summaryRepository.existsByLastMessageId(deleted.getId())).thenReturn(true);
+    when(messageRepository.findLatestByConversationId(eq("alice_bob"), any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of(previous)));
+    when(summaryRepository.replace(anyString(), any(), any(), any(), any())).thenReturn(2);
+
+    conversationSummaryService.messageDeleted(deleted);
+
+    verify(summaryRepository).replace("alice_bob", previous.getId(), alice.getId(), "previous",
+        previous.getTimestamp());
+    verifyNoInteractions(insertIfAbsentRepository);
+  }
+
+  @Test
+  void backfill_RetriesABatchAnotherNodeTookAndRebuildsEachConversationOnce() {
+    UUID mark = UUID.randomUUID();
+    UUID until = UUID.randomUUID();
+    ChatMessage latest = message("hello again");
+    ChatMessageRepository.SearchableMessage first = mock(ChatMessageRepository.SearchableMessage.class);
+    ChatMessageRepository.SearchableMessage second = mock(ChatMessageRepository.SearchableMessage.class);
+    UUID lastId = UUID.randomUUID();
+    when(first.getConversationId()).thenReturn("alice_bob");
+    when(second.getId()).thenReturn(lastId);
+    when(second.getConversationId()).thenReturn("alice_bob");
+    when(messageRepository.findMaxId()).thenReturn(until);
+    when(progressRepository.findById("conversation_summaries")).thenReturn(Optional.of(
+        BackfillProgress.builder().id("conversation_summaries").lastMessageId(mark).untilMessageId(until).build()));
+    when(messageRepository.findSearchableBetween(eq(mark), eq(until), any(Pageable.class)))
+        .thenReturn(List.of(first, second));
+    // The first claim loses to another node that moved the mark meanwhile
+    when(progressRepository.advance(eq("conversation_summaries"), eq(mark), eq(lastId), any()))
+        .thenReturn(0, 1);
+    when(messageRepository.findLatestByConversationId(eq("alice_bob"), any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(List.of(latest)));
+    when(summaryRepository.replace(eq("alice_bob"), eq(latest.getId()), any(), any(), any())).thenReturn(2);
+
+    conversationSummaryService.backfill();
+
+    verify(insertIfAbsentRepository).insertIfAbsent(eq("backfill_progress"), anyList(), anyList(), anyList());
+    verify(progressRepository, times(2)).advance(eq("conversation_summaries"), eq(mark), eq(lastId), any());
+    verify(summaryRepository, times(1)).replace(eq("alice_bob"), eq(latest.getId()), any(), any(), any());
+    verify(summaryRepository, never()).count();
+  }
+}
@@ -0,0 +1,110 @@
+package com.database.study.service;
+
+import com.database.study.dto.request.ChatMessageRequest;
+import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.exception.AppException;
+import com.database.study.exception.ErrorCode;
+import com.database.study.repository.ChatGroupRepository;
+import com.database.study.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EphemeralMessageServiceTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  @Mock
+  private ChatGroupRepository chatGroupRepository;
+
+  @Mock
+  private MessageFrameService frameService;
+
+  @Mock
+  private GroupFanoutService groupFanoutService;
+
+  private EphemeralMessageService ephemeralMessageService;
+
+  private final UUID aliceId = UUID.randomUUID();
+  private final UUID bobId = UUID.randomUUID();
+
+  @BeforeEach
+  void setUp() {
+    ephemeralMessageService = new EphemeralMessageService(userRepository, chatGroupRepository, frameService,
+        groupFanoutService);
+    ReflectionTestUtils.setField(ephemeralMessageService, "maxCachedUsers", 100L);
+    ReflectionTestUtils.setField(ephemeralMessageService, "maxCachedGroups", 100L);
+    ReflectionTestUtils.setField(ephemeralMessageService, "ttlSeconds", 60L);
+    ReflectionTestUtils.setField(ephemeralMessageService, "groupTtlSeconds", 5L);
+    ephemeralMessageService.init();
+    UserRepository.ChatUserView alice = view(aliceId, "alice", "Alice", "A");
+    when(userRepository.findChatUserByUsername("alice")).thenReturn(Optional.of(alice));
+  }
+
+  private UserRepository.ChatUserView view(UUID id, String username, String firstname, String lastname) {
+    UserRepository.ChatUserView view = mock(UserRepository.ChatUserView.class);
+    when(view.getId()).thenReturn(id);
+    when(view.getUsername()).thenReturn(username);
+    when(view.getFirstname()).thenReturn(firstname);
+    when(view.getLastname()).thenReturn(lastname);
+    return view;
+  }
+
+  private ChatMessageRequest request(UUID receiverId) {
+    ChatMessageRequest request = new ChatMessageRequest();
+    request.setContent("off the record");
+    request.setReceiverId(receiverId.toString());
+    request.setPersistent(false);
+    return request;
+  }
+
+  @Test
+  void send_DirectMessageResolvesUsersOnceFromCache() {
+    UserRepository.ChatUserView bob = view(bobId, "bob", null, null);
+    when(userRepository.findChatUserById(bobId)).thenReturn(Optional.of(bob));
+
+    ChatMessageResponse first = ephemeralMessageService.send("alice", request(bobId));
+    ephemeralMessageService.send("alice", request(bobId));
+
+    assertEquals("Alice A", first.getSender().getName());
+    assertEquals("bob", first.getReceiver().getName());
+    assertFalse(first.isPersistent());
+    verify(frameService, times(2)).sendToUser(eq(bobId.toString()), eq("/queue/messages"), any());
+    verify(userRepository, times(1)).findChatUserByUsername("alice");
+    verify(userRepository, times(1)).findChatUserById(bobId);
+    verifyNoMoreInteractions(userRepository);
+  }
+
+  @Test
+  void send_ReceiverIdOfGroupFansOutToMembersOnly() {
+    UUID groupId = UUID.randomUUID();
+    when(userRepository.findChatUserById(groupId)).thenReturn(Optional.empty());
+    when(chatGroupRepository.findMemberIds(groupId)).thenReturn(List.of(aliceId, bobId));
+    when(chatGroupRepository.findNameById(groupId)).thenReturn(Optional.of("team"));
+
+    ChatMessageResponse response = ephemeralMessageService.send("alice", request(groupId));
+
+    assertEquals(groupId.toString(), response.getGroupId());
+    assertNull(response.getReceiver());
+    verify(groupFanoutService).deliverAfterCommit(List.of(bobId), "/queue/messages", response);
+
+    ephemeralMessageService.evictGroup(groupId);
+    when(chatGroupRepository.findMemberIds(groupId)).thenReturn(List.of(bobId));
+    AppException exception = assertThrows(AppException.class,
+        () -> ephemeralMessageService.send("alice", request(groupId)));
+    assertEquals(ErrorCode.UNAUTHORIZED_ACCESS, exception.getErrorCode());
+  }
+}
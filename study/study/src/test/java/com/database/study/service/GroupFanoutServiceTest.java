@@ -0,0 +1,96 @@
+package com.database.study.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GroupFanoutServiceTest {
+
+  @Mock
+  private SimpMessagingTemplate messagingTemplate;
+
+  private final ObjectMapper objectMapper = spy(new ObjectMapper());
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private GroupFanoutService groupFanoutService;
+
+  @BeforeEach
+  void setUp() {
+    groupFanoutService = new GroupFanoutService(new MessageFrameService(messagingTemplate, objectMapper));
+    ReflectionTestUtils.setField(groupFanoutService, "threads", 2);
+    ReflectionTestUtils.setField(groupFanoutService, "queueCapacity", 10);
+    ReflectionTestUtils.setField(groupFanoutService, "batchSize", 2);
+    groupFanoutService.init();
+    groupFanoutService.bindTo(registry);
+    when(messagingTemplate.getUserDestinationPrefix()).thenReturn("/user/");
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    groupFanoutService.shutdown();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void deliverAfterCommit_SerializesOnceAndSendsAfterCommit() throws Exception {
+    List<UUID> members = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+    TransactionSynchronizationManager.initSynchronization();
+
+    groupFanoutService.deliverAfterCommit(members, "/queue/messages", Map.of("content", "hi"));
+    verify(messagingTemplate, never()).send(anyString(), any(Message.class));
+
+    TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+    ArgumentCaptor<Message<byte[]>> sent = ArgumentCaptor.forClass(Message.class);
+    for (UUID member : members) {
+      verify(messagingTemplate, timeout(1000)).send(eq("/user/" + member + "/queue/messages"), sent.capture());
+    }
+    assertEquals("{\"content\":\"hi\"}", new String(sent.getValue().getPayload()));
+    verify(objectMapper, times(1)).writeValueAsBytes(any());
+    assertEquals(0, registry.get("chat.group.fanout.dropped").counter().count());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void deliverAfterCommit_CountsFailedDeliveriesAsDropped() {
+    UUID unreachable = UUID.randomUUID();
+    UUID reachable = UUID.randomUUID();
+    doThrow(new MessageDeliveryException("closed"))
+        .when(messagingTemplate).send(eq("/user/" + unreachable + "/queue/messages"), any(Message.class));
+
+    groupFanoutService.deliverAfterCommit(List.of(unreachable, reachable), "/queue/messages", Map.of("content", "hi"));
+
+    verify(messagingTemplate, timeout(1000)).send(eq("/user/" + reachable + "/queue/messages"), any(Message.class));
+    verify(messagingTemplate, timeout(1000)).send(eq("/user/" + unreachable + "/queue/messages"), any(Message.class));
+    assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+      while (registry.get("chat.group.fanout").timer().count() == 0) {
+        Thread.sleep(5);
+      }
+    });
+    assertEquals(1, registry.get("chat.group.fanout.dropped").counter().count());
+  }
+}
@@ -0,0 +1,43 @@
+package com.database.study.service;
+
+import com.database.study.repository.ChatGroupRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GroupIdIndexTest {
+
+  @Mock
+  private ChatGroupRepository chatGroupRepository;
+
+  @InjectMocks
+  private GroupIdIndex groupIdIndex;
+
+  @Test
+  void tracksLoadedCreatedAndDeletedGroups() {
+    UUID existing = UUID.randomUUID();
+    UUID created = UUID.randomUUID();
+    when(chatGroupRepository.findAllIds()).thenReturn(List.of(existing));
+
+    groupIdIndex.load();
+    groupIdIndex.recordGroup(created);
+
+    assertTrue(groupIdIndex.isGroup(existing));
+    assertTrue(groupIdIndex.isGroup(created));
+    assertFalse(groupIdIndex.isGroup(UUID.randomUUID()));
+
+    groupIdIndex.removeGroup(existing);
+
+    assertFalse(groupIdIndex.isGroup(existing));
+    verify(chatGroupRepository, times(1)).findAllIds();
+  }
+}
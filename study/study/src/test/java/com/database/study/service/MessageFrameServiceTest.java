@@ -0,0 +1,76 @@
+package com.database.study.service;
+
+import com.database.study.dto.response.ChatMessageResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageFrameServiceTest {
+
+  @Mock
+  private SimpMessagingTemplate messagingTemplate;
+
+  private MessageFrameService frameService;
+
+  private final ChatMessageResponse message = ChatMessageResponse.builder()
+      .id("m1")
+      .content("hello")
+      .sender(ChatMessageResponse.UserInfo.builder().id("u1").name("Alice").build())
+      .timestamp("2026-10-17T10:00:00")
+      .persistent(true)
+      .build();
+
+  @BeforeEach
+  void setUp() {
+    frameService = new MessageFrameService(messagingTemplate, new ObjectMapper());
+    when(messagingTemplate.getUserDestinationPrefix()).thenReturn("/user/");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void sendToUser_SendsCompactFrameOnlyToCompactSubscribers() {
+    frameService.onSubscribe(subscribe("s1", "/user/u2/queue/messages.compact"));
+
+    frameService.sendToUser("u2", "/queue/messages", message);
+
+    ArgumentCaptor<Message<byte[]>> sent = ArgumentCaptor.forClass(Message.class);
+    verify(messagingTemplate).send(eq("/user/u2/queue/messages.compact"), sent.capture());
+    verify(messagingTemplate, never()).send(eq("/user/u2/queue/messages"), any(Message.class));
+    assertEquals("{\"i\":\"m1\",\"c\":\"hello\",\"s\":[\"u1\",\"Alice\"],\"t\":\"2026-10-17T10:00:00\"}",
+        new String(sent.getValue().getPayload()));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void sendToUser_SendsJsonWithoutCompactSubscription() {
+    frameService.onSubscribe(subscribe("s1", "/user/u3/queue/messages.compact"));
+
+    frameService.sendToUser("u2", "/queue/messages", message);
+
+    verify(messagingTemplate).send(eq("/user/u2/queue/messages"), any(Message.class));
+    verify(messagingTemplate, never()).send(eq("/user/u2/queue/messages.compact"), any(Message.class));
+  }
+
+  private SessionSubscribeEvent subscribe(String sessionId, String destination) {
+    StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+    accessor.setSessionId(sessionId);
+    accessor.setSubscriptionId("sub-0");
+    accessor.setDestination(destination);
+    return new SessionSubscribeEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+  }
+}
@@ -0,0 +1,244 @@
+package com.database.study.service;
+
+import com.database.study.dto.response.ChatMessageResponse;
+import com.database.study.dto.response.MessageSliceResponse;
+import com.database.study.entity.BackfillProgress;
+import com.database.study.entity.ChatMessage;
+import com.database.study.entity.User;
+import com.database.study.mapper.ChatMessageMapper;
+import com.database.study.repository.BackfillProgressRepository;
+import com.database.study.repository.ChatGroupRepository;
+import com.database.study.repository.ChatMessageRepository;
+import com.database.study.repository.ConversationSummaryRepository;
+import com.database.study.repository.InsertIfAbsentRepository;
+import com.database.study.repository.MessageTermRepository;
+import com.database.study.repository.MessageTermRepository.MessageHit;
+import com.database.study.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageSearchServiceTest {
+
+  @Mock
+  private MessageTermRepository termRepository;
+
+  @Mock
+  private ChatMessageRepository messageRepository;
+
+  @Mock
+  private ConversationSummaryRepository summaryRepository;
+
+  @Mock
+  private ChatGroupRepository chatGroupRepository;
+
+  @Mock
+  private UserRepository userRepository;
+
+  @Mock
+  private ChatMessageMapper messageMapper;
+
+  @Mock
+  private ReadWatermarkService readWatermarkService;
+
+  @Mock
+  private BackfillProgressRepository progressRepository;
+
+  @Mock
+  private InsertIfAbsentRepository insertIfAbsentRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private MessageSearchService messageSearchService;
+
+  private final User alice = User.builder().id(UUID.randomUUID()).username("alice").build();
+
+  @BeforeEach
+  void setUp() {
+    messageSearchService = new MessageSearchService(termRepository, messageRepository, summaryRepository,
+        chatGroupRepository, userRepository, messageMapper, readWatermarkService, progressRepository,
+        insertIfAbsentRepository, transactionManager);
+  }
+
+  private MessageHit hit(String conversationKey, UUID messageId, LocalDateTime sentAt) {
+    MessageHit hit = mock(MessageHit.class);
+    lenient().when(hit.getConversationKey()).thenReturn(conversationKey);
+    lenient().when(hit.getMessageId()).thenReturn(messageId);
+    lenient().when(hit.getSentAt()).thenReturn(sentAt);
+    return hit;
+  }
+
+  @Test
+  void tokenize_LowerCasesAndSplitsOnNonWordCharacters() {
+    assertEquals(Set.of("hello", "wörld", "42", "xin", "chào"),
+        MessageSearchService.tokenize("Hello, WÖRLD! 42 -- hello; Xin chào", 10));
+    assertEquals(List.of("a", "b"), List.copyOf(MessageSearchService.tokenize("a b c", 2)));
+    assertTrue(MessageSearchService.tokenize(" ?! ", 10).isEmpty());
+  }
+
+  @Test
+  void search_ReturnsHitsInIndexOrderWithCursorOfLastHit() {
+    LocalDateTime now = LocalDateTime.now();
+    ChatMessage newer = ChatMessage.builder().id(UUID.randomUUID()).content("Hello again").timestamp(now).build();
+    ChatMessage older = ChatMessage.builder().id(UUID.randomUUID()).content("hello").timestamp(now.minusMinutes(1))
+        .build();
+    UUID deletedId = UUID.randomUUID();
+    MessageHit newerHit = hit("group_g", newer.getId(), now);
+    MessageHit olderHit = hit("alice_bob", older.getId(), now.minusMinutes(1));
+    MessageHit deletedHit = hit("group_g", deletedId, now.minusMinutes(2));
+    MessageHit oldestHit = hit("alice_bob", UUID.randomUUID(), now.minusMinutes(3));
+    when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+    when(summaryRepository.findConversationKeysByUserId(alice.getId())).thenReturn(List.of("alice_bob", "group_g"));
+    when(termRepository.findLatestPostingsPerConversation(eq("hello"), eq(List.of("alice_bob", "group_g")), isNull(),
+        isNull(), anyInt())).thenReturn(List.of(olderHit, oldestHit, newerHit, deletedHit));
+    when(messageRepository.findAllById(List.of(newer.getId(), older.getId(), deletedId)))
+        .thenReturn(List.of(older, newer));
+    when(messageMapper.toResponse(any(ChatMessage.class))).thenAnswer(invocation -> {
+      ChatMessageResponse response = new ChatMessageResponse();
+      response.setContent(invocation.<ChatMessage>getArgument(0).getContent());
+      return response;
+    });
+
+    MessageSliceResponse slice = messageSearchService.search("alice", "HELLO", null, null, null, 3);
+
+    assertEquals(List.of("Hello again", "hello"),
+        slice.getContent().stream().map(ChatMessageResponse::getContent).toList());
+    assertTrue(slice.isHasMore());
+    assertEquals(now.minusMinutes(2) + "," + deletedId, slice.getNextCursor());
+  }
+
+  @Test
+  void search_DrivesScanFromRarestTermAndChecksOthersOnItsWindow() {
+    LocalDateTime now = LocalDateTime.now();
+    ChatMessage both = ChatMessage.builder().id(UUID.randomUUID()).content("hello world").timestamp(now).build();
+    MessageHit worldHit = hit("alice_bob", both.getId(), now);
+    MessageHit otherWorldHit = hit("alice_bob", UUID.randomUUID(), now.minusMinutes(1));
+    List<MessageHit> helloHits = List.of(hit("alice_bob", both.getId(), now),
+        hit("alice_bob", UUID.randomUUID(), now.minusMinutes(2)),
+        hit("alice_bob", UUID.randomUUID(), now.minusMinutes(3)));
+    when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+    when(summaryRepository.findConversationKeysByUserId(alice.getId())).thenReturn(List.of("alice_bob"));
+    when(termRepository.findLatestPostingsPerConversation(eq("hello"), eq(List.of("alice_bob")), isNull(), isNull(),
+        anyInt())).thenReturn(helloHits);
+    when(termRepository.findLatestPostingsPerConversation(eq("world"), eq(List.of("alice_bob")), isNull(), isNull(),
+        anyInt())).thenReturn(List.of(worldHit, otherWorldHit));
+    when(termRepository.findMessagesWithTerms(List.of(both.getId(), otherWorldHit.getMessageId()), Set.of("hello"),
+        1L)).thenReturn(List.of(both.getId()));
+    when(messageRepository.findAllById(List.of(both.getId()))).thenReturn(List.of(both));
+    when(messageMapper.toResponse(both)).thenReturn(new ChatMessageResponse());
+
+    MessageSliceResponse slice = messageSearchService.search("alice", "hello world", null, null, null, 10);
+
+    assertEquals(1, slice.getContent().size());
+    assertFalse(slice.isHasMore());
+    assertNull(slice.getNextCursor());
+    verify(termRepository, times(2)).findLatestPostingsPerConversation(any(), any(), any(), any(), anyInt());
+  }
+
+  @Test
+  void search_ReadsAWindowWithBoundedReadsPerConversation() {
+    // 50 conversations with 1000 postings each; the newest 1000 of all are in the first one
+    LocalDateTime now = LocalDateTime.now();
+    List<String> conversationKeys = new ArrayList<>();
+    Map<String, List<MessageHit>> index = new HashMap<>();
+    for (int c = 0; c < 50; c++) {
+      String conversationKey = "c" + c;
+      conversationKeys.add(conversationKey);
+      List<MessageHit> postings = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        postings.add(new Posting(conversationKey, new UUID(c, i), now.minusMinutes(c == 0 ? i : 1000 + i)));
+      }
+      index.put(conversationKey, postings);
+    }
+    AtomicInteger postingsRead = new AtomicInteger();
+    when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+    when(summaryRepository.findConversationKeysByUserId(alice.getId())).thenReturn(conversationKeys);
+    when(termRepository.findLatestPostingsPerConversation(eq("hello"), anyCollection(), any(), any(), anyInt()))
+        .thenAnswer(invocation -> {
+          LocalDateTime sentAt = invocation.getArgument(2);
+          UUID messageId = invocation.getArgument(3);
+          List<MessageHit> hits = new ArrayList<>();
+          for (String conversationKey : invocation.<Collection<String>>getArgument(1)) {
+            index.get(conversationKey).stream()
+                .filter(hit -> sentAt == null || hit.getSentAt().isBefore(sentAt)
+                    || (hit.getSentAt().equals(sentAt) && hit.getMessageId().compareTo(messageId) < 0))
+                .limit(invocation.<Integer>getArgument(4))
+                .forEach(hits::add);
+          }
+          postingsRead.addAndGet(hits.size());
+          return hits;
+        });
+
+    messageSearchService.search("alice", "hello", null, null, null, 20);
+
+    // The IN-list query read all 50000 postings of the term to sort them
+    int share = Math.max(MessageSearchService.MIN_POSTINGS_PER_CONVERSATION,
+        MessageSearchService.SCAN_WINDOW / conversationKeys.size() + 1);
+    assertTrue(postingsRead.get() <= 2 * MessageSearchService.SCAN_WINDOW + conversationKeys.size() * share,
+        "read " + postingsRead.get() + " postings");
+  }
+
+  private record Posting(String conversationKey, UUID messageId, LocalDateTime sentAt) implements MessageHit {
+
+    @Override
+    public String getConversationKey() {
+      return conversationKey;
+    }
+
+    @Override
+    public UUID getMessageId() {
+      return messageId;
+    }
+
+    @Override
+    public LocalDateTime getSentAt() {
+      return sentAt;
+    }
+  }
+
+  @Test
+  void backfill_ResumesAfterHighWaterMarkAndMovesItPastTheBatch() {
+    UUID mark = UUID.randomUUID();
+    UUID until = UUID.randomUUID();
+    ChatMessageRepository.SearchableMessage message = mock(ChatMessageRepository.SearchableMessage.class);
+    UUID messageId = UUID.randomUUID();
+    when(message.getId()).thenReturn(messageId);
+    when(message.getConversationId()).thenReturn("alice_bob");
+    when(message.getTimestamp()).thenReturn(LocalDateTime.now());
+    when(message.getContent()).thenReturn("hello there");
+    when(messageRepository.findMaxId()).thenReturn(until);
+    when(progressRepository.findById("message_terms")).thenReturn(Optional.of(
+        BackfillProgress.builder().id("message_terms").lastMessageId(mark).untilMessageId(until).build()));
+    when(messageRepository.findSearchableBetween(eq(mark), eq(until), any(Pageable.class)))
+        .thenReturn(List.of(message));
+    when(progressRepository.advance(eq("message_terms"), eq(mark), eq(messageId), any())).thenReturn(1);
+
+    messageSearchService.backfill();
+
+    verify(insertIfAbsentRepository).insertIfAbsent(eq("backfill_progress"), anyList(), anyList(), anyList());
+    verify(termRepository).deleteByMessageIdIn(List.of(messageId));
+    verify(termRepository).saveAll(anyList());
+    verify(termRepository, never()).count();
+  }
+}
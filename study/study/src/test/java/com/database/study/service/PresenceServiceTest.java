@@ -0,0 +1,111 @@
+package com.database.study.service;
+
+import com.database.study.repository.ChatContactRepository;
+import com.database.study.service.PresenceService.PresenceUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PresenceServiceTest {
+
+  @Mock
+  private ChatContactRepository contactRepository;
+
+  @Mock
+  private EphemeralMessageService ephemeralMessageService;
+
+  @Mock
+  private SimpMessagingTemplate messagingTemplate;
+
+  private PresenceService presenceService;
+
+  private final UUID aliceId = UUID.randomUUID();
+  private final UUID bobId = UUID.randomUUID();
+
+  @BeforeEach
+  void setUp() {
+    presenceService = new PresenceService(contactRepository, ephemeralMessageService, messagingTemplate);
+    lenient().when(ephemeralMessageService.findUserId("alice")).thenReturn(aliceId);
+    lenient().when(ephemeralMessageService.findUserId("bob")).thenReturn(bobId);
+  }
+
+  private void connect(String username, String sessionId) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+    accessor.setSessionId(sessionId);
+    Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    Principal user = new UsernamePasswordAuthenticationToken(username, null);
+    presenceService.onConnected(new SessionConnectedEvent(this, message, user));
+  }
+
+  private void disconnect(String sessionId) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+    accessor.setSessionId(sessionId);
+    Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    presenceService.onDisconnect(new SessionDisconnectEvent(this, message, sessionId, CloseStatus.NORMAL));
+  }
+
+  private ChatContactRepository.ContactPair pair(UUID contactId, UUID userId) {
+    ChatContactRepository.ContactPair pair = mock(ChatContactRepository.ContactPair.class);
+    when(pair.getContactId()).thenReturn(contactId);
+    when(pair.getUserId()).thenReturn(userId);
+    return pair;
+  }
+
+  @Test
+  void publish_SendsChangesOnlyToOnlineContacts() {
+    connect("bob", "s1");
+    presenceService.publish();
+    ChatContactRepository.ContactPair bobWatchesAlice = pair(aliceId, bobId);
+    when(contactRepository.findAcceptedWatchers(List.of(aliceId))).thenReturn(List.of(bobWatchesAlice));
+
+    connect("alice", "s2");
+    presenceService.publish();
+
+    verify(messagingTemplate).convertAndSendToUser(bobId.toString(), "/queue/presence",
+        List.of(new PresenceUpdate(aliceId.toString(), true)));
+    assertTrue(presenceService.isOnline(aliceId));
+  }
+
+  @Test
+  void publish_SkipsReconnectsWithinATick() {
+    connect("alice", "s1");
+    presenceService.publish();
+    clearInvocations(contactRepository, messagingTemplate);
+
+    disconnect("s1");
+    connect("alice", "s2");
+    presenceService.publish();
+
+    verifyNoInteractions(contactRepository, messagingTemplate);
+    assertTrue(presenceService.isOnline(aliceId));
+  }
+
+  @Test
+  void init_RejectsRelayBrokerUnlessDisabled() {
+    ReflectionTestUtils.setField(presenceService, "broker", "relay");
+    assertThrows(IllegalStateException.class, presenceService::init);
+
+    ReflectionTestUtils.setField(presenceService, "enabled", false);
+    assertDoesNotThrow(presenceService::init);
+  }
+}
@@ -0,0 +1,114 @@
+package com.database.study.service;
+
+import com.database.study.entity.ChatMessage;
+import com.database.study.entity.ReadWatermark;
+import com.database.study.entity.User;
+import com.database.study.repository.ChatMessageRepository;
+import com.database.study.repository.InsertIfAbsentRepository;
+import com.database.study.repository.ReadWatermarkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReadWatermarkServiceTest {
+
+  @Mock
+  private ReadWatermarkRepository readWatermarkRepository;
+
+  @Mock
+  private ChatMessageRepository messageRepository;
+
+  @Mock
+  private InsertIfAbsentRepository insertIfAbsentRepository;
+
+  private ReadWatermarkService readWatermarkService;
+
+  private final UUID userId = UUID.randomUUID();
+
+  @BeforeEach
+  void setUp() {
+    readWatermarkService = new ReadWatermarkService(readWatermarkRepository, messageRepository,
+        insertIfAbsentRepository);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void markRead_FirstReadInsertsWatermarkIfAbsentAndAdvancesAgain() {
+    ChatMessage message = ChatMessage.builder().id(UUID.randomUUID()).timestamp(LocalDateTime.now()).build();
+    when(readWatermarkRepository.advance(anyString(), any(), any(), any())).thenReturn(0);
+
+    readWatermarkService.markRead(userId, "conversation", message);
+
+    ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+    verify(insertIfAbsentRepository).insertIfAbsent(eq("read_watermarks"), anyList(), anyList(), rows.capture());
+    assertArrayEquals(new Object[] { userId + ":conversation", userId, "conversation", message.getTimestamp(),
+        message.getId() }, Arrays.copyOf(rows.getValue().get(0), 5));
+    // A row inserted concurrently by another request is moved forward
+    verify(readWatermarkRepository, times(2)).advance(eq(userId + ":conversation"), eq(message.getTimestamp()),
+        eq(message.getId()), any());
+    verify(readWatermarkRepository, never()).save(any());
+  }
+
+  @Test
+  void markRead_ExistingWatermarkIsOneUpdate() {
+    ChatMessage message = ChatMessage.builder().id(UUID.randomUUID()).timestamp(LocalDateTime.now()).build();
+    when(readWatermarkRepository.advance(anyString(), any(), any(), any())).thenReturn(1);
+
+    readWatermarkService.markRead(userId, "conversation", message);
+
+    verifyNoInteractions(insertIfAbsentRepository);
+  }
+
+  @Test
+  void countUnreadInConversation_CountsAfterWatermark() {
+    LocalDateTime readUpTo = LocalDateTime.now();
+    UUID lastReadId = UUID.randomUUID();
+    when(readWatermarkRepository.findById(userId + ":conversation")).thenReturn(Optional.of(ReadWatermark.builder()
+        .lastReadTimestamp(readUpTo)
+        .lastReadMessageId(lastReadId)
+        .build()));
+    when(messageRepository.countByConversationIdAfter("conversation", userId, readUpTo, lastReadId)).thenReturn(4L);
+
+    assertEquals(4L, readWatermarkService.countUnreadInConversation(userId, "conversation"));
+    verify(messageRepository, never()).countUnreadByConversationId(anyString(), any());
+  }
+
+  @Test
+  void readByReceiver_DirectMessagesUpToReceiverWatermarkAreRead() {
+    User sender = User.builder().id(UUID.randomUUID()).build();
+    User receiver = User.builder().id(userId).build();
+    LocalDateTime readUpTo = LocalDateTime.now();
+    ChatMessage read = ChatMessage.builder().id(UUID.randomUUID()).sender(sender).receiver(receiver)
+        .conversationId("conversation").timestamp(readUpTo).build();
+    ChatMessage older = ChatMessage.builder().id(UUID.randomUUID()).sender(sender).receiver(receiver)
+        .conversationId("conversation").timestamp(readUpTo.minusMinutes(1)).build();
+    ChatMessage newer = ChatMessage.builder().id(UUID.randomUUID()).sender(sender).receiver(receiver)
+        .conversationId("conversation").timestamp(readUpTo.plusSeconds(1)).build();
+    ChatMessage elsewhere = ChatMessage.builder().id(UUID.randomUUID()).sender(sender).receiver(receiver)
+        .conversationId("other").timestamp(readUpTo.minusMinutes(1)).build();
+    when(readWatermarkRepository.findAllById(Set.of(userId + ":conversation", userId + ":other")))
+        .thenReturn(List.of(ReadWatermark.builder()
+            .id(userId + ":conversation")
+            .lastReadTimestamp(readUpTo)
+            .lastReadMessageId(read.getId())
+            .build()));
+
+    assertEquals(Set.of(read.getId(), older.getId()),
+        readWatermarkService.readByReceiver(List.of(newer, read, older, elsewhere)));
+  }
+}
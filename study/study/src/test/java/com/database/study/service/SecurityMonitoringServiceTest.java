@@ -0,0 +1,153 @@
+package com.database.study.service;
+
+import com.database.study.exception.AppException;
+import com.database.study.exception.ErrorCode;
+import com.database.study.repository.ActiveTokenRepository;
+import com.database.study.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SecurityMonitoringServiceTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  @Mock
+  private ActiveTokenRepository activeTokenRepository;
+
+  @Mock
+  private SessionRegistryService sessionRegistry;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private SecurityMonitoringService securityMonitoringService;
+  private MockHttpServletRequest request;
+
+  @BeforeEach
+  void setUp() {
+    securityMonitoringService = new SecurityMonitoringService();
+    ReflectionTestUtils.setField(securityMonitoringService, "userRepository", userRepository);
+    ReflectionTestUtils.setField(securityMonitoringService, "activeTokenRepository", activeTokenRepository);
+    ReflectionTestUtils.setField(securityMonitoringService, "sessionRegistry", sessionRegistry);
+    ReflectionTestUtils.setField(securityMonitoringService, "transactionManager", transactionManager);
+    ReflectionTestUtils.setField(securityMonitoringService, "maxFailedAttempts", 3);
+    ReflectionTestUtils.setField(securityMonitoringService, "windowMinutes", 15L);
+    ReflectionTestUtils.setField(securityMonitoringService, "maxFailuresPerIp", 50);
+    ReflectionTestUtils.setField(securityMonitoringService, "maxTrackedKeys", 1000L);
+    ReflectionTestUtils.setField(securityMonitoringService, "rateLimitEnabled", true);
+    ReflectionTestUtils.setField(securityMonitoringService, "maxRequestsPerSecond", 1);
+    ReflectionTestUtils.setField(securityMonitoringService, "rateLimitBurst", 2);
+    securityMonitoringService.init();
+    securityMonitoringService.bindTo(new SimpleMeterRegistry());
+
+    request = new MockHttpServletRequest();
+    request.setRemoteAddr("10.0.0.1");
+  }
+
+  @Test
+  void trackFailedAttempt_LockoutIsAnsweredFromMemoryAndWrittenOnFlush() {
+    for (int i = 0; i < 2; i++) {
+      assertFalse(securityMonitoringService.trackFailedAttempt("alice", "alice@example.com", request,
+          SecurityMonitoringService.AUTH_TYPE_LOGIN));
+    }
+    assertTrue(securityMonitoringService.trackFailedAttempt("alice", "alice@example.com", request,
+        SecurityMonitoringService.AUTH_TYPE_LOGIN));
+
+    assertTrue(securityMonitoringService.isBlocked("alice", "alice@example.com", null));
+    assertEquals(0, securityMonitoringService.getRemainingAttempts("alice", null, null));
+    verifyNoInteractions(userRepository, activeTokenRepository);
+    when(userRepository.lockByUsername("alice", 3)).thenReturn(1);
+
+    securityMonitoringService.flushLockouts();
+
+    verify(userRepository).lockByUsername("alice", 3);
+    verify(activeTokenRepository).deleteByUsername("alice");
+    verify(sessionRegistry).evict("alice");
+  }
+
+  @Test
+  void flushLockouts_UnknownUsernameStaysLockedInMemoryOnly() {
+    for (int i = 0; i < 3; i++) {
+      securityMonitoringService.trackFailedAttempt("nobody", null, request, SecurityMonitoringService.AUTH_TYPE_LOGIN);
+    }
+    securityMonitoringService.flushLockouts();
+    when(userRepository.findBlockedUsernames()).thenReturn(List.of());
+    securityMonitoringService.reloadBlockedUsernames();
+
+    assertTrue(securityMonitoringService.trackFailedAttempt("nobody", null, request,
+        SecurityMonitoringService.AUTH_TYPE_LOGIN));
+    securityMonitoringService.flushLockouts();
+
+    assertTrue(securityMonitoringService.isBlocked("nobody", null, null));
+    verify(userRepository, times(1)).lockByUsername("nobody", 3);
+    verifyNoInteractions(activeTokenRepository, sessionRegistry);
+  }
+
+  @Test
+  void resetFailedAttempts_QueuesResetOnlyAfterFailures() {
+    securityMonitoringService.resetFailedAttempts("carol", null, request);
+    securityMonitoringService.trackFailedAttempt("alice", null, request, SecurityMonitoringService.AUTH_TYPE_LOGIN);
+    securityMonitoringService.resetFailedAttempts("alice", null, request);
+
+    securityMonitoringService.flushLockouts();
+
+    verify(userRepository).resetFailedAttemptsByUsername("alice");
+    verify(userRepository, never()).resetFailedAttemptsByUsername("carol");
+    assertEquals(3, securityMonitoringService.getRemainingAttempts("alice", null, null));
+  }
+
+  @Test
+  void reloadBlockedUsernames_KeepsLockoutsNotYetWritten() {
+    when(userRepository.findBlockedUsernames()).thenReturn(List.of("bob"));
+    for (int i = 0; i < 3; i++) {
+      securityMonitoringService.trackFailedAttempt("alice", null, request, SecurityMonitoringService.AUTH_TYPE_LOGIN);
+    }
+
+    securityMonitoringService.reloadBlockedUsernames();
+
+    assertTrue(securityMonitoringService.isBlocked("alice", null, null));
+    assertTrue(securityMonitoringService.isBlocked("bob", null, null));
+    assertFalse(securityMonitoringService.isBlocked("carol", null, null));
+  }
+
+  @Test
+  void checkRateLimit_RejectsIpBeyondBurst() {
+    securityMonitoringService.checkRateLimit(request);
+    securityMonitoringService.checkRateLimit(request);
+
+    AppException exception = assertThrows(AppException.class,
+        () -> securityMonitoringService.checkRateLimit(request));
+    assertEquals(ErrorCode.TOO_MANY_ATTEMPTS, exception.getErrorCode());
+
+    MockHttpServletRequest otherClient = new MockHttpServletRequest();
+    otherClient.setRemoteAddr("10.0.0.2");
+    assertDoesNotThrow(() -> securityMonitoringService.checkRateLimit(otherClient));
+  }
+
+  @Test
+  void slidingWindow_ForgetsSlicesOlderThanTheWindow() {
+    SecurityMonitoringService.SlidingWindowCounter counter =
+        new SecurityMonitoringService.SlidingWindowCounter(10_000, 10);
+
+    counter.increment(1_000);
+    counter.increment(5_000);
+    assertEquals(3, counter.increment(9_500));
+
+    assertEquals(2, counter.sum(11_000));
+    assertEquals(0, counter.sum(20_000));
+  }
+}
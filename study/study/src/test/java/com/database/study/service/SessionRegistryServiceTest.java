@@ -0,0 +1,196 @@
+package com.database.study.service;
+
+import com.database.study.entity.ActiveToken;
+import com.database.study.repository.ActiveTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SessionRegistryServiceTest {
+
+  @Mock
+  private ActiveTokenRepository activeTokenRepository;
+
+  @Mock
+  private SessionInvalidationChannel invalidationChannel;
+
+  @Mock
+  private ActiveTokenWriteBehindService activeTokenWriteBehind;
+
+  @InjectMocks
+  private SessionRegistryService sessionRegistry;
+
+  private ActiveToken activeToken;
+
+  @BeforeEach
+  void setUp() {
+    long now = System.currentTimeMillis();
+    activeToken = ActiveToken.builder()
+        .id("jwt-id")
+        .username("testuser")
+        .token("encrypted-access")
+        .refreshToken("encrypted-refresh")
+        .expiryTime(new Date(now + 60_000))
+        .expiryRefreshTime(new Date(now + 3_600_000))
+        .build();
+  }
+
+  @Test
+  void findByAccessToken_RegisteredSessionAnsweredFromMemory() {
+    sessionRegistry.register(activeToken);
+
+    SessionRegistryService.Session session = sessionRegistry.findByAccessToken("testuser", "encrypted-access");
+
+    assertNotNull(session);
+    assertEquals("jwt-id", session.getId());
+    assertFalse(session.isAccessTokenExpired());
+    verifyNoInteractions(activeTokenRepository);
+  }
+
+  @Test
+  void findByAccessToken_MismatchIsConfirmedAgainstDatabase() {
+    sessionRegistry.register(activeToken);
+    when(activeTokenRepository.findFirstByUsername("testuser")).thenReturn(activeToken);
+
+    assertNull(sessionRegistry.findByAccessToken("testuser", "some-other-token"));
+    verify(activeTokenRepository, times(1)).findFirstByUsername("testuser");
+  }
+
+  @Test
+  void findByAccessToken_ForgedTokensReloadAtMostOncePerInterval() {
+    sessionRegistry.register(activeToken);
+    when(activeTokenRepository.findFirstByUsername("testuser")).thenReturn(activeToken);
+
+    for (int i = 0; i < 10; i++) {
+      assertNull(sessionRegistry.findByAccessToken("testuser", "forged-" + i));
+    }
+    assertNotNull(sessionRegistry.findByAccessToken("testuser", "encrypted-access"));
+    verify(activeTokenRepository, times(1)).findFirstByUsername("testuser");
+  }
+
+  @Test
+  void find_ReloadKeepsRegistrationAppliedWhileReading() {
+    ActiveToken newer = ActiveToken.builder()
+        .id("new-jwt-id")
+        .username("testuser")
+        .token("new-access")
+        .refreshToken("new-refresh")
+        .expiryTime(activeToken.getExpiryTime())
+        .expiryRefreshTime(activeToken.getExpiryRefreshTime())
+        .build();
+    // A login commits between the reload's query and its update of the registry
+    when(activeTokenRepository.findFirstByUsername("testuser")).thenAnswer(invocation -> {
+      sessionRegistry.register(newer);
+      return activeToken;
+    });
+
+    sessionRegistry.find("testuser");
+
+    assertEquals("new-jwt-id", sessionRegistry.find("testuser").getId());
+  }
+
+  @Test
+  void findByRefreshToken_MissLoadsFromDatabase() {
+    when(activeTokenRepository.findFirstByUsername("testuser")).thenReturn(activeToken);
+
+    assertNotNull(sessionRegistry.findByRefreshToken("testuser", "encrypted-refresh"));
+    assertNotNull(sessionRegistry.findByRefreshToken("testuser", "encrypted-refresh"));
+    verify(activeTokenRepository, times(1)).findFirstByUsername("testuser");
+  }
+
+  @Test
+  void evict_RemovesSession() {
+    sessionRegistry.register(activeToken);
+    sessionRegistry.evict("testuser");
+    when(activeTokenRepository.findFirstByUsername(anyString())).thenReturn(null);
+
+    assertNull(sessionRegistry.find("testuser"));
+    assertEquals(0, sessionRegistry.size());
+  }
+
+  @Test
+  void evictExpired_DropsExpiredSessionsOnly() {
+    ActiveToken expired = ActiveToken.builder()
+        .id("expired-id")
+        .username("expireduser")
+        .token("old-access")
+        .refreshToken("old-refresh")
+        .expiryTime(new Date(System.currentTimeMillis() - 1_000))
+        .expiryRefreshTime(new Date(System.currentTimeMillis() + 3_600_000))
+        .build();
+    when(activeTokenRepository.findByExpiryRefreshTimeAfter(any(Date.class)))
+        .thenReturn(List.of(activeToken, expired));
+    sessionRegistry.warmUp();
+
+    assertEquals(1, sessionRegistry.evictExpired());
+    assertEquals(1, sessionRegistry.size());
+  }
+
+  @Test
+  void evict_PublishesInvalidation() {
+    sessionRegistry.evict("testuser");
+
+    verify(invalidationChannel).publish("testuser");
+  }
+
+  @Test
+  void register_DoesNotPublishButReplaceDoes() {
+    sessionRegistry.register(activeToken);
+    verify(invalidationChannel, never()).publish(anyString());
+
+    sessionRegistry.replace(activeToken);
+    verify(invalidationChannel).publish("testuser");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void invalidationFromOtherNode_DropsSession() {
+    ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+    sessionRegistry.subscribe();
+    verify(invalidationChannel).subscribe(listener.capture());
+    sessionRegistry.register(activeToken);
+
+    listener.getValue().accept("testuser");
+
+    assertEquals(0, sessionRegistry.size());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void invalidationFromOtherNode_AllowsAnImmediateReload() {
+    ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+    sessionRegistry.subscribe();
+    verify(invalidationChannel).subscribe(listener.capture());
+    when(activeTokenRepository.findFirstByUsername("testuser")).thenReturn(null, activeToken);
+    assertNull(sessionRegistry.findByAccessToken("testuser", "encrypted-access"));
+
+    listener.getValue().accept("testuser");
+
+    assertNotNull(sessionRegistry.findByAccessToken("testuser", "encrypted-access"));
+    verify(activeTokenRepository, times(2)).findFirstByUsername("testuser");
+  }
+
+  @Test
+  void find_QueuedAccessTokenRotationWinsOverDatabaseRow() {
+    when(activeTokenRepository.findFirstByUsername("testuser")).thenReturn(activeToken);
+    when(activeTokenWriteBehind.getPending("jwt-id")).thenReturn(new ActiveTokenWriteBehindService.PendingAccessToken(
+        "jwt-id", SessionRegistryService.digest("encrypted-access"), "rotated-access",
+        new Date(System.currentTimeMillis() + 60_000), "Refreshed"));
+
+    assertNotNull(sessionRegistry.findByAccessToken("testuser", "rotated-access"));
+    assertNull(sessionRegistry.findByAccessToken("testuser", "encrypted-access"));
+  }
+}
@@ -0,0 +1,83 @@
+package com.database.study.service;
+
+import com.database.study.service.TypingIndicatorService.TypingEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TypingIndicatorServiceTest {
+
+  @Mock
+  private SimpMessagingTemplate messagingTemplate;
+
+  @Mock
+  private EphemeralMessageService ephemeralMessageService;
+
+  private TypingIndicatorService typingIndicatorService;
+
+  private final UUID aliceId = UUID.randomUUID();
+  private final UUID bobId = UUID.randomUUID();
+
+  @BeforeEach
+  void setUp() {
+    typingIndicatorService = new TypingIndicatorService(messagingTemplate, ephemeralMessageService);
+    ReflectionTestUtils.setField(typingIndicatorService, "maxTrackedPairs", 100L);
+    when(ephemeralMessageService.findUserId("alice")).thenReturn(aliceId);
+  }
+
+  @AfterEach
+  void tearDown() {
+    typingIndicatorService.shutdown();
+  }
+
+  private void start(long windowMs) {
+    ReflectionTestUtils.setField(typingIndicatorService, "windowMs", windowMs);
+    typingIndicatorService.init();
+  }
+
+  @Test
+  void typing_RelaysOneFrameForABurstWithinTheWindow() {
+    start(60_000);
+
+    typingIndicatorService.typing("alice", bobId.toString(), true);
+    typingIndicatorService.typing("alice", bobId.toString(), true);
+    typingIndicatorService.typing("alice", bobId.toString(), false);
+    typingIndicatorService.typing("alice", bobId.toString(), true);
+
+    verify(messagingTemplate, times(1)).convertAndSendToUser(eq(bobId.toString()), eq("/queue/typing"),
+        eq(new TypingEvent(aliceId.toString(), bobId.toString(), true)));
+  }
+
+  @Test
+  void typing_SendsAHeldBackStopWhenTheWindowEnds() {
+    start(50);
+
+    typingIndicatorService.typing("alice", bobId.toString(), true);
+    typingIndicatorService.typing("alice", bobId.toString(), false);
+
+    verify(messagingTemplate, timeout(2000)).convertAndSendToUser(eq(bobId.toString()), eq("/queue/typing"),
+        eq(new TypingEvent(aliceId.toString(), bobId.toString(), false)));
+    verify(messagingTemplate, times(2)).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+  }
+
+  @Test
+  void typing_WithoutFlagMeansTyping() {
+    start(60_000);
+
+    typingIndicatorService.typing("alice", bobId.toString(), null);
+
+    verify(messagingTemplate).convertAndSendToUser(eq(bobId.toString()), eq("/queue/typing"),
+        eq(new TypingEvent(aliceId.toString(), bobId.toString(), true)));
+  }
+}
@@ -0,0 +1,138 @@
+package com.database.study.service;
+
+import com.database.study.entity.UnreadCounter;
+import com.database.study.repository.InsertIfAbsentRepository;
+import com.database.study.repository.UnreadCounterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UnreadCounterServiceTest {
+
+  @Mock
+  private UnreadCounterRepository unreadCounterRepository;
+
+  @Mock
+  private ReadWatermarkService readWatermarkService;
+
+  @Mock
+  private InsertIfAbsentRepository insertIfAbsentRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private UnreadCounterService unreadCounterService;
+
+  private final UUID userId = UUID.randomUUID();
+
+  @BeforeEach
+  void setUp() {
+    unreadCounterService = new UnreadCounterService(unreadCounterRepository, readWatermarkService,
+        insertIfAbsentRepository, transactionManager);
+    ReflectionTestUtils.setField(unreadCounterService, "maxCachedUsers", 100L);
+    ReflectionTestUtils.setField(unreadCounterService, "cacheTtlSeconds", 60L);
+    unreadCounterService.init();
+  }
+
+  private UnreadCounter counter(String conversationKey, long unreadCount) {
+    return UnreadCounter.builder()
+        .id(userId + ":" + conversationKey)
+        .userId(userId)
+        .conversationKey(conversationKey)
+        .unreadCount(unreadCount)
+        .build();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void getUnreadCounts_LoadsAllCountersOnceAndSeedsMissingFromWatermark() {
+    when(unreadCounterRepository.findByUserId(userId)).thenReturn(List.of(counter("a_b", 3)));
+    when(readWatermarkService.countUnread(userId, Set.of("a_c"))).thenReturn(Map.of("a_c", 2L));
+
+    assertEquals(Map.of("a_b", 3L, "a_c", 2L), unreadCounterService.getUnreadCounts(userId, List.of("a_b", "a_c")));
+    assertEquals(Map.of("a_b", 3L, "a_c", 2L), unreadCounterService.getUnreadCounts(userId, List.of("a_b", "a_c")));
+
+    verify(unreadCounterRepository, times(1)).findByUserId(userId);
+    ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+    verify(insertIfAbsentRepository, times(1)).insertIfAbsent(eq("unread_counters"), anyList(), anyList(),
+        rows.capture());
+    assertEquals(1, rows.getValue().size());
+    assertEquals(userId + ":a_c", rows.getValue().get(0)[0]);
+    assertEquals(2L, rows.getValue().get(0)[3]);
+    verifyNoInteractions(transactionManager);
+  }
+
+  @Test
+  void getUnreadCounts_SeedsInANewTransactionWhenTheCallerIsReadOnly() {
+    when(unreadCounterRepository.findByUserId(userId)).thenReturn(List.of());
+    when(readWatermarkService.countUnread(userId, Set.of("a_b", "a_c"))).thenReturn(Map.of("a_b", 0L, "a_c", 1L));
+
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    try {
+      assertEquals(Map.of("a_b", 0L, "a_c", 1L), unreadCounterService.getUnreadCounts(userId, List.of("a_b", "a_c")));
+    } finally {
+      TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    verify(transactionManager).getTransaction(argThat(definition ->
+        definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    verify(insertIfAbsentRepository).insertIfAbsent(eq("unread_counters"), anyList(), anyList(),
+        argThat(rows -> rows.size() == 2));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void increment_SeedsMissingCountersInOneInsertAndIncrementsExistingOnes() {
+    UUID otherId = UUID.randomUUID();
+    String groupKey = ReadWatermarkService.groupKey(UUID.randomUUID());
+    UUID groupId = UUID.fromString(groupKey.substring("group_".length()));
+    when(unreadCounterRepository.findExistingIds(anyCollection())).thenReturn(List.of(userId + ":" + groupKey));
+    when(readWatermarkService.countUnreadInGroup(otherId, groupId)).thenReturn(1L);
+
+    unreadCounterService.increment(groupKey, List.of(userId, otherId));
+
+    ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+    verify(insertIfAbsentRepository).insertIfAbsent(eq("unread_counters"), anyList(), anyList(), rows.capture());
+    assertEquals(1, rows.getValue().size());
+    assertEquals(otherId + ":" + groupKey, rows.getValue().get(0)[0]);
+    assertEquals(1L, rows.getValue().get(0)[3]);
+    verify(unreadCounterRepository).incrementAll(eq(Set.of(userId + ":" + groupKey)), any());
+  }
+
+  @Test
+  void incrementAndReset_UpdateTheCachedCount() {
+    String groupKey = ReadWatermarkService.groupKey(UUID.randomUUID());
+    when(unreadCounterRepository.findByUserId(userId)).thenReturn(List.of(counter(groupKey, 3)));
+    when(unreadCounterRepository.findExistingIds(anyCollection())).thenReturn(List.of(userId + ":" + groupKey));
+    assertEquals(3L, unreadCounterService.getUnreadCount(userId, groupKey));
+
+    unreadCounterService.increment(groupKey, List.of(userId));
+
+    verify(unreadCounterRepository).incrementAll(eq(Set.of(userId + ":" + groupKey)), any());
+    assertEquals(4L, unreadCounterService.getUnreadCount(userId, groupKey));
+
+    unreadCounterService.reset(userId, groupKey);
+
+    verify(unreadCounterRepository).reset(eq(userId + ":" + groupKey), any());
+    assertEquals(0L, unreadCounterService.getUnreadCount(userId, groupKey));
+    verify(unreadCounterRepository, times(1)).findByUserId(userId);
+    verifyNoInteractions(readWatermarkService);
+  }
+}
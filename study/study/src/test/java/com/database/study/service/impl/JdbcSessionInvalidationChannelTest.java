@@ -0,0 +1,72 @@
+package com.database.study.service.impl;
+
+import com.database.study.entity.SessionInvalidation;
+import com.database.study.repository.SessionInvalidationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JdbcSessionInvalidationChannelTest {
+
+  @Mock
+  private SessionInvalidationRepository sessionInvalidationRepository;
+
+  private JdbcSessionInvalidationChannel channel;
+  private final List<String> invalidated = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    channel = new JdbcSessionInvalidationChannel(sessionInvalidationRepository, "node-a", 60_000, 10,
+        new SimpleMeterRegistry());
+    channel.subscribe(invalidated::add);
+    when(sessionInvalidationRepository.findMaxId()).thenReturn(10L);
+    channel.poll();
+  }
+
+  @Test
+  void poll_AppliesLateCommitBelowCursor() {
+    when(sessionInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any(Pageable.class)))
+        .thenReturn(List.of(row(13L, "carol", "node-b")));
+    channel.poll();
+    assertEquals(List.of("carol"), invalidated);
+
+    when(sessionInvalidationRepository.findByIdIn(argThat(ids -> ids.containsAll(List.of(11L, 12L)))))
+        .thenReturn(List.of(row(11L, "alice", "node-b")));
+    when(sessionInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(13L), any(Pageable.class)))
+        .thenReturn(List.of());
+    channel.poll();
+
+    assertEquals(List.of("carol", "alice"), invalidated);
+  }
+
+  @Test
+  void poll_SkipsOwnInvalidations() {
+    when(sessionInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any(Pageable.class)))
+        .thenReturn(List.of(row(11L, "alice", "node-a"), row(12L, "bob", "node-b")));
+
+    channel.poll();
+
+    assertEquals(List.of("bob"), invalidated);
+  }
+
+  private SessionInvalidation row(long id, String username, String originNode) {
+    return SessionInvalidation.builder()
+        .id(id)
+        .username(username)
+        .originNode(originNode)
+        .createdAt(System.currentTimeMillis())
+        .build();
+  }
+}